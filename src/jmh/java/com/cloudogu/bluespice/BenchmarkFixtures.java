@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.cache.MemoryConstrainedCacheManager;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.realm.AuthorizingRealm;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.repository.Repository;
+import sonia.scm.store.ConfigurationStoreFactory;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixtures shared by the benchmarks.
+ */
+final class BenchmarkFixtures {
+
+  static final String BASE_URL = "https://wiki.hitchhiker.com";
+  static final BlueSpiceMetrics METRICS = new BlueSpiceMetrics(new SimpleMeterRegistry());
+
+  private BenchmarkFixtures() {
+  }
+
+  static ConfigurationStoreFactory storeFactory(String type) {
+    if ("file".equals(type)) {
+      try {
+        return new FileConfigurationStoreFactory(Files.createTempDirectory("bluespice-benchmark"));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return new InMemoryConfigurationStoreFactory();
+  }
+
+  static ScmPathInfoStore scmPathInfoStore() {
+    ScmPathInfoStore scmPathInfoStore = new ScmPathInfoStore();
+    scmPathInfoStore.set(() -> URI.create("https://scm-manager.org/scm/api/"));
+    return scmPathInfoStore;
+  }
+
+  static List<Repository> repositories(int count) {
+    List<Repository> repositories = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      repositories.add(new Repository("repo-" + i, "git", "namespace-" + (i % 100), "repository-" + i));
+    }
+    return repositories;
+  }
+
+  static BlueSpiceContext context(ConfigurationStoreFactory storeFactory, List<Repository> repositories) {
+    // per repository stores, so that the costs of the given store factory are measured
+    BlueSpiceContext context = new BlueSpiceContext(storeFactory, new InMemoryDataStoreFactory(), METRICS, BlueSpiceRepositoryConfigStore.Type.REPOSITORY);
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl(BASE_URL);
+    context.storeConfiguration(globalConfig);
+    for (int i = 0; i < repositories.size(); i++) {
+      BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+      if (i % 2 == 0) {
+        config.setRelativePath("Projects/" + repositories.get(i).getName());
+      } else {
+        config.setDirectUrl(BASE_URL + "/Direct/" + repositories.get(i).getName());
+        config.setOverride(OverrideOption.OVERRIDE);
+      }
+      context.storeConfiguration(config, repositories.get(i));
+    }
+    return context;
+  }
+
+  /**
+   * Binds a subject with all permissions to the current thread.
+   */
+  static void bindAdministrator() {
+    AuthorizingRealm realm = new AuthorizingRealm() {
+      @Override
+      protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+        SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+        info.addStringPermission("*");
+        return info;
+      }
+
+      @Override
+      protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) {
+        return null;
+      }
+    };
+    realm.setCacheManager(new MemoryConstrainedCacheManager());
+    Subject subject = new Subject.Builder(new DefaultSecurityManager(realm))
+      .principals(new SimplePrincipalCollection("trillian", "benchmark"))
+      .authenticated(true)
+      .buildSubject();
+    ThreadContext.bind(subject);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sonia.scm.repository.Repository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlueSpiceContextBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  private int repositoryCount;
+
+  @Param({"memory", "file"})
+  private String store;
+
+  private BlueSpiceContext context;
+  private Repository[] repositories;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    repositories = BenchmarkFixtures.repositories(repositoryCount).toArray(new Repository[0]);
+    context = BenchmarkFixtures.context(BenchmarkFixtures.storeFactory(store), List.of(repositories));
+  }
+
+  @Benchmark
+  public GlobalBlueSpiceConfig getGlobalConfiguration() {
+    return context.getConfiguration();
+  }
+
+  @Benchmark
+  public BlueSpiceRepositoryConfig getRepositoryConfiguration() {
+    Repository repository = repositories[index];
+    index = (index + 1) % repositories.length;
+    return context.getConfiguration(repository);
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sonia.scm.api.v2.resources.LinkBuilder;
+import sonia.scm.api.v2.resources.ScmPathInfo;
+import sonia.scm.repository.Repository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the links of a single repository, the {@code blueSpiceConfig} link of the enricher and the {@code self}
+ * and {@code update} links of the config mapper, built with a {@link LinkBuilder} against the precomputed
+ * {@link BlueSpiceLinks}. Run with the gc profiler to compare {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlueSpiceLinksBenchmark {
+
+  @Param({"1000", "100000"})
+  private int repositoryCount;
+
+  private ScmPathInfo pathInfo;
+  private Repository[] repositories;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    pathInfo = BenchmarkFixtures.scmPathInfoStore().get();
+    repositories = BenchmarkFixtures.repositories(repositoryCount).toArray(new Repository[0]);
+  }
+
+  @Benchmark
+  public void linkBuilder(Blackhole blackhole) {
+    Repository repository = next();
+    blackhole.consume(linkBuilderHref("getRepoConfig", repository));
+    blackhole.consume(linkBuilderHref("getRepoConfig", repository));
+    blackhole.consume(linkBuilderHref("updateRepoConfig", repository));
+  }
+
+  @Benchmark
+  public void precomputed(Blackhole blackhole) {
+    Repository repository = next();
+    BlueSpiceLinks links = BlueSpiceLinks.of(pathInfo);
+    blackhole.consume(links.repositoryConfig(repository));
+    blackhole.consume(links.repositoryConfig(repository));
+    blackhole.consume(links.updateRepositoryConfig(repository));
+  }
+
+  private String linkBuilderHref(String method, Repository repository) {
+    return new LinkBuilder(pathInfo, BlueSpiceConfigResource.class)
+      .method(method)
+      .parameters(repository.getNamespace(), repository.getName())
+      .href();
+  }
+
+  private Repository next() {
+    Repository repository = repositories[index];
+    index = (index + 1) % repositories.length;
+    return repository;
+  }
+}
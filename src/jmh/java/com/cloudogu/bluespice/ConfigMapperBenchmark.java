@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import org.apache.shiro.util.ThreadContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.repository.Repository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigMapperBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  private int repositoryCount;
+
+  private BlueSpiceRepositoryConfigMapperImpl repositoryConfigMapper;
+  private GlobalBlueSpiceConfigMapperImpl globalConfigMapper;
+  private BlueSpiceContext context;
+  private Repository[] repositories;
+  private BlueSpiceRepositoryConfigDto[] dtos;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    BenchmarkFixtures.bindAdministrator();
+    List<Repository> repositoryList = BenchmarkFixtures.repositories(repositoryCount);
+    context = BenchmarkFixtures.context(BenchmarkFixtures.storeFactory("memory"), repositoryList);
+    ScmPathInfoStore scmPathInfoStore = BenchmarkFixtures.scmPathInfoStore();
+
+    repositoryConfigMapper = new BlueSpiceRepositoryConfigMapperImpl();
+    repositoryConfigMapper.setScmPathInfoStore(scmPathInfoStore);
+    repositoryConfigMapper.setBlueSpiceContext(context);
+    repositoryConfigMapper.setPageLookup(new BlueSpicePageLookup(context));
+    globalConfigMapper = new GlobalBlueSpiceConfigMapperImpl();
+    globalConfigMapper.setScmPathInfoStore(scmPathInfoStore);
+
+    repositories = repositoryList.toArray(new Repository[0]);
+    dtos = new BlueSpiceRepositoryConfigDto[repositories.length];
+    for (int i = 0; i < repositories.length; i++) {
+      dtos[i] = repositoryConfigMapper.map(context.getConfiguration(repositories[i]), repositories[i]);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    ThreadContext.unbindSubject();
+  }
+
+  @Benchmark
+  public BlueSpiceRepositoryConfigDto mapRepositoryConfigToDto() {
+    Repository repository = next();
+    return repositoryConfigMapper.map(context.getConfiguration(repository), repository);
+  }
+
+  @Benchmark
+  public BlueSpiceRepositoryConfig mapRepositoryConfigFromDto() {
+    Repository repository = repositories[index];
+    return repositoryConfigMapper.map(dtos[nextIndex()], context.getConfiguration(repository));
+  }
+
+  @Benchmark
+  public BlueSpiceRepositoryConfigDto appendRepositoryConfigLinks() {
+    BlueSpiceRepositoryConfigDto dto = new BlueSpiceRepositoryConfigDto();
+    repositoryConfigMapper.appendLinks(dto, next());
+    return dto;
+  }
+
+  @Benchmark
+  public GlobalBlueSpiceConfigDto mapGlobalConfigToDto() {
+    return globalConfigMapper.map(context.getConfiguration());
+  }
+
+  @Benchmark
+  public GlobalBlueSpiceConfig mapGlobalConfigFromDto() {
+    GlobalBlueSpiceConfigDto dto = new GlobalBlueSpiceConfigDto();
+    dto.setBaseUrl(BenchmarkFixtures.BASE_URL);
+    return globalConfigMapper.map(dto, context.getConfiguration());
+  }
+
+  private Repository next() {
+    return repositories[nextIndex()];
+  }
+
+  private int nextIndex() {
+    int current = index;
+    index = (index + 1) % repositories.length;
+    return current;
+  }
+}
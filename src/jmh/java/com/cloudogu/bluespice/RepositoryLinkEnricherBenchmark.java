@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.base.Ticker;
+import com.google.inject.util.Providers;
+import org.apache.shiro.util.ThreadContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sonia.scm.api.v2.resources.HalAppender;
+import sonia.scm.api.v2.resources.HalEnricherContext;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryLinkEnricherBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  private int repositoryCount;
+
+  private RepositoryLinkEnricher enricher;
+  private HalEnricherContext[] contexts;
+  private HalAppender appender;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    BenchmarkFixtures.bindAdministrator();
+    List<Repository> repositories = BenchmarkFixtures.repositories(repositoryCount);
+    BlueSpiceContext context = BenchmarkFixtures.context(BenchmarkFixtures.storeFactory("memory"), repositories);
+    BlueSpiceLinkResolver linkResolver = new BlueSpiceLinkResolver(context, Runnable::run);
+    enricher = new RepositoryLinkEnricher(
+      Providers.of(new BlueSpiceEnrichmentContext(BenchmarkFixtures.scmPathInfoStore())),
+      context,
+      linkResolver,
+      new BlueSpiceLinkChecker(mock(RepositoryManager.class), context, linkResolver, HttpClient.newHttpClient(), Runnable::run, Ticker.systemTicker()),
+      BenchmarkFixtures.METRICS
+    );
+    contexts = repositories.stream().map(HalEnricherContext::of).toArray(HalEnricherContext[]::new);
+    appender = mock(HalAppender.class, withSettings().stubOnly());
+  }
+
+  @TearDown
+  public void tearDown() {
+    ThreadContext.unbindSubject();
+  }
+
+  @Benchmark
+  public void enrich() {
+    enricher.enrich(contexts[index], appender);
+    index = (index + 1) % contexts.length;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sonia.scm.repository.Repository;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlTemplateBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  private int repositoryCount;
+
+  private UrlTemplate template;
+  private Repository[] repositories;
+  private StringBuilder builder;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    template = UrlTemplate.compile("Repositories/{namespace}/{name}");
+    repositories = BenchmarkFixtures.repositories(repositoryCount).toArray(new Repository[0]);
+    builder = new StringBuilder(256);
+  }
+
+  /**
+   * Renders into a reused builder, which should not allocate at all.
+   */
+  @Benchmark
+  public int renderIntoBuilder() {
+    builder.setLength(0);
+    template.render(next(), builder);
+    return builder.length();
+  }
+
+  @Benchmark
+  public String render() {
+    return template.render(next());
+  }
+
+  private Repository next() {
+    Repository repository = repositories[index];
+    index = (index + 1) % repositories.length;
+    return repository;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Records latencies of a single thread. Up to {@link #CAPACITY} samples are kept, afterwards the samples are replaced
+ * by reservoir sampling, so that the kept samples stay a uniform sample of all recorded latencies.
+ */
+final class LatencyRecorder {
+
+  static final int CAPACITY = 200_000;
+
+  private final long[] samples = new long[CAPACITY];
+  private long count;
+  private long max;
+
+  void record(long nanos) {
+    if (count < CAPACITY) {
+      samples[(int) count] = nanos;
+    } else {
+      long index = ThreadLocalRandom.current().nextLong(count + 1);
+      if (index < CAPACITY) {
+        samples[(int) index] = nanos;
+      }
+    }
+    count++;
+    max = Math.max(max, nanos);
+  }
+
+  long getCount() {
+    return count;
+  }
+
+  /**
+   * Merges the samples of all recorders into a sorted array. Each sample is weighted by the number of latencies it
+   * represents, so that recorders with more recorded latencies are not under represented.
+   */
+  static Distribution merge(List<LatencyRecorder> recorders) {
+    long total = recorders.stream().mapToLong(LatencyRecorder::getCount).sum();
+    int size = (int) Math.min(total, (long) CAPACITY * recorders.size());
+    long[] merged = new long[size];
+    int offset = 0;
+    long max = 0;
+    for (LatencyRecorder recorder : recorders) {
+      int kept = (int) Math.min(recorder.count, CAPACITY);
+      // the share of each recorder in the merged sample matches its share of all recorded latencies
+      int share = total == 0 ? 0 : (int) Math.min(kept, recorder.count * size / total);
+      System.arraycopy(recorder.samples, 0, merged, offset, share);
+      offset += share;
+      max = Math.max(max, recorder.max);
+    }
+    long[] sorted = Arrays.copyOf(merged, offset);
+    Arrays.sort(sorted);
+    return new Distribution(sorted, max);
+  }
+
+  static final class Distribution {
+
+    private final long[] sorted;
+    private final long max;
+
+    private Distribution(long[] sorted, long max) {
+      this.sorted = sorted;
+      this.max = max;
+    }
+
+    long percentile(double percentile) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+      return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    long getMax() {
+      return max;
+    }
+  }
+}
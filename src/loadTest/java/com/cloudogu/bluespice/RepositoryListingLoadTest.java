@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.cache.MemoryConstrainedCacheManager;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.realm.AuthorizingRealm;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import sonia.scm.api.v2.resources.HalAppender;
+import sonia.scm.api.v2.resources.HalEnricherContext;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Simulates concurrent listings of repository pages against a file backed configuration store. Each worker thread
+ * requests random pages of repositories, every page gets its own {@link BlueSpiceEnrichmentContext} like a request
+ * in SCM-Manager. Throughput, latency percentiles of a page and the gc pressure are written as json report to the
+ * path given as first argument.
+ * <p>
+ * The load is configured with the system properties {@code loadTest.repositories}, {@code loadTest.threads},
+ * {@code loadTest.pageSize}, {@code loadTest.warmUpSeconds} and {@code loadTest.durationSeconds}. If
+ * {@code loadTest.maxP99Millis} is set, the load test fails if the 99th percentile of the page latency exceeds it.
+ */
+public final class RepositoryListingLoadTest {
+
+  private static final String BASE_URL = "https://wiki.hitchhiker.com";
+
+  private final int repositoryCount = Integer.getInteger("loadTest.repositories", 50_000);
+  private final int threadCount = Integer.getInteger("loadTest.threads", 32);
+  private final int pageSize = Integer.getInteger("loadTest.pageSize", 10);
+  private final int warmUpSeconds = Integer.getInteger("loadTest.warmUpSeconds", 10);
+  private final int durationSeconds = Integer.getInteger("loadTest.durationSeconds", 30);
+
+  private final BlueSpiceMetrics metrics = new BlueSpiceMetrics(new SimpleMeterRegistry());
+  private final HalAppender appender = mock(HalAppender.class, withSettings().stubOnly());
+
+  private BlueSpiceContext context;
+  private BlueSpiceLinkResolver linkResolver;
+  private BlueSpiceLinkChecker linkChecker;
+  private ScmPathInfoStore scmPathInfoStore;
+  private Subject subject;
+  private HalEnricherContext[] repositories;
+
+  private volatile boolean measuring;
+  private volatile boolean stopped;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 1) {
+      System.err.println("usage: RepositoryListingLoadTest <report.json>");
+      System.exit(2);
+    }
+    RepositoryListingLoadTest loadTest = new RepositoryListingLoadTest();
+    loadTest.setUp();
+    ObjectNode report = loadTest.run();
+    Path reportFile = Paths.get(args[0]);
+    Files.createDirectories(reportFile.toAbsolutePath().getParent());
+    ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    objectMapper.writeValue(reportFile.toFile(), report);
+    System.out.println(objectMapper.writeValueAsString(report));
+
+    String maxP99 = System.getProperty("loadTest.maxP99Millis");
+    if (maxP99 != null && report.path("latency").path("p99Millis").asDouble() > Double.parseDouble(maxP99)) {
+      System.err.println("99th percentile of the page latency exceeds " + maxP99 + "ms");
+      System.exit(1);
+    }
+    System.exit(0);
+  }
+
+  private void setUp() throws IOException {
+    Path storeDirectory = Files.createTempDirectory("bluespice-load-test");
+    context = new BlueSpiceContext(
+      new FileConfigurationStoreFactory(storeDirectory), new InMemoryDataStoreFactory(), metrics, BlueSpiceRepositoryConfigStore.Type.REPOSITORY
+    );
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl(BASE_URL);
+    globalConfig.setUrlTemplate("Repositories/{namespace}/{name}");
+    context.storeConfiguration(globalConfig);
+
+    long start = System.nanoTime();
+    repositories = new HalEnricherContext[repositoryCount];
+    for (int i = 0; i < repositoryCount; i++) {
+      Repository repository = new Repository("repo-" + i, "git", "namespace-" + (i % 500), "repository-" + i);
+      context.storeConfiguration(repositoryConfig(repository, i), repository);
+      repositories[i] = HalEnricherContext.of(repository);
+    }
+    System.out.printf("stored %d repository configurations in %s in %d ms%n",
+      repositoryCount, storeDirectory, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+    linkResolver = new BlueSpiceLinkResolver(context, Runnable::run);
+    linkChecker = new BlueSpiceLinkChecker(
+      mock(RepositoryManager.class), context, linkResolver, HttpClient.newHttpClient(), Runnable::run, Ticker.systemTicker()
+    );
+    scmPathInfoStore = new ScmPathInfoStore();
+    scmPathInfoStore.set(() -> URI.create("https://scm-manager.org/scm/api/"));
+    subject = administrator();
+  }
+
+  private static BlueSpiceRepositoryConfig repositoryConfig(Repository repository, int index) {
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    switch (index % 3) {
+      case 0 -> config.setRelativePath("Projects/" + repository.getName());
+      case 1 -> {
+        config.setDirectUrl(BASE_URL + "/Direct/" + repository.getName());
+        config.setOverride(OverrideOption.OVERRIDE);
+      }
+      default -> {
+        // uses the url template of the global configuration
+      }
+    }
+    return config;
+  }
+
+  private ObjectNode run() throws InterruptedException {
+    List<Worker> workers = new ArrayList<>(threadCount);
+    CountDownLatch finished = new CountDownLatch(threadCount);
+    for (int i = 0; i < threadCount; i++) {
+      Worker worker = new Worker(finished);
+      workers.add(worker);
+      Thread thread = new Thread(worker, "load-test-" + i);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    TimeUnit.SECONDS.sleep(warmUpSeconds);
+    long gcCount = gcCount();
+    long gcTime = gcTime();
+    long start = System.nanoTime();
+    measuring = true;
+    TimeUnit.SECONDS.sleep(durationSeconds);
+    measuring = false;
+    long elapsed = System.nanoTime() - start;
+    long collections = gcCount() - gcCount;
+    long collectionTime = gcTime() - gcTime;
+    stopped = true;
+    finished.await();
+
+    return report(workers, elapsed, collections, collectionTime);
+  }
+
+  private ObjectNode report(List<Worker> workers, long elapsedNanos, long collections, long collectionMillis) {
+    double seconds = elapsedNanos / 1e9;
+    List<LatencyRecorder> recorders = workers.stream().map(worker -> worker.latencies).toList();
+    long pages = recorders.stream().mapToLong(LatencyRecorder::getCount).sum();
+    long allocated = workers.stream().mapToLong(Worker::getAllocatedBytes).sum();
+    LatencyRecorder.Distribution distribution = LatencyRecorder.merge(recorders);
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    ObjectNode report = objectMapper.createObjectNode();
+    ObjectNode setup = report.putObject("setup");
+    setup.put("repositories", repositoryCount);
+    setup.put("threads", threadCount);
+    setup.put("pageSize", pageSize);
+    setup.put("warmUpSeconds", warmUpSeconds);
+    setup.put("durationSeconds", durationSeconds);
+    setup.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+    setup.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+
+    ObjectNode throughput = report.putObject("throughput");
+    throughput.put("pages", pages);
+    throughput.put("pagesPerSecond", pages / seconds);
+    throughput.put("repositoriesPerSecond", pages * pageSize / seconds);
+
+    ObjectNode latency = report.putObject("latency");
+    latency.put("p50Millis", millis(distribution.percentile(50)));
+    latency.put("p90Millis", millis(distribution.percentile(90)));
+    latency.put("p99Millis", millis(distribution.percentile(99)));
+    latency.put("maxMillis", millis(distribution.getMax()));
+
+    ObjectNode gc = report.putObject("gc");
+    gc.put("collections", collections);
+    gc.put("collectionMillis", collectionMillis);
+    gc.put("collectionTimeRatio", collectionMillis / 1000d / seconds);
+    gc.put("allocatedBytesPerPage", pages == 0 ? 0 : allocated / pages);
+    gc.put("allocationMegabytesPerSecond", allocated / 1024d / 1024d / seconds);
+
+    report.putObject("repositoryConfigCache")
+      .put("hitRate", context.getRepositoryConfigCacheStats().hitRate());
+    return report;
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  private static long gcCount() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream()
+      .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+      .filter(count -> count > 0)
+      .sum();
+  }
+
+  private static long gcTime() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream()
+      .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+      .filter(time -> time > 0)
+      .sum();
+  }
+
+  private static long currentThreadAllocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+  }
+
+  /**
+   * Creates a subject with all permissions, which is bound to each worker thread.
+   */
+  private static Subject administrator() {
+    AuthorizingRealm realm = new AuthorizingRealm() {
+      @Override
+      protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+        SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+        info.addStringPermission("*");
+        return info;
+      }
+
+      @Override
+      protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) {
+        return null;
+      }
+    };
+    realm.setCacheManager(new MemoryConstrainedCacheManager());
+    return new Subject.Builder(new DefaultSecurityManager(realm))
+      .principals(new SimplePrincipalCollection("trillian", "load-test"))
+      .authenticated(true)
+      .buildSubject();
+  }
+
+  private final class Worker implements Runnable {
+
+    private final CountDownLatch finished;
+    private final LatencyRecorder latencies = new LatencyRecorder();
+
+    private BlueSpiceEnrichmentContext enrichmentContext;
+    private long allocatedAtStart = -1;
+    private long allocatedBytes;
+
+    private Worker(CountDownLatch finished) {
+      this.finished = finished;
+    }
+
+    @Override
+    public void run() {
+      ThreadContext.bind(subject);
+      RepositoryLinkEnricher enricher = new RepositoryLinkEnricher(
+        () -> enrichmentContext, context, linkResolver, linkChecker, metrics
+      );
+      try {
+        while (!stopped) {
+          boolean measured = measuring;
+          if (measured && allocatedAtStart < 0) {
+            allocatedAtStart = currentThreadAllocatedBytes();
+          } else if (!measured) {
+            finishAllocationMeasurement();
+          }
+          long start = System.nanoTime();
+          enrichPage(enricher);
+          long duration = System.nanoTime() - start;
+          if (measured) {
+            latencies.record(duration);
+          }
+        }
+        finishAllocationMeasurement();
+      } finally {
+        ThreadContext.unbindSubject();
+        finished.countDown();
+      }
+    }
+
+    private void finishAllocationMeasurement() {
+      if (allocatedAtStart >= 0 && allocatedBytes == 0) {
+        allocatedBytes = currentThreadAllocatedBytes() - allocatedAtStart;
+      }
+    }
+
+    private void enrichPage(RepositoryLinkEnricher enricher) {
+      enrichmentContext = new BlueSpiceEnrichmentContext(scmPathInfoStore);
+      int first = ThreadLocalRandom.current().nextInt(repositories.length / pageSize) * pageSize;
+      for (int i = first; i < first + pageSize; i++) {
+        enricher.enrich(repositories[i], appender);
+      }
+    }
+
+    long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.web.security.AdministrationContext;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes BlueSpice state which no longer belongs to a live repository. Repository configurations are removed when
+ * their repository is deleted, but configurations of repositories deleted while the plugin was not installed,
+ * namespace configurations and cached state stay behind when the last repository of a namespace is deleted or moved.
+ * <p>
+ * A namespace without repositories can not be told apart from a namespace which is configured before its first
+ * repository is created, so namespace configurations are only removed on request.
+ */
+@Singleton
+public class BlueSpiceCompaction {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlueSpiceCompaction.class);
+
+  private final AdministrationContext administrationContext;
+  private final RepositoryManager repositoryManager;
+  private final BlueSpiceContext context;
+  private final BlueSpiceLinkResolver linkResolver;
+
+  @Inject
+  public BlueSpiceCompaction(AdministrationContext administrationContext, RepositoryManager repositoryManager, BlueSpiceContext context, BlueSpiceLinkResolver linkResolver) {
+    this.administrationContext = administrationContext;
+    this.repositoryManager = repositoryManager;
+    this.context = context;
+    this.linkResolver = linkResolver;
+  }
+
+  /**
+   * Removes the state of deleted repositories.
+   *
+   * @param removeNamespaceConfigs {@code true} to remove the configurations of namespaces without repositories, too
+   */
+  public synchronized BlueSpiceCompactionResultDto compact(boolean removeNamespaceConfigs) {
+    long start = System.nanoTime();
+    Set<String> repositoryIds = new HashSet<>();
+    Set<String> namespaces = new HashSet<>();
+    // all repositories have to be known, otherwise the state of repositories the user can not read would be dropped
+    administrationContext.runAsAdmin(() -> {
+      for (Repository repository : repositoryManager.getAll()) {
+        repositoryIds.add(repository.getId());
+        namespaces.add(repository.getNamespace());
+      }
+    });
+
+    int removedLinks = linkResolver.retainRepositories(repositoryIds);
+    int removedCachedConfigs = context.retainRepositories(repositoryIds);
+    int removedNamespaceConfigs = removeNamespaceConfigs ? context.retainNamespaces(namespaces) : 0;
+    int removedRepositoryConfigs = context.removeOrphanedConfigurations(repositoryIds);
+    BlueSpiceCompactionResultDto result = new BlueSpiceCompactionResultDto(
+      repositoryIds.size(),
+      removedNamespaceConfigs,
+      removedCachedConfigs,
+      removedLinks,
+      removedRepositoryConfigs,
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+    );
+    LOG.info(
+      "compacted BlueSpice state of {} repositories in {} ms, removed {} namespace configurations, {} repository configurations, {} cached configurations and {} links",
+      result.getRepositories(),
+      result.getDurationMillis(),
+      result.getRemovedNamespaceConfigs(),
+      result.getRemovedRepositoryConfigs(),
+      result.getRemovedCachedConfigs(),
+      result.getRemovedLinks()
+    );
+    return result;
+  }
+}
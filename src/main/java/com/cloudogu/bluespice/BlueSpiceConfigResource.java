@@ -16,16 +16,42 @@
 
 package com.cloudogu.bluespice;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.google.common.base.Strings;
+import com.google.common.collect.Iterators;
+import com.google.common.hash.Hashing;
 import com.google.inject.Inject;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.apache.shiro.authz.AuthorizationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.NotFoundException;
 import sonia.scm.api.v2.resources.ErrorDto;
 import sonia.scm.config.ConfigurationPermissions;
 import sonia.scm.repository.NamespaceAndName;
@@ -34,27 +60,78 @@ import sonia.scm.repository.RepositoryManager;
 import sonia.scm.repository.RepositoryPermissions;
 import sonia.scm.web.VndMediaType;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
 import static sonia.scm.ContextEntry.ContextBuilder.entity;
 import static sonia.scm.NotFoundException.notFound;
 import static com.cloudogu.bluespice.BlueSpiceContext.NAME;
 
+/**
+ * REST endpoints of the plugin. The endpoints which stream newline delimited json iterate the repositories page by
+ * page with {@link BlueSpiceRepositoryPages}, so their memory does not grow with the number of repositories beyond the
+ * repositories the repository manager holds anyway.
+ */
 @OpenAPIDefinition(tags = {
   @Tag(name = "BlueSpice Plugin", description = "BlueSpice plugin provided endpoints")
 })
 @Path("v2/bluespice")
 public class BlueSpiceConfigResource {
 
+  static final String NDJSON = "application/x-ndjson";
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlueSpiceConfigResource.class);
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final ObjectWriter ENTITY_TAG_WRITER = JsonMapper.builder()
+    .visibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+    .visibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+    .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+    .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+    .build()
+    .writer();
+  /**
+   * Maximum time the listing of all repositories waits for the existence of the wiki pages in total.
+   */
+  private static final Duration PAGE_LOOKUP_TIMEOUT = Duration.ofSeconds(2);
+
   private final RepositoryManager repositoryManager;
   private final BlueSpiceContext context;
   private final GlobalBlueSpiceConfigMapper globalConfigMapper;
   private final BlueSpiceRepositoryConfigMapper configMapper;
+  private final BlueSpiceLinkResolver linkResolver;
+  private final BlueSpiceConfigTransfer transfer;
+  private final BlueSpiceNamespaceConfigMapper namespaceConfigMapper;
+  private final BlueSpiceLinkChecker linkChecker;
+  private final BlueSpicePageLookup pageLookup;
+  private final BlueSpiceCompaction compaction;
+  private final BlueSpiceLinkIndex linkIndex;
+  private final BlueSpicePagePreview pagePreview;
 
   @Inject
-  public BlueSpiceConfigResource(RepositoryManager repositoryManager, BlueSpiceContext context, GlobalBlueSpiceConfigMapper globalConfigMapper, BlueSpiceRepositoryConfigMapper configMapper) {
+  public BlueSpiceConfigResource(RepositoryManager repositoryManager, BlueSpiceContext context, GlobalBlueSpiceConfigMapper globalConfigMapper, BlueSpiceRepositoryConfigMapper configMapper, BlueSpiceLinkResolver linkResolver, BlueSpiceConfigTransfer transfer, BlueSpiceNamespaceConfigMapper namespaceConfigMapper, BlueSpiceLinkChecker linkChecker, BlueSpicePageLookup pageLookup, BlueSpiceCompaction compaction, BlueSpiceLinkIndex linkIndex, BlueSpicePagePreview pagePreview) {
     this.repositoryManager = repositoryManager;
     this.context = context;
     this.globalConfigMapper = globalConfigMapper;
     this.configMapper = configMapper;
+    this.linkResolver = linkResolver;
+    this.transfer = transfer;
+    this.namespaceConfigMapper = namespaceConfigMapper;
+    this.linkChecker = linkChecker;
+    this.pageLookup = pageLookup;
+    this.compaction = compaction;
+    this.linkIndex = linkIndex;
+    this.pagePreview = pagePreview;
   }
 
   @GET
@@ -67,13 +144,14 @@ public class BlueSpiceConfigResource {
     operationId = "bluespice_get_global_config")
   @ApiResponse(
     responseCode = "200",
-    description = "success",
+    description = "success, the version of the configuration is returned as ETag",
     content = @Content(
       mediaType = MediaType.APPLICATION_JSON,
       schema = @Schema(implementation = GlobalBlueSpiceConfigDto.class)
     )
   )
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "304", description = "not modified, the configuration still matches the ETag of the If-None-Match header")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to read the configuration")
   @ApiResponse(
     responseCode = "500",
@@ -83,9 +161,15 @@ public class BlueSpiceConfigResource {
       schema = @Schema(implementation = ErrorDto.class)
     )
   )
-  public Response getGlobalConfig() {
+  public Response getGlobalConfig(@Context Request request) {
     ConfigurationPermissions.read(NAME).check();
-    return Response.ok(globalConfigMapper.map(context.getConfiguration())).build();
+    GlobalBlueSpiceConfig config = context.getConfiguration();
+    EntityTag entityTag = globalEntityTag(config);
+    Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+    if (notModified != null) {
+      return notModified.build();
+    }
+    return Response.ok(globalConfigMapper.map(config)).tag(entityTag).build();
   }
 
   @PUT
@@ -100,6 +184,7 @@ public class BlueSpiceConfigResource {
   @ApiResponse(responseCode = "400", description = "invalid body")
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the privilege to change the configuration")
+  @ApiResponse(responseCode = "412", description = "precondition failed, the configuration was modified since the version of the If-Match header")
   @ApiResponse(
     responseCode = "500",
     description = "internal server error",
@@ -108,9 +193,74 @@ public class BlueSpiceConfigResource {
       schema = @Schema(implementation = ErrorDto.class)
     )
   )
-  public Response updateGlobalConfig(GlobalBlueSpiceConfigDto updatedConfig) {
+  public Response updateGlobalConfig(@Context Request request, @HeaderParam("If-Match") String ifMatch, @Valid GlobalBlueSpiceConfigDto updatedConfig) {
     ConfigurationPermissions.write(NAME).check();
-    context.storeConfiguration(globalConfigMapper.map(updatedConfig, context.getConfiguration()));
+    GlobalBlueSpiceConfig config = globalConfigMapper.map(updatedConfig, context.getConfiguration());
+    if (ifMatch == null) {
+      context.storeConfiguration(config);
+    } else if (!context.storeConfiguration(config, current -> request.evaluatePreconditions(globalEntityTag(current)) == null)) {
+      return Response.status(Response.Status.PRECONDITION_FAILED).build();
+    }
+    return Response.noContent().build();
+  }
+
+  @GET
+  @Path("/namespaces/{namespace}/config")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Get namespace BlueSpice configuration",
+    description = "Returns the BlueSpice configuration of a namespace.",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_get_namespace_config"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = BlueSpiceNamespaceConfigDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to read the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response getNamespaceConfig(@PathParam("namespace") String namespace) {
+    ConfigurationPermissions.read(NAME).check();
+    BlueSpiceNamespaceConfig config = context.getNamespaceConfiguration(namespace).orElseGet(BlueSpiceNamespaceConfig::new);
+    return Response.ok(namespaceConfigMapper.map(config, namespace)).build();
+  }
+
+  @PUT
+  @Path("/namespaces/{namespace}/config")
+  @Consumes({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Modify namespace BlueSpice configuration",
+    description = "Modifies the BlueSpice configuration of a namespace. An empty configuration removes the namespace layer.",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_put_namespace_config"
+  )
+  @ApiResponse(responseCode = "204", description = "update success")
+  @ApiResponse(responseCode = "400", description = "invalid body")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the privilege to change the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response updateNamespaceConfig(@PathParam("namespace") String namespace, BlueSpiceNamespaceConfigDto updatedConfig) {
+    ConfigurationPermissions.write(NAME).check();
+    context.storeNamespaceConfiguration(namespace, namespaceConfigMapper.map(updatedConfig));
     return Response.noContent().build();
   }
 
@@ -125,12 +275,13 @@ public class BlueSpiceConfigResource {
   )
   @ApiResponse(
     responseCode = "200",
-    description = "success",
+    description = "success, the version of the configuration is returned as ETag",
     content = @Content(
       mediaType = MediaType.APPLICATION_JSON,
       schema = @Schema(implementation = BlueSpiceRepositoryConfigDto.class)
     )
   )
+  @ApiResponse(responseCode = "304", description = "not modified, the configuration still matches the ETag of the If-None-Match header")
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to read the configuration")
   @ApiResponse(
@@ -150,11 +301,18 @@ public class BlueSpiceConfigResource {
     )
   )
   public Response getRepoConfig(
+    @Context Request request,
     @PathParam("namespace") String namespace,
     @PathParam("name") String name) {
     Repository repository = loadRepository(namespace, name);
     RepositoryPermissions.custom("configureBlueSpice", repository).check();
-    return Response.ok(configMapper.map(context.getConfiguration(repository), repository)).build();
+    BlueSpiceRepositoryConfig config = context.getConfiguration(repository);
+    EntityTag entityTag = repositoryEntityTag(config, repository);
+    Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+    if (notModified != null) {
+      return notModified.build();
+    }
+    return Response.ok(configMapper.map(config, repository)).tag(entityTag).build();
   }
 
   @PUT
@@ -170,6 +328,7 @@ public class BlueSpiceConfigResource {
   @ApiResponse(responseCode = "400", description = "invalid body")
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the privilege to change the configuration")
+  @ApiResponse(responseCode = "412", description = "precondition failed, the configuration was modified since the version of the If-Match header")
   @ApiResponse(
     responseCode = "404",
     description = "not found, no repository with the specified namespace and name available",
@@ -186,13 +345,546 @@ public class BlueSpiceConfigResource {
       schema = @Schema(implementation = ErrorDto.class)
     )
   )
-  public Response updateRepoConfig(@PathParam("namespace") String namespace, @PathParam("name") String name, BlueSpiceRepositoryConfigDto updatedConfig) {
+  public Response updateRepoConfig(@Context Request request, @HeaderParam("If-Match") String ifMatch, @PathParam("namespace") String namespace, @PathParam("name") String name, BlueSpiceRepositoryConfigDto updatedConfig) {
     Repository repository = loadRepository(namespace, name);
     RepositoryPermissions.custom("configureBlueSpice", repository).check();
-    context.storeConfiguration(configMapper.map(updatedConfig, context.getConfiguration(repository)), repository.getId());
+    BlueSpiceRepositoryConfig config = configMapper.map(updatedConfig, context.getConfiguration(repository));
+    if (ifMatch == null) {
+      context.storeConfiguration(config, repository);
+    } else if (!context.storeConfiguration(config, repository, current -> request.evaluatePreconditions(repositoryEntityTag(current, repository)) == null)) {
+      return Response.status(Response.Status.PRECONDITION_FAILED).build();
+    }
     return Response.noContent().build();
   }
 
+  /**
+   * The ETag of the global configuration is a hash of its content and of the permission to modify it, because the
+   * update link depends on it.
+   */
+  private static EntityTag globalEntityTag(GlobalBlueSpiceConfig config) {
+    return entityTag(config, ConfigurationPermissions.write(NAME).isPermitted());
+  }
+
+  /**
+   * The ETag of a repository configuration is a hash of its content, of the global base url, of the configuration of
+   * its namespace and of the registered instances. The base urls are part of the links and the ids of the instances
+   * are listed as available instances. Whether the wiki page exists is not part of the version.
+   */
+  private EntityTag repositoryEntityTag(BlueSpiceRepositoryConfig config, Repository repository) {
+    GlobalBlueSpiceConfig globalConfig = context.getConfiguration();
+    BlueSpiceNamespaceConfig namespaceConfig = context.getNamespaceConfiguration(repository.getNamespace()).orElse(null);
+    return entityTag(config, globalConfig.getBaseUrl(), namespaceConfig, globalConfig.getInstances());
+  }
+
+  /**
+   * Hashes the canonical json of the content. Fields are written in alphabetical order and derived state which is not
+   * persisted is left out, so equal configurations always get the same tag.
+   */
+  private static EntityTag entityTag(Object... content) {
+    try {
+      return new EntityTag(Hashing.sha256().hashBytes(ENTITY_TAG_WRITER.writeValueAsBytes(content)).toString());
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @POST
+  @Path("/bulk")
+  @Consumes({MediaType.APPLICATION_JSON})
+  @Produces(NDJSON)
+  @Operation(
+    summary = "Modify BlueSpice configuration of multiple repositories",
+    description = "Modifies the BlueSpice configuration of all repositories of the given json array. The entries are read and applied one after another and the result of each entry is streamed back as a separate json line, failing entries do not abort the batch.",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_bulk_repo_config"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success, per entry results are streamed as newline delimited json",
+    content = @Content(
+      mediaType = NDJSON,
+      schema = @Schema(implementation = BlueSpiceBulkResultDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "invalid body, the body is not a json array")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response bulkUpdateRepoConfig(InputStream body) throws IOException {
+    if (body == null) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    JsonParser parser = OBJECT_MAPPER.createParser(body);
+    try {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        parser.close();
+        return Response.status(Response.Status.BAD_REQUEST).build();
+      }
+    } catch (JsonProcessingException e) {
+      parser.close();
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return ndjson(sink -> {
+      try (parser) {
+        updateRepoConfigs(parser, sink);
+      }
+    });
+  }
+
+  private void updateRepoConfigs(JsonParser parser, Consumer<Object> sink) throws IOException {
+    ObjectReader reader = OBJECT_MAPPER.readerFor(BlueSpiceBulkEntryDto.class)
+      .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    try {
+      JsonToken token;
+      while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+        if (token != JsonToken.START_OBJECT) {
+          sink.accept(new BlueSpiceBulkResultDto(null, null, Response.Status.BAD_REQUEST.getStatusCode(), "entry is not an object"));
+          parser.skipChildren();
+        } else {
+          sink.accept(updateRepoConfig(reader.readValue(parser)));
+        }
+      }
+    } catch (JsonProcessingException e) {
+      // the position in the array is lost, so the remaining entries can not be read
+      sink.accept(new BlueSpiceBulkResultDto(null, null, Response.Status.BAD_REQUEST.getStatusCode(), "invalid json: " + e.getOriginalMessage()));
+    }
+  }
+
+  private BlueSpiceBulkResultDto updateRepoConfig(BlueSpiceBulkEntryDto entry) {
+    if (entry.getConfig() == null) {
+      return result(entry, Response.Status.BAD_REQUEST, "config is missing");
+    }
+    try {
+      Repository repository = loadRepository(entry.getNamespace(), entry.getName());
+      RepositoryPermissions.custom("configureBlueSpice", repository).check();
+      context.storeConfiguration(configMapper.map(entry.getConfig(), context.getConfiguration(repository)), repository);
+      return result(entry, Response.Status.NO_CONTENT, null);
+    } catch (NotFoundException e) {
+      return result(entry, Response.Status.NOT_FOUND, e.getMessage());
+    } catch (AuthorizationException e) {
+      return result(entry, Response.Status.FORBIDDEN, "not authorized");
+    } catch (RuntimeException e) {
+      LOG.warn("failed to update BlueSpice configuration of repository {}/{}", entry.getNamespace(), entry.getName(), e);
+      return result(entry, Response.Status.INTERNAL_SERVER_ERROR, "internal server error");
+    }
+  }
+
+  private BlueSpiceBulkResultDto result(BlueSpiceBulkEntryDto entry, Response.Status status, String message) {
+    return new BlueSpiceBulkResultDto(entry.getNamespace(), entry.getName(), status.getStatusCode(), message);
+  }
+
+  @POST
+  @Path("/rules/preview")
+  @Consumes({MediaType.APPLICATION_JSON})
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Preview link rules",
+    description = "Evaluates the given rules against all repositories without storing them and returns the repositories hit by each rule. Like in the resolution of the links, the first matching rule wins.",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_preview_rules"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      array = @ArraySchema(schema = @Schema(implementation = LinkRulePreviewDto.class))
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "invalid body")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the privilege to change the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response previewRules(@QueryParam("limit") @DefaultValue("100") int limit, List<@Valid LinkRule> rules) {
+    ConfigurationPermissions.write(NAME).check();
+    if (rules == null || rules.contains(null)) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    LinkRuleMatcher matcher = LinkRuleMatcher.compile(rules);
+    List<LinkRulePreviewDto> previews = rules.stream().map(LinkRulePreviewDto::new).toList();
+    for (Repository repository : repositoryManager.getAll()) {
+      int rule = matcher.match(repository);
+      if (rule >= 0) {
+        LinkRulePreviewDto preview = previews.get(rule);
+        preview.setCount(preview.getCount() + 1);
+        if (preview.getRepositories().size() < limit) {
+          preview.getRepositories().add(repository.getNamespaceAndName().toString());
+        }
+      }
+    }
+    return Response.ok(previews).build();
+  }
+
+  @GET
+  @Path("/export")
+  @Produces(NDJSON)
+  @Operation(
+    summary = "Export BlueSpice configuration",
+    description = "Streams the global configuration followed by the configuration of every repository the current user may configure as newline delimited json.",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_export"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = NDJSON,
+      schema = @Schema(implementation = BlueSpiceExportEntryDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to read the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response exportConfig() {
+    ConfigurationPermissions.read(NAME).check();
+    return ndjson(transfer.export());
+  }
+
+  @POST
+  @Path("/import")
+  @Consumes({NDJSON, MediaType.TEXT_PLAIN})
+  @Produces(NDJSON)
+  @Operation(
+    summary = "Import BlueSpice configuration",
+    description = "Imports newline delimited json as created by the export. Existing configurations are overwritten. The result of every line is streamed back as newline delimited json.",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_import"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success, per line results are streamed as newline delimited json",
+    content = @Content(
+      mediaType = NDJSON,
+      schema = @Schema(implementation = BlueSpiceImportResultDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the privilege to change the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response importConfig(@QueryParam("dryRun") boolean dryRun, InputStream body) {
+    ConfigurationPermissions.write(NAME).check();
+    return ndjson(sink -> {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+      transfer.importConfiguration(reader, dryRun, sink::accept);
+    });
+  }
+
+  @GET
+  @Path("/repositories")
+  @Produces(NDJSON)
+  @Operation(
+    summary = "List BlueSpice links of all repositories",
+    description = "Streams the BlueSpice configuration, the resolved link and whether the wiki page exists of every repository the current user may configure as newline delimited json.",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_list_repo_links"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = NDJSON,
+      schema = @Schema(implementation = BlueSpiceRepositoryLinkDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response listRepoLinks() {
+    return ndjson(sink -> {
+      Iterator<Repository> repositories = BlueSpiceRepositoryPages.stream(repositoryManager)
+        .filter(repository -> RepositoryPermissions.custom("configureBlueSpice", repository).isPermitted())
+        .iterator();
+      long deadline = System.nanoTime() + PAGE_LOOKUP_TIMEOUT.toNanos();
+      // the pages are looked up chunk by chunk, so only one chunk of repositories is held at a time
+      Iterators.partition(repositories, BlueSpicePageLookup.BATCH_SIZE).forEachRemaining(chunk -> {
+        pageLookup.prefetch(chunk);
+        chunk.forEach(repository -> sink.accept(toLink(repository, deadline)));
+      });
+    });
+  }
+
+  @GET
+  @Path("/links/search")
+  @Produces(NDJSON)
+  @Operation(
+    summary = "Find repositories by BlueSpice link",
+    description = "Streams all repositories the current user may configure, whose resolved BlueSpice link starts with the given url or with the given wiki path below the base url of their wiki, as newline delimited json. The base url of a repository is the one of its instance, its namespace or the global base url.",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_search_links"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = NDJSON,
+      schema = @Schema(implementation = BlueSpiceRepositoryLinkDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "neither url nor path is given")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response searchRepoLinks(@QueryParam("url") String url, @QueryParam("path") String path) {
+    List<Repository> repositories;
+    if (!Strings.isNullOrEmpty(url)) {
+      repositories = linkIndex.findByUrlPrefix(url);
+    } else if (!Strings.isNullOrEmpty(path)) {
+      repositories = linkIndex.findByWikiPath(path);
+    } else {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return ndjson(
+      repositories
+        .stream()
+        .filter(repository -> RepositoryPermissions.custom("configureBlueSpice", repository).isPermitted())
+        // the search does not wait for the wiki, only known page states are returned
+        .map(repository -> toLink(repository, System.nanoTime()))
+    );
+  }
+
+  @GET
+  @Path("/links/health")
+  @Produces(NDJSON)
+  @Operation(
+    summary = "Report health of BlueSpice links",
+    description = "Streams the result of the last check of the BlueSpice link of every repository the current user may configure as newline delimited json. Repositories whose link has not been checked yet are omitted.",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_link_health"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = NDJSON,
+      schema = @Schema(implementation = BlueSpiceLinkHealthDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response getLinkHealth(@QueryParam("brokenOnly") boolean brokenOnly) {
+    return ndjson(
+      BlueSpiceRepositoryPages.stream(repositoryManager)
+        .filter(repository -> RepositoryPermissions.custom("configureBlueSpice", repository).isPermitted())
+        .flatMap(repository -> linkResolver.resolve(repository)
+          .flatMap(linkChecker::getHealth)
+          .filter(health -> !brokenOnly || health.isBroken())
+          .map(health -> toHealth(repository, health))
+          .stream())
+    );
+  }
+
+  private BlueSpiceLinkHealthDto toHealth(Repository repository, LinkHealth health) {
+    return new BlueSpiceLinkHealthDto(
+      repository.getNamespace(),
+      repository.getName(),
+      health.getUrl(),
+      health.getStatus(),
+      health.getHttpStatus(),
+      health.getCheckedAt().toString()
+    );
+  }
+
+  @POST
+  @Path("/links/check")
+  @Operation(
+    summary = "Check BlueSpice links",
+    description = "Starts a check of the BlueSpice links of all repositories in the background.",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_check_links"
+  )
+  @ApiResponse(responseCode = "202", description = "check started")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the privilege to change the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response checkLinks() {
+    ConfigurationPermissions.write(NAME).check();
+    linkChecker.checkAll();
+    return Response.accepted().build();
+  }
+
+  @POST
+  @Path("/compact")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Compact BlueSpice state",
+    description = "Removes configurations and cached state which no longer belong to an existing repository and reports what has been removed. Configurations of namespaces without repositories are only removed with removeNamespaceConfigs, because namespaces may be configured before their first repository is created.",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_compact"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = BlueSpiceCompactionResultDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the privilege to change the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response compact(@QueryParam("removeNamespaceConfigs") @DefaultValue("false") boolean removeNamespaceConfigs) {
+    ConfigurationPermissions.write(NAME).check();
+    return Response.ok(compaction.compact(removeNamespaceConfigs)).build();
+  }
+
+  @GET
+  @Path("/{namespace}/{name}/preview")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Preview BlueSpice page",
+    description = "Returns the text of the lead section of the wiki page of the repository. Previews are cached and refreshed in the background.",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_page_preview"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = BlueSpicePagePreviewDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "204", description = "no preview available, because no api url is configured or the repository has no page in the configured wiki")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to read the repository")
+  @ApiResponse(
+    responseCode = "404",
+    description = "not found, no repository with the specified namespace and name available",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "502", description = "bad gateway, the page is not cached and the wiki could not be reached")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response getPagePreview(@PathParam("namespace") String namespace, @PathParam("name") String name) {
+    Repository repository = loadRepository(namespace, name);
+    RepositoryPermissions.read(repository).check();
+    Optional<PagePreview> preview;
+    try {
+      preview = pagePreview.getPreview(repository);
+    } catch (IOException e) {
+      return Response.status(Response.Status.BAD_GATEWAY).build();
+    }
+    if (preview.isEmpty()) {
+      return Response.noContent().build();
+    }
+    return Response.ok(new BlueSpicePagePreviewDto(
+      repository.getNamespace(),
+      repository.getName(),
+      preview.get().getTitle(),
+      linkResolver.resolve(repository).orElse(null),
+      preview.get().isExists(),
+      preview.get().getExcerpt(),
+      preview.get().getFetchedAt().toString()
+    )).build();
+  }
+
+  private BlueSpiceRepositoryLinkDto toLink(Repository repository, long pageLookupDeadline) {
+    BlueSpiceRepositoryConfig config = context.getConfiguration(repository);
+    return new BlueSpiceRepositoryLinkDto(
+      repository.getNamespace(),
+      repository.getName(),
+      config.getOverride(),
+      config.getRelativePath(),
+      config.getDirectUrl(),
+      linkResolver.resolve(repository).orElse(null),
+      pageLookup.pageExists(repository, Duration.ofNanos(Math.max(0, pageLookupDeadline - System.nanoTime()))).orElse(null)
+    );
+  }
+
+  private Response ndjson(Stream<?> lines) {
+    return ndjson(sink -> lines.forEachOrdered(sink));
+  }
+
+  private Response ndjson(NdjsonProducer producer) {
+    StreamingOutput output = stream -> {
+      try (SequenceWriter writer = OBJECT_MAPPER.writer().withRootValueSeparator("\n").writeValues(stream)) {
+        producer.produce(line -> {
+          try {
+            writer.write(line);
+            writer.flush();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      }
+    };
+    return Response.ok(output, NDJSON).build();
+  }
+
+  @FunctionalInterface
+  private interface NdjsonProducer {
+    void produce(Consumer<Object> sink) throws IOException;
+  }
+
   private Repository loadRepository(String namespace, String name) {
     Repository repository = repositoryManager.get(new NamespaceAndName(namespace, name));
     if (repository == null) {
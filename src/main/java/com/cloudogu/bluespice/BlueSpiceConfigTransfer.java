@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.apache.shiro.authz.AuthorizationException;
+import sonia.scm.config.ConfigurationPermissions;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.repository.RepositoryPermissions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static com.cloudogu.bluespice.BlueSpiceContext.NAME;
+import static com.cloudogu.bluespice.BlueSpiceExportEntryDto.TYPE_GLOBAL;
+import static com.cloudogu.bluespice.BlueSpiceExportEntryDto.TYPE_NAMESPACE;
+import static com.cloudogu.bluespice.BlueSpiceExportEntryDto.TYPE_REPOSITORY;
+import static com.cloudogu.bluespice.BlueSpiceImportResultDto.Result.FAILED;
+import static com.cloudogu.bluespice.BlueSpiceImportResultDto.Result.UNCHANGED;
+import static com.cloudogu.bluespice.BlueSpiceImportResultDto.Result.UPDATED;
+
+/**
+ * Exports and imports the global, all namespace and all repository configurations as newline delimited json. Both
+ * directions work line by line and the repositories are exported page by page, so the whole dataset is never held in
+ * memory. Namespaces are exported before the repositories, because the normalization of a repository configuration
+ * depends on the configuration of its namespace.
+ */
+@Singleton
+public class BlueSpiceConfigTransfer {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final RepositoryManager repositoryManager;
+  private final BlueSpiceContext context;
+
+  @Inject
+  public BlueSpiceConfigTransfer(RepositoryManager repositoryManager, BlueSpiceContext context) {
+    this.repositoryManager = repositoryManager;
+    this.context = context;
+  }
+
+  public Stream<BlueSpiceExportEntryDto> export() {
+    return Stream.of(
+      Stream.of(exportGlobal()),
+      context.getNamespaceConfigurations()
+        .entrySet()
+        .stream()
+        .map(entry -> exportNamespace(entry.getKey(), entry.getValue())),
+      BlueSpiceRepositoryPages.stream(repositoryManager)
+        .filter(repository -> RepositoryPermissions.custom("configureBlueSpice", repository).isPermitted())
+        .map(this::exportRepository)
+    ).flatMap(Function.identity());
+  }
+
+  /**
+   * Exports all global settings except the webhook secret, which must not leave the server.
+   */
+  private BlueSpiceExportEntryDto exportGlobal() {
+    GlobalBlueSpiceConfig config = context.getConfiguration();
+    BlueSpiceExportEntryDto entry = new BlueSpiceExportEntryDto();
+    entry.setType(TYPE_GLOBAL);
+    entry.setBaseUrl(config.getBaseUrl());
+    entry.setUrlTemplate(config.getUrlTemplate());
+    entry.setApiUrl(config.getApiUrl());
+    entry.setRules(config.getRules());
+    entry.setInstances(config.getInstances());
+    entry.setLinkCheckEnabled(config.isLinkCheckEnabled());
+    entry.setHideBrokenLinks(config.isHideBrokenLinks());
+    entry.setLinkCheckDirectUrls(config.isLinkCheckDirectUrls());
+    entry.setWarmUpEnabled(config.isWarmUpEnabled());
+    return entry;
+  }
+
+  private BlueSpiceExportEntryDto exportNamespace(String namespace, BlueSpiceNamespaceConfig config) {
+    BlueSpiceExportEntryDto entry = new BlueSpiceExportEntryDto();
+    entry.setType(TYPE_NAMESPACE);
+    entry.setNamespace(namespace);
+    entry.setBaseUrl(config.getBaseUrl());
+    entry.setRelativePath(config.getRelativePath());
+    return entry;
+  }
+
+  private BlueSpiceExportEntryDto exportRepository(Repository repository) {
+    BlueSpiceRepositoryConfig config = context.getConfiguration(repository);
+    BlueSpiceExportEntryDto entry = new BlueSpiceExportEntryDto();
+    entry.setType(TYPE_REPOSITORY);
+    entry.setNamespace(repository.getNamespace());
+    entry.setName(repository.getName());
+    entry.setRelativePath(config.getRelativePath());
+    entry.setDirectUrl(config.getDirectUrl());
+    entry.setOverride(config.getOverride());
+    entry.setInstanceId(config.getInstanceId());
+    return entry;
+  }
+
+  /**
+   * Imports all lines of the given reader. Existing configurations are overwritten, so the import can be repeated
+   * safely. In dry run mode the lines are only validated and normalized.
+   */
+  public void importConfiguration(BufferedReader reader, boolean dryRun, Consumer<BlueSpiceImportResultDto> results) throws IOException {
+    Import anImport = new Import(dryRun, context.getConfiguration());
+    int lineNumber = 0;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (!line.isBlank()) {
+        results.accept(anImport.importLine(lineNumber, line));
+      }
+    }
+  }
+
+  private class Import {
+
+    private final boolean dryRun;
+    private GlobalBlueSpiceConfig globalConfig;
+    /**
+     * Namespace configurations of the previous lines, which are not stored in dry run mode. An empty configuration
+     * removes the namespace layer.
+     */
+    private final Map<String, Optional<BlueSpiceNamespaceConfig>> namespaceConfigs = new HashMap<>();
+
+    private Import(boolean dryRun, GlobalBlueSpiceConfig globalConfig) {
+      this.dryRun = dryRun;
+      this.globalConfig = globalConfig;
+    }
+
+    BlueSpiceImportResultDto importLine(int lineNumber, String line) {
+      BlueSpiceExportEntryDto entry;
+      try {
+        entry = OBJECT_MAPPER.readValue(line, BlueSpiceExportEntryDto.class);
+      } catch (JsonProcessingException e) {
+        return new BlueSpiceImportResultDto(lineNumber, null, null, FAILED, dryRun, "invalid json: " + e.getOriginalMessage());
+      }
+      try {
+        if (TYPE_GLOBAL.equals(entry.getType())) {
+          return new BlueSpiceImportResultDto(lineNumber, null, null, importGlobal(entry), dryRun, null);
+        } else if (TYPE_NAMESPACE.equals(entry.getType())) {
+          return new BlueSpiceImportResultDto(lineNumber, entry.getNamespace(), null, importNamespace(entry), dryRun, null);
+        } else if (TYPE_REPOSITORY.equals(entry.getType())) {
+          return new BlueSpiceImportResultDto(lineNumber, entry.getNamespace(), entry.getName(), importRepository(entry), dryRun, null);
+        }
+        return new BlueSpiceImportResultDto(lineNumber, entry.getNamespace(), entry.getName(), FAILED, dryRun, "unknown type " + entry.getType());
+      } catch (AuthorizationException e) {
+        return new BlueSpiceImportResultDto(lineNumber, entry.getNamespace(), entry.getName(), FAILED, dryRun, "not authorized");
+      } catch (RuntimeException e) {
+        return new BlueSpiceImportResultDto(lineNumber, entry.getNamespace(), entry.getName(), FAILED, dryRun, e.getMessage());
+      }
+    }
+
+    private BlueSpiceImportResultDto.Result importGlobal(BlueSpiceExportEntryDto entry) {
+      ConfigurationPermissions.write(NAME).check();
+      // settings which are not part of the export, like the webhook secret, or not part of older exports are kept
+      GlobalBlueSpiceConfig config = context.getConfiguration().copy();
+      config.setBaseUrl(entry.getBaseUrl());
+      config.setUrlTemplate(entry.getUrlTemplate());
+      config.setRules(entry.getRules() == null ? new ArrayList<>() : entry.getRules());
+      if (entry.getInstances() != null) {
+        config.setInstances(entry.getInstances());
+      }
+      if (entry.getApiUrl() != null) {
+        config.setApiUrl(entry.getApiUrl());
+      }
+      if (entry.getLinkCheckEnabled() != null) {
+        config.setLinkCheckEnabled(entry.getLinkCheckEnabled());
+      }
+      if (entry.getHideBrokenLinks() != null) {
+        config.setHideBrokenLinks(entry.getHideBrokenLinks());
+      }
+      if (entry.getLinkCheckDirectUrls() != null) {
+        config.setLinkCheckDirectUrls(entry.getLinkCheckDirectUrls());
+      }
+      if (entry.getWarmUpEnabled() != null) {
+        config.setWarmUpEnabled(entry.getWarmUpEnabled());
+      }
+      BlueSpiceContext.normalize(config);
+      config.getCompiledUrlTemplate();
+      config.getCompiledRules();
+      boolean unchanged = config.equals(context.getConfiguration());
+      globalConfig = config;
+      if (unchanged) {
+        return UNCHANGED;
+      }
+      if (!dryRun) {
+        context.storeConfiguration(config);
+      }
+      return UPDATED;
+    }
+
+    private BlueSpiceImportResultDto.Result importNamespace(BlueSpiceExportEntryDto entry) {
+      ConfigurationPermissions.write(NAME).check();
+      if (Strings.isNullOrEmpty(entry.getNamespace())) {
+        throw new IllegalArgumentException("namespace is missing");
+      }
+      BlueSpiceNamespaceConfig config = new BlueSpiceNamespaceConfig();
+      config.setBaseUrl(entry.getBaseUrl());
+      config.setRelativePath(entry.getRelativePath());
+      BlueSpiceContext.normalize(config);
+      Optional<BlueSpiceNamespaceConfig> imported = Strings.isNullOrEmpty(config.getBaseUrl()) && Strings.isNullOrEmpty(config.getRelativePath())
+        ? Optional.empty() : Optional.of(config);
+      boolean unchanged = imported.equals(getNamespaceConfiguration(entry.getNamespace()));
+      namespaceConfigs.put(entry.getNamespace(), imported);
+      if (unchanged) {
+        return UNCHANGED;
+      }
+      if (!dryRun) {
+        context.storeNamespaceConfiguration(entry.getNamespace(), config);
+      }
+      return UPDATED;
+    }
+
+    private Optional<BlueSpiceNamespaceConfig> getNamespaceConfiguration(String namespace) {
+      return namespaceConfigs.containsKey(namespace) ? namespaceConfigs.get(namespace) : context.getNamespaceConfiguration(namespace);
+    }
+
+    private BlueSpiceImportResultDto.Result importRepository(BlueSpiceExportEntryDto entry) {
+      NamespaceAndName namespaceAndName = new NamespaceAndName(entry.getNamespace(), entry.getName());
+      Repository repository = repositoryManager.get(namespaceAndName);
+      if (repository == null) {
+        throw new IllegalArgumentException("repository " + namespaceAndName + " not found");
+      }
+      RepositoryPermissions.custom("configureBlueSpice", repository).check();
+      BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+      config.setRelativePath(entry.getRelativePath());
+      config.setDirectUrl(entry.getDirectUrl());
+      config.setInstanceId(entry.getInstanceId());
+      if (entry.getOverride() != null) {
+        config.setOverride(entry.getOverride());
+      }
+      BlueSpiceContext.normalize(config, globalConfig, getNamespaceConfiguration(repository.getNamespace()).orElse(null));
+      if (config.equals(context.getConfiguration(repository))) {
+        return UNCHANGED;
+      }
+      if (!dryRun) {
+        context.storeConfiguration(config, repository);
+      }
+      return UPDATED;
+    }
+  }
+}
@@ -16,35 +16,174 @@
 
 package com.cloudogu.bluespice;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.Striped;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import sonia.scm.repository.Repository;
 import sonia.scm.store.ConfigurationStore;
 import sonia.scm.store.ConfigurationStoreFactory;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
 
 @Singleton
 public class BlueSpiceContext {
 
   public static final String NAME = "blueSpice";
+  static final String NAMESPACE_STORE_NAME = "blueSpiceNamespaces";
+
+  static final int MAX_CACHED_REPOSITORY_CONFIGS = 10000;
+  static final Duration REPOSITORY_CONFIG_CACHE_EXPIRY = Duration.ofHours(1);
 
   private final ConfigurationStoreFactory storeFactory;
+  private final BlueSpiceRepositoryConfigStore repositoryStore;
+  private final DataStore<BlueSpiceNamespaceConfig> namespaceStore;
+  private final BlueSpiceMetrics metrics;
+  /**
+   * Cached repository configurations. Entries are only loaded and written while the lock of their repository is held,
+   * so a load can not overwrite a newer configuration. The expiry bounds the lifetime of configurations which are
+   * changed in the store without this context.
+   */
+  private final Cache<String, BlueSpiceRepositoryConfig> repositoryConfigCache = CacheBuilder.newBuilder()
+    .maximumSize(MAX_CACHED_REPOSITORY_CONFIGS)
+    .expireAfterWrite(REPOSITORY_CONFIG_CACHE_EXPIRY)
+    .recordStats()
+    .build();
+  private final AtomicReference<GlobalBlueSpiceConfig> globalConfig = new AtomicReference<>();
+  private final Map<String, Optional<BlueSpiceNamespaceConfig>> namespaceConfigs = new ConcurrentHashMap<>();
+  private final List<BlueSpiceConfigListener> listeners = new CopyOnWriteArrayList<>();
+  private final Object globalLock = new Object();
+  private final Striped<Lock> repositoryLocks = Striped.lock(64);
+  private final Object activeLinksLock = new Object();
+  /**
+   * Ids of the repositories whose stored configuration links to BlueSpice, read from the store on first access.
+   */
+  private Set<String> activeLinks;
 
   @Inject
-  public BlueSpiceContext(ConfigurationStoreFactory storeFactory) {
+  public BlueSpiceContext(ConfigurationStoreFactory storeFactory, DataStoreFactory dataStoreFactory, BlueSpiceMetrics metrics) {
+    this(storeFactory, dataStoreFactory, metrics, BlueSpiceRepositoryConfigStore.Type.fromSystemProperty());
+  }
+
+  @VisibleForTesting
+  BlueSpiceContext(ConfigurationStoreFactory storeFactory, DataStoreFactory dataStoreFactory, BlueSpiceMetrics metrics, BlueSpiceRepositoryConfigStore.Type repositoryStoreType) {
     this.storeFactory = storeFactory;
+    this.repositoryStore = BlueSpiceRepositoryConfigStore.create(repositoryStoreType, storeFactory, dataStoreFactory);
+    this.namespaceStore = dataStoreFactory.withType(BlueSpiceNamespaceConfig.class).withName(NAMESPACE_STORE_NAME).build();
+    this.metrics = metrics;
+    metrics.monitorCache(repositoryConfigCache, "repository.config.cache");
+    metrics.activeLinks(this, BlueSpiceContext::countActiveLinks);
   }
 
+  /**
+   * Returns the current snapshot of the global configuration. The snapshot is loaded lazily on first access and is
+   * shared between all callers and can not be modified. Use {@link #storeConfiguration(GlobalBlueSpiceConfig)}
+   * to replace it.
+   */
   public GlobalBlueSpiceConfig getConfiguration() {
-    return createGlobalStore().getOptional().orElse(new GlobalBlueSpiceConfig());
+    GlobalBlueSpiceConfig snapshot = globalConfig.get();
+    if (snapshot == null) {
+      metrics.globalStoreRead();
+      GlobalBlueSpiceConfig loaded = createGlobalStore().getOptional().orElse(new GlobalBlueSpiceConfig()).snapshot();
+      if (globalConfig.compareAndSet(null, loaded)) {
+        return loaded;
+      }
+      return globalConfig.get();
+    }
+    return snapshot;
   }
 
+  /**
+   * Returns the configuration of the given namespace or an empty optional, if the namespace is not configured.
+   */
+  public Optional<BlueSpiceNamespaceConfig> getNamespaceConfiguration(String namespace) {
+    return namespaceConfigs.computeIfAbsent(namespace, ns -> Optional.ofNullable(namespaceStore.get(ns)));
+  }
+
+  /**
+   * Returns the configurations of all configured namespaces by namespace.
+   */
+  public Map<String, BlueSpiceNamespaceConfig> getNamespaceConfigurations() {
+    return namespaceStore.getAll();
+  }
+
+  /**
+   * Returns a copy of the configuration of the given repository, which may be modified by the caller.
+   */
   public BlueSpiceRepositoryConfig getConfiguration(Repository repository) {
-    return createStore(repository.getId()).getOptional().orElse(new BlueSpiceRepositoryConfig());
+    return getRepositoryConfiguration(repository.getId()).copy();
+  }
+
+  /**
+   * Returns the title of the wiki page of the given repository in the wiki of the configured api. The result is empty,
+   * if no api is configured, if the repository has no relative path or if the page belongs to another wiki.
+   */
+  public Optional<String> getPageTitle(Repository repository) {
+    if (Strings.isNullOrEmpty(getConfiguration().getApiUrl())) {
+      return Optional.empty();
+    }
+    BlueSpiceRepositoryConfig config = getConfiguration(repository);
+    if (!OverrideOption.APPEND.equals(config.getOverride()) || Strings.isNullOrEmpty(config.getRelativePath())) {
+      return Optional.empty();
+    }
+    if (config.getInstanceId() != null) {
+      // the page belongs to a registered instance
+      return Optional.empty();
+    }
+    Optional<BlueSpiceNamespaceConfig> namespaceConfig = getNamespaceConfiguration(repository.getNamespace());
+    if (namespaceConfig.map(BlueSpiceNamespaceConfig::getBaseUrl).filter(url -> !url.isEmpty()).isPresent()) {
+      // the page belongs to another wiki
+      return Optional.empty();
+    }
+    return Optional.of(
+      namespaceConfig
+        .map(BlueSpiceNamespaceConfig::getRelativePath)
+        .filter(path -> !path.isEmpty())
+        .map(path -> path + "/" + config.getRelativePath())
+        .orElse(config.getRelativePath())
+    );
+  }
+
+  private BlueSpiceRepositoryConfig getRepositoryConfiguration(String repositoryId) {
+    BlueSpiceRepositoryConfig cached = repositoryConfigCache.getIfPresent(repositoryId);
+    if (cached != null) {
+      return cached;
+    }
+    Lock lock = repositoryLocks.get(repositoryId);
+    lock.lock();
+    try {
+      // the configuration may have been loaded or stored while waiting for the lock, the map view records no stats
+      cached = repositoryConfigCache.asMap().get(repositoryId);
+      if (cached == null) {
+        cached = readConfiguration(repositoryId);
+        repositoryConfigCache.put(repositoryId, cached);
+      }
+      return cached;
+    } finally {
+      lock.unlock();
+    }
   }
 
-  private ConfigurationStore<BlueSpiceRepositoryConfig> createStore(String repositoryId) {
-    return storeFactory.withType(BlueSpiceRepositoryConfig.class).withName(NAME).forRepository(repositoryId).build();
+  private BlueSpiceRepositoryConfig readConfiguration(String repositoryId) {
+    metrics.repositoryStoreRead();
+    return repositoryStore.get(repositoryId).orElse(new BlueSpiceRepositoryConfig());
   }
 
   private ConfigurationStore<GlobalBlueSpiceConfig> createGlobalStore() {
@@ -52,22 +191,300 @@ public class BlueSpiceContext {
   }
 
   public void storeConfiguration(GlobalBlueSpiceConfig configuration) {
+    normalize(configuration);
+    GlobalBlueSpiceConfig snapshot;
+    synchronized (globalLock) {
+      versionInstances(configuration, getConfiguration());
+      snapshot = configuration.snapshot();
+      createGlobalStore().set(configuration);
+      metrics.globalStoreWritten();
+      globalConfig.set(snapshot);
+    }
+    listeners.forEach(listener -> listener.globalConfigChanged(snapshot));
+  }
+
+  /**
+   * Stores the global configuration only if the current configuration matches the given precondition. The check and
+   * the update are atomic, so two concurrent updates of the same version can not both succeed.
+   *
+   * @return {@code false}, if the precondition did not match and nothing was stored
+   */
+  public boolean storeConfiguration(GlobalBlueSpiceConfig configuration, Predicate<GlobalBlueSpiceConfig> precondition) {
+    synchronized (globalLock) {
+      if (!precondition.test(getConfiguration())) {
+        return false;
+      }
+      storeConfiguration(configuration);
+      return true;
+    }
+  }
+
+  public void storeNamespaceConfiguration(String namespace, BlueSpiceNamespaceConfig configuration) {
+    normalize(configuration);
+    try {
+      if (Strings.isNullOrEmpty(configuration.getBaseUrl()) && Strings.isNullOrEmpty(configuration.getRelativePath())) {
+        namespaceStore.remove(namespace);
+      } else {
+        namespaceStore.put(namespace, configuration);
+      }
+    } finally {
+      namespaceConfigs.remove(namespace);
+      listeners.forEach(listener -> listener.namespaceConfigChanged(namespace));
+    }
+  }
+
+  public void storeConfiguration(BlueSpiceRepositoryConfig configuration, Repository repository) {
+    normalize(configuration, getConfiguration(), getNamespaceConfiguration(repository.getNamespace()).orElse(null));
+    String repositoryId = repository.getId();
+    Lock lock = repositoryLocks.get(repositoryId);
+    lock.lock();
+    boolean stored = false;
+    try {
+      repositoryStore.set(repositoryId, configuration);
+      metrics.repositoryStoreWritten();
+      repositoryConfigCache.put(repositoryId, configuration.copy());
+      updateActiveLink(repositoryId, configuration);
+      stored = true;
+    } finally {
+      if (!stored) {
+        // the store may have been written partially
+        repositoryConfigCache.invalidate(repositoryId);
+      }
+      lock.unlock();
+      listeners.forEach(listener -> listener.repositoryConfigChanged(repositoryId));
+    }
+  }
+
+  /**
+   * Stores the repository configuration only if the current configuration of the repository matches the given
+   * precondition. The check and the update are atomic, so two concurrent updates of the same version can not both
+   * succeed.
+   *
+   * @return {@code false}, if the precondition did not match and nothing was stored
+   */
+  public boolean storeConfiguration(BlueSpiceRepositoryConfig configuration, Repository repository, Predicate<BlueSpiceRepositoryConfig> precondition) {
+    Lock lock = repositoryLocks.get(repository.getId());
+    lock.lock();
+    try {
+      if (!precondition.test(getConfiguration(repository))) {
+        return false;
+      }
+      storeConfiguration(configuration, repository);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Normalizes the global configuration the same way it is normalized before it is stored.
+   */
+  static void normalize(GlobalBlueSpiceConfig configuration) {
+    String baseUrl = configuration.getBaseUrl();
+    if(baseUrl != null && baseUrl.endsWith("/")) {
+      configuration.setBaseUrl(baseUrl.substring(0, baseUrl.length() - 1));
+    }
+    String urlTemplate = configuration.getUrlTemplate();
+    if(urlTemplate != null && urlTemplate.startsWith("/")) {
+      configuration.setUrlTemplate(urlTemplate.substring(1));
+    }
+    if (configuration.getInstances() != null) {
+      for (BlueSpiceInstance instance : configuration.getInstances()) {
+        String instanceUrl = instance.getBaseUrl();
+        if (instanceUrl != null && instanceUrl.endsWith("/")) {
+          instance.setBaseUrl(instanceUrl.substring(0, instanceUrl.length() - 1));
+        }
+      }
+    }
+  }
+
+  /**
+   * Takes the versions of the registered instances over from the previous configuration and increases the version of
+   * each instance which is new or whose urls have changed.
+   */
+  private static void versionInstances(GlobalBlueSpiceConfig configuration, GlobalBlueSpiceConfig previous) {
+    if (configuration.getInstances() == null) {
+      return;
+    }
+    for (BlueSpiceInstance instance : configuration.getInstances()) {
+      Optional<BlueSpiceInstance> before = previous.getInstance(instance.getId());
+      long version = before.map(BlueSpiceInstance::getVersion).orElse(0L);
+      boolean unchanged = before
+        .filter(b -> Objects.equals(b.getBaseUrl(), instance.getBaseUrl()) && Objects.equals(b.getApiUrl(), instance.getApiUrl()))
+        .isPresent();
+      // version 0 is reserved for missing instances
+      instance.setVersion(unchanged ? Math.max(version, 1) : version + 1);
+    }
+  }
+
+  /**
+   * Normalizes the namespace configuration the same way it is normalized before it is stored.
+   */
+  static void normalize(BlueSpiceNamespaceConfig configuration) {
     String baseUrl = configuration.getBaseUrl();
-    if(baseUrl.endsWith("/")) {
+    if (baseUrl != null && baseUrl.endsWith("/")) {
       configuration.setBaseUrl(baseUrl.substring(0, baseUrl.length() - 1));
     }
-    createGlobalStore().set(configuration);
+    String relativePath = configuration.getRelativePath();
+    if (relativePath != null) {
+      relativePath = relativePath.startsWith("/") ? relativePath.substring(1) : relativePath;
+      relativePath = relativePath.endsWith("/") ? relativePath.substring(0, relativePath.length() - 1) : relativePath;
+      configuration.setRelativePath(relativePath);
+    }
   }
 
-  public void storeConfiguration(BlueSpiceRepositoryConfig configuration, String repositoryId) {
-    GlobalBlueSpiceConfig globalConfig = getConfiguration();
-    if(Strings.isNullOrEmpty(globalConfig.getBaseUrl())) {
+  /**
+   * Normalizes the repository configuration the same way it is normalized before it is stored. Without any base url
+   * the configuration can only link to its direct url. The base url of the namespace configuration, which may be
+   * {@code null}, takes precedence over the global one.
+   */
+  static void normalize(BlueSpiceRepositoryConfig configuration, GlobalBlueSpiceConfig globalConfig, BlueSpiceNamespaceConfig namespaceConfig) {
+    if (Strings.isNullOrEmpty(configuration.getInstanceId())) {
+      configuration.setInstanceId(null);
+    }
+    String baseUrl = namespaceConfig == null || Strings.isNullOrEmpty(namespaceConfig.getBaseUrl()) ? globalConfig.getBaseUrl() : namespaceConfig.getBaseUrl();
+    if(Strings.isNullOrEmpty(baseUrl) && configuration.getInstanceId() == null) {
       configuration.setOverride(OverrideOption.OVERRIDE);
     }
     String relativePath = configuration.getRelativePath();
     if(!Strings.isNullOrEmpty(relativePath) && relativePath.startsWith("/")) {
       configuration.setRelativePath(relativePath.replaceFirst("/",""));
     }
-    createStore(repositoryId).set(configuration);
+  }
+
+  /**
+   * Drops the cached configuration of the given repository, so that the next access reads it from the store again.
+   */
+  public void invalidate(String repositoryId) {
+    Lock lock = repositoryLocks.get(repositoryId);
+    lock.lock();
+    try {
+      repositoryConfigCache.invalidate(repositoryId);
+    } finally {
+      lock.unlock();
+    }
+    listeners.forEach(listener -> listener.repositoryConfigChanged(repositoryId));
+  }
+
+  /**
+   * Removes the stored configuration of a deleted repository.
+   */
+  public void removeConfiguration(String repositoryId) {
+    Lock lock = repositoryLocks.get(repositoryId);
+    lock.lock();
+    try {
+      repositoryStore.remove(repositoryId);
+      updateActiveLink(repositoryId, null);
+    } finally {
+      invalidate(repositoryId);
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes the stored configurations of all repositories which are not part of the given live repositories. Only
+   * stores which can be enumerated are cleaned up, configurations stored per repository are deleted together with
+   * their repository.
+   *
+   * @return number of removed configurations
+   */
+  int removeOrphanedConfigurations(Set<String> repositoryIds) {
+    int removed = 0;
+    for (String repositoryId : repositoryStore.getRepositoryIds()) {
+      if (!repositoryIds.contains(repositoryId)) {
+        removeConfiguration(repositoryId);
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Drops the cached configurations of all repositories which are not part of the given live repositories.
+   *
+   * @return number of dropped cache entries
+   */
+  int retainRepositories(Set<String> repositoryIds) {
+    int removed = 0;
+    for (String repositoryId : repositoryConfigCache.asMap().keySet()) {
+      if (!repositoryIds.contains(repositoryId)) {
+        invalidate(repositoryId);
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Removes the configurations of all namespaces which are not part of the given live namespaces.
+   *
+   * @return number of removed namespace configurations
+   */
+  int retainNamespaces(Set<String> namespaces) {
+    int removed = 0;
+    for (String namespace : namespaceStore.getAll().keySet()) {
+      if (!namespaces.contains(namespace)) {
+        namespaceStore.remove(namespace);
+        namespaceConfigs.remove(namespace);
+        listeners.forEach(listener -> listener.namespaceConfigChanged(namespace));
+        removed++;
+      }
+    }
+    namespaceConfigs.keySet().removeIf(namespace -> !namespaces.contains(namespace));
+    return removed;
+  }
+
+  /**
+   * Returns the number of repositories whose stored configuration links to BlueSpice, either with a direct url or with
+   * a path appended to a base url.
+   */
+  int countActiveLinks() {
+    synchronized (activeLinksLock) {
+      if (activeLinks == null) {
+        activeLinks = new HashSet<>();
+        repositoryStore.getAll().forEach((repositoryId, configuration) -> {
+          if (hasActiveLink(configuration)) {
+            activeLinks.add(repositoryId);
+          }
+        });
+      }
+      return activeLinks.size();
+    }
+  }
+
+  private void updateActiveLink(String repositoryId, BlueSpiceRepositoryConfig configuration) {
+    synchronized (activeLinksLock) {
+      // the links are counted with the first access
+      if (activeLinks == null) {
+        return;
+      }
+      if (configuration != null && hasActiveLink(configuration)) {
+        activeLinks.add(repositoryId);
+      } else {
+        activeLinks.remove(repositoryId);
+      }
+    }
+  }
+
+  /**
+   * A configuration is normalized to {@link OverrideOption#OVERRIDE} before it is stored, if there is no base url to
+   * append to.
+   */
+  private static boolean hasActiveLink(BlueSpiceRepositoryConfig configuration) {
+    if (OverrideOption.OVERRIDE.equals(configuration.getOverride())) {
+      return !Strings.isNullOrEmpty(configuration.getDirectUrl());
+    }
+    return OverrideOption.APPEND.equals(configuration.getOverride());
+  }
+
+  void addListener(BlueSpiceConfigListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Returns hit and miss counters of the repository configuration cache.
+   */
+  public CacheStats getRepositoryConfigCacheStats() {
+    return repositoryConfigCache.stats();
   }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.inject.servlet.RequestScoped;
+import jakarta.inject.Inject;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryPermissions;
+
+/**
+ * Request scoped state, which is shared by the enrichment of all repositories of a single response. Permissions and
+ * the links are resolved once per request instead of once per repository.
+ */
+@RequestScoped
+public class BlueSpiceEnrichmentContext {
+
+  private final ScmPathInfoStore scmPathInfoStore;
+
+  private Boolean configureAllPermitted;
+  private BlueSpiceLinks links;
+
+  @Inject
+  public BlueSpiceEnrichmentContext(ScmPathInfoStore scmPathInfoStore) {
+    this.scmPathInfoStore = scmPathInfoStore;
+  }
+
+  public boolean isConfigurePermitted(Repository repository) {
+    if (configureAllPermitted == null) {
+      configureAllPermitted = RepositoryPermissions.custom("configureBlueSpice", "*").isPermitted();
+    }
+    return configureAllPermitted || RepositoryPermissions.custom("configureBlueSpice", repository).isPermitted();
+  }
+
+  public String configLink(Repository repository) {
+    return links().repositoryConfig(repository);
+  }
+
+  public String previewLink(Repository repository) {
+    return links().pagePreview(repository);
+  }
+
+  private BlueSpiceLinks links() {
+    if (links == null) {
+      links = BlueSpiceLinks.of(scmPathInfoStore.get());
+    }
+    return links;
+  }
+}
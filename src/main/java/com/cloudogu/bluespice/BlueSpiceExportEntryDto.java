@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Single line of a BlueSpice configuration export. The global configuration is exported with type {@code global},
+ * each namespace configuration with type {@code namespace} and each repository configuration with type
+ * {@code repository}.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BlueSpiceExportEntryDto {
+
+  static final String TYPE_GLOBAL = "global";
+  static final String TYPE_NAMESPACE = "namespace";
+  static final String TYPE_REPOSITORY = "repository";
+
+  private String type;
+  private String baseUrl;
+  private String urlTemplate;
+  private String apiUrl;
+  private Boolean linkCheckEnabled;
+  private Boolean hideBrokenLinks;
+  private Boolean linkCheckDirectUrls;
+  private Boolean warmUpEnabled;
+  private List<LinkRule> rules;
+  private List<BlueSpiceInstance> instances;
+  private String namespace;
+  private String name;
+  private String relativePath;
+  private String directUrl;
+  private OverrideOption override;
+  private String instanceId;
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Named BlueSpice wiki of the instance registry of the global configuration. Repositories reference an instance by its
+ * id, so moving a wiki to another host only requires to change the registry. The version is increased with every
+ * change of the urls and is maintained by {@link BlueSpiceContext}, so it is not part of the equality.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlAccessorType(XmlAccessType.FIELD)
+public class BlueSpiceInstance {
+
+  static final String VALID_ID = "^[A-Za-z0-9._\\-]+$";
+
+  @NotEmpty
+  @Pattern(regexp = VALID_ID)
+  private String id;
+  @NotEmpty
+  private String baseUrl;
+  private String apiUrl;
+  @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+  @EqualsAndHashCode.Exclude
+  private long version;
+
+  BlueSpiceInstance copy() {
+    return new BlueSpiceInstance(id, baseUrl, apiUrl, version);
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Repository;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Evicts the cached state of wiki pages, which have been changed in the wiki. Changes which arrive within
+ * {@link #COALESCE_DELAY} are collected and evicted together, so a burst of changes results in a single pass over the
+ * affected repositories. The pages are mapped to repositories by the titles of their resolved links, including links
+ * built by rules or the url template, so only the cache entries of those repositories are evicted.
+ */
+@Singleton
+public class BlueSpiceInvalidation implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlueSpiceInvalidation.class);
+
+  static final Duration COALESCE_DELAY = Duration.ofSeconds(2);
+
+  private final BlueSpiceContext context;
+  private final BlueSpiceLinkResolver linkResolver;
+  private final BlueSpiceLinkIndex linkIndex;
+  private final BlueSpicePageLookup pageLookup;
+  private final BlueSpicePagePreview pagePreview;
+  private final BlueSpiceLinkChecker linkChecker;
+  private final BlueSpicePageIndexer pageIndexer;
+  private final ScheduledExecutorService executor;
+
+  private final Set<String> changedTitles = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  @Inject
+  public BlueSpiceInvalidation(BlueSpiceContext context, BlueSpiceLinkResolver linkResolver, BlueSpiceLinkIndex linkIndex, BlueSpicePageLookup pageLookup, BlueSpicePagePreview pagePreview, BlueSpiceLinkChecker linkChecker, BlueSpicePageIndexer pageIndexer) {
+    this(
+      context, linkResolver, linkIndex, pageLookup, pagePreview, linkChecker, pageIndexer,
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("BlueSpiceInvalidation-%d").setDaemon(true).build())
+    );
+  }
+
+  @VisibleForTesting
+  BlueSpiceInvalidation(BlueSpiceContext context, BlueSpiceLinkResolver linkResolver, BlueSpiceLinkIndex linkIndex, BlueSpicePageLookup pageLookup, BlueSpicePagePreview pagePreview, BlueSpiceLinkChecker linkChecker, BlueSpicePageIndexer pageIndexer, ScheduledExecutorService executor) {
+    this.context = context;
+    this.linkResolver = linkResolver;
+    this.linkIndex = linkIndex;
+    this.pageLookup = pageLookup;
+    this.pagePreview = pagePreview;
+    this.linkChecker = linkChecker;
+    this.pageIndexer = pageIndexer;
+    this.executor = executor;
+  }
+
+  /**
+   * Marks the page with the given title as changed. The cached state is evicted with the next flush.
+   */
+  public void pageChanged(String title) {
+    String normalized = BlueSpicePageCrawler.normalize(title);
+    if (normalized.isEmpty()) {
+      return;
+    }
+    changedTitles.add(normalized);
+    if (flushScheduled.compareAndSet(false, true)) {
+      executor.schedule(this::flush, COALESCE_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Evicts the cached state of all repositories whose link points to one of the changed pages.
+   *
+   * @return number of affected repositories
+   */
+  @VisibleForTesting
+  int flush() {
+    flushScheduled.set(false);
+    List<String> titles = new ArrayList<>();
+    Iterator<String> iterator = changedTitles.iterator();
+    while (iterator.hasNext()) {
+      titles.add(iterator.next());
+      iterator.remove();
+    }
+    if (titles.isEmpty()) {
+      return 0;
+    }
+    Map<String, Repository> repositories = new LinkedHashMap<>();
+    for (String title : titles) {
+      for (Repository repository : linkIndex.findByPageTitle(title)) {
+        repositories.put(repository.getId(), repository);
+      }
+    }
+
+    List<String> repositoryTitles = new ArrayList<>();
+    List<String> links = new ArrayList<>();
+    for (Repository repository : repositories.values()) {
+      context.getPageTitle(repository).ifPresent(repositoryTitles::add);
+      linkResolver.resolve(repository).ifPresent(links::add);
+    }
+    pageLookup.invalidate(repositoryTitles);
+    pagePreview.invalidate(repositoryTitles);
+    linkChecker.invalidate(links);
+    pageIndexer.scheduleUpdate();
+    LOG.debug("evicted cached state of {} repositories for {} changed pages", repositories.size(), titles.size());
+    return repositories.size();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
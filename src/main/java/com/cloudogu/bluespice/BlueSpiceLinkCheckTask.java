@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import jakarta.inject.Inject;
+import sonia.scm.web.security.AdministrationContext;
+
+/**
+ * Scheduled probe of all BlueSpice links, which is only executed if the link check is enabled in the global
+ * configuration.
+ */
+public class BlueSpiceLinkCheckTask implements Runnable {
+
+  private final AdministrationContext administrationContext;
+  private final BlueSpiceContext context;
+  private final BlueSpiceLinkChecker linkChecker;
+
+  @Inject
+  public BlueSpiceLinkCheckTask(AdministrationContext administrationContext, BlueSpiceContext context, BlueSpiceLinkChecker linkChecker) {
+    this.administrationContext = administrationContext;
+    this.context = context;
+    this.linkChecker = linkChecker;
+  }
+
+  @Override
+  public void run() {
+    if (context.getConfiguration().isLinkCheckEnabled()) {
+      administrationContext.runAsAdmin(linkChecker::checkAll);
+    }
+  }
+}
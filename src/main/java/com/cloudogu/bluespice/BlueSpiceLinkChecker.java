@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Probes the resolved BlueSpice links of all repositories with {@code HEAD} requests. The probes run on a bounded pool
+ * and every host is probed by at most {@link #MAX_CHECKS_PER_HOST} requests at a time, so a check of many repositories
+ * does not flood the wiki. Results are kept for {@link #RESULT_TTL} and are shared by all repositories with the same
+ * url.
+ * <p>
+ * Direct urls are maintained by the owners of the repositories. To keep them from using the check to probe arbitrary
+ * hosts, only links to the hosts of the configured global, namespace and instance base urls are probed, unless an
+ * administrator enables the check of direct urls. Redirects are not followed for the same reason.
+ */
+@Singleton
+public class BlueSpiceLinkChecker implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlueSpiceLinkChecker.class);
+
+  static final int MAX_CONCURRENT_CHECKS = 8;
+  static final int MAX_CHECKS_PER_HOST = 2;
+  static final Duration RESULT_TTL = Duration.ofHours(2);
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  private final RepositoryManager repositoryManager;
+  private final BlueSpiceContext context;
+  private final BlueSpiceLinkResolver linkResolver;
+  private final HttpClient client;
+  private final Executor executor;
+  private final Cache<String, LinkHealth> results;
+  private final AtomicBoolean checkRunning = new AtomicBoolean();
+  /**
+   * Semaphores are only kept while a probe of their host holds them, so the map does not grow with the hosts.
+   */
+  private final LoadingCache<String, Semaphore> hosts = CacheBuilder.newBuilder()
+    .weakValues()
+    .build(CacheLoader.from(host -> new Semaphore(MAX_CHECKS_PER_HOST)));
+
+  @Inject
+  public BlueSpiceLinkChecker(RepositoryManager repositoryManager, BlueSpiceContext context, BlueSpiceLinkResolver linkResolver) {
+    this(
+      repositoryManager,
+      context,
+      linkResolver,
+      HttpClient.newBuilder().connectTimeout(TIMEOUT).followRedirects(HttpClient.Redirect.NEVER).build(),
+      Executors.newFixedThreadPool(
+        MAX_CONCURRENT_CHECKS,
+        new ThreadFactoryBuilder().setNameFormat("BlueSpiceLinkChecker-%d").setDaemon(true).build()
+      ),
+      Ticker.systemTicker()
+    );
+  }
+
+  @VisibleForTesting
+  BlueSpiceLinkChecker(RepositoryManager repositoryManager, BlueSpiceContext context, BlueSpiceLinkResolver linkResolver, HttpClient client, Executor executor, Ticker ticker) {
+    this.repositoryManager = repositoryManager;
+    this.context = context;
+    this.linkResolver = linkResolver;
+    this.client = client;
+    this.executor = executor;
+    this.results = CacheBuilder.newBuilder()
+      .expireAfterWrite(RESULT_TTL.toMillis(), TimeUnit.MILLISECONDS)
+      .ticker(ticker)
+      .build();
+  }
+
+  /**
+   * Probes the links of all repositories. The links are collected on the calling thread, which therefore needs the
+   * permission to read all repositories. The returned future completes once every link has been probed. If a check is
+   * already running, no second one is started and the returned future is already completed.
+   */
+  public CompletableFuture<Void> checkAll() {
+    if (!checkRunning.compareAndSet(false, true)) {
+      LOG.debug("skipped BlueSpice link check, because another check is still running");
+      return CompletableFuture.completedFuture(null);
+    }
+    try {
+      return probeAll().whenComplete((result, e) -> checkRunning.set(false));
+    } catch (RuntimeException e) {
+      checkRunning.set(false);
+      throw e;
+    }
+  }
+
+  private CompletableFuture<Void> probeAll() {
+    Predicate<String> probed = probedUrls();
+    Set<String> urls = new LinkedHashSet<>();
+    int skipped = 0;
+    for (Repository repository : repositoryManager.getAll()) {
+      Optional<String> url = linkResolver.resolve(repository);
+      if (url.filter(probed).isPresent()) {
+        urls.add(url.get());
+      } else if (url.isPresent()) {
+        skipped++;
+      }
+    }
+    if (skipped > 0) {
+      LOG.debug("skipped {} BlueSpice links to hosts without configured base url", skipped);
+    }
+    long start = System.nanoTime();
+    List<CompletableFuture<LinkHealth>> checks = new ArrayList<>(urls.size());
+    for (String url : urls) {
+      checks.add(CompletableFuture.supplyAsync(() -> check(url), executor));
+    }
+    return CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new))
+      .thenRun(() -> LOG.info(
+        "checked {} BlueSpice links in {} ms, {} are broken",
+        urls.size(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+        checks.stream().map(CompletableFuture::join).filter(LinkHealth::isBroken).count()
+      ));
+  }
+
+  private Predicate<String> probedUrls() {
+    GlobalBlueSpiceConfig configuration = context.getConfiguration();
+    if (configuration.isLinkCheckDirectUrls()) {
+      return url -> true;
+    }
+    Set<String> origins = new HashSet<>();
+    origin(configuration.getBaseUrl()).ifPresent(origins::add);
+    configuration.getInstances().forEach(instance -> origin(instance.getBaseUrl()).ifPresent(origins::add));
+    context.getNamespaceConfigurations().values().forEach(namespace -> origin(namespace.getBaseUrl()).ifPresent(origins::add));
+    return url -> origin(url).filter(origins::contains).isPresent();
+  }
+
+  private static Optional<String> origin(String url) {
+    if (url == null || url.isEmpty()) {
+      return Optional.empty();
+    }
+    try {
+      URI uri = URI.create(url);
+      if (uri.getScheme() == null || uri.getHost() == null) {
+        return Optional.empty();
+      }
+      return Optional.of(uri.getScheme().toLowerCase(Locale.ENGLISH) + "://" + uri.getHost().toLowerCase(Locale.ENGLISH) + ":" + uri.getPort());
+    } catch (IllegalArgumentException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Returns the result of the last probe of the given url, if it is not older than {@link #RESULT_TTL}.
+   */
+  public Optional<LinkHealth> getHealth(String url) {
+    return Optional.ofNullable(results.getIfPresent(url));
+  }
+
+  /**
+   * Removes the results of the given urls, so they are probed again with the next check.
+   */
+  public void invalidate(Collection<String> urls) {
+    results.invalidateAll(urls);
+  }
+
+  /**
+   * Returns {@code true}, if broken links should be hidden and the last probe of the given url found no page.
+   */
+  public boolean isSuppressed(String url) {
+    if (!context.getConfiguration().isHideBrokenLinks()) {
+      return false;
+    }
+    LinkHealth health = results.getIfPresent(url);
+    return health != null && health.isBroken();
+  }
+
+  @Override
+  public void close() {
+    if (executor instanceof ExecutorService executorService) {
+      executorService.shutdownNow();
+    }
+  }
+
+  @VisibleForTesting
+  LinkHealth check(String url) {
+    LinkHealth health = probe(url);
+    results.put(url, health);
+    return health;
+  }
+
+  private LinkHealth probe(String url) {
+    URI uri;
+    try {
+      uri = URI.create(url);
+    } catch (IllegalArgumentException e) {
+      LOG.debug("BlueSpice link {} is not a valid uri", url, e);
+      return new LinkHealth(url, LinkHealth.Status.BROKEN, 0, Instant.now());
+    }
+    Semaphore permits = hosts.getUnchecked(String.valueOf(uri.getAuthority()));
+    try {
+      permits.acquire();
+      try {
+        int status = send(uri, "HEAD");
+        if (status == 405 || status == 501) {
+          // some servers do not implement HEAD
+          status = send(uri, "GET");
+        }
+        return new LinkHealth(url, status(status), status, Instant.now());
+      } finally {
+        permits.release();
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      LOG.debug("failed to check BlueSpice link {}", url, e);
+      return new LinkHealth(url, LinkHealth.Status.UNREACHABLE, 0, Instant.now());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new LinkHealth(url, LinkHealth.Status.UNREACHABLE, 0, Instant.now());
+    }
+  }
+
+  private int send(URI uri, String method) throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(uri)
+      .method(method, HttpRequest.BodyPublishers.noBody())
+      .timeout(TIMEOUT)
+      .build();
+    return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+  }
+
+  private static LinkHealth.Status status(int httpStatus) {
+    if (httpStatus == 404 || httpStatus == 410) {
+      return LinkHealth.Status.BROKEN;
+    } else if (httpStatus >= 400) {
+      // e.g. a wiki which requires a login, the page may exist anyway
+      return LinkHealth.Status.UNREACHABLE;
+    }
+    return LinkHealth.Status.OK;
+  }
+}
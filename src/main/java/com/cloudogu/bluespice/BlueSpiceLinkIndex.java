@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.web.security.AdministrationContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Finds repositories by the prefix of their resolved BlueSpice link. The reverse index of the
+ * {@link BlueSpiceLinkResolver} is completed once by resolving all repositories. Afterwards only repositories whose
+ * configuration changed since the last query have to be resolved again, so a query does not scan all repositories.
+ */
+@Singleton
+public class BlueSpiceLinkIndex {
+
+  private final AdministrationContext administrationContext;
+  private final RepositoryManager repositoryManager;
+  private final BlueSpiceLinkResolver linkResolver;
+
+  private volatile boolean complete;
+
+  @Inject
+  public BlueSpiceLinkIndex(AdministrationContext administrationContext, RepositoryManager repositoryManager, BlueSpiceLinkResolver linkResolver) {
+    this.administrationContext = administrationContext;
+    this.repositoryManager = repositoryManager;
+    this.linkResolver = linkResolver;
+  }
+
+  /**
+   * Returns all repositories with a BlueSpice link starting with the given prefix. The result is not filtered by the
+   * permissions of the current user.
+   */
+  public List<Repository> findByUrlPrefix(String prefix) {
+    return find(() -> linkResolver.findByUrlPrefix(prefix));
+  }
+
+  /**
+   * Returns all repositories with a BlueSpice link starting with the given path below the base url of their wiki, see
+   * {@link BlueSpiceLinkResolver#findByWikiPath(String)}. The result is not filtered by the permissions of the current
+   * user.
+   */
+  public List<Repository> findByWikiPath(String path) {
+    return find(() -> linkResolver.findByWikiPath(path));
+  }
+
+  /**
+   * Returns all repositories with a BlueSpice link to the page with the given normalized title in the wiki of the
+   * global base url. The result is not filtered by the permissions of the current user.
+   */
+  public List<Repository> findByPageTitle(String title) {
+    return find(() -> linkResolver.findByPageTitle(title));
+  }
+
+  private List<Repository> find(Supplier<Collection<String>> query) {
+    List<Repository> repositories = new ArrayList<>();
+    administrationContext.runAsAdmin(() -> {
+      update();
+      for (String id : query.get()) {
+        Repository repository = repositoryManager.get(id);
+        if (repository != null) {
+          repositories.add(repository);
+        }
+      }
+    });
+    return repositories;
+  }
+
+  private synchronized void update() {
+    if (!complete) {
+      linkResolver.drainDropped();
+      repositoryManager.getAll().forEach(linkResolver::resolve);
+      complete = true;
+    } else {
+      Collection<String> dropped = linkResolver.drainDropped();
+      for (String id : dropped) {
+        Repository repository = repositoryManager.get(id);
+        if (repository != null) {
+          linkResolver.resolve(repository);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Repository;
+
+import java.io.Closeable;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Index of the resolved BlueSpice link for each repository. Entries are computed once and are dropped if the
+ * configuration of the repository changes. They are computed again with their next resolution. Changes of the global
+ * or of a namespace configuration recompute the affected entries in a background pass, so requests keep finding
+ * their links. Links of repositories which reference a registered {@link BlueSpiceInstance} remember the version of
+ * the instance and are recomputed, if only the instance registry changes.
+ * <p>
+ * Entries keep only the url and the data needed to recompute them, not the repository itself. A sorted reverse index
+ * from url to repository ids allows to find repositories by url prefix without resolving every repository. Links into
+ * the wiki of the global base url are indexed by the title of their page as well, so changed pages can be mapped to
+ * repositories.
+ * <p>
+ * Every change of a configuration starts a new generation. A link which is computed by a request while the
+ * configuration changes may be based on the former configuration, it is returned but not kept in the index.
+ */
+@Singleton
+public class BlueSpiceLinkResolver implements BlueSpiceConfigListener, Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlueSpiceLinkResolver.class);
+
+  private final BlueSpiceContext context;
+  private final Executor executor;
+  private final Map<String, ResolvedLink> links = new ConcurrentHashMap<>();
+  private final NavigableMap<String, Set<String>> urls = new ConcurrentSkipListMap<>();
+  private final Map<String, Set<String>> titles = new ConcurrentHashMap<>();
+  private final Set<String> dropped = ConcurrentHashMap.newKeySet();
+  private final AtomicLong generation = new AtomicLong();
+  private final Object recomputeLock = new Object();
+  private GlobalBlueSpiceConfig lastConfiguration;
+
+  @Inject
+  public BlueSpiceLinkResolver(BlueSpiceContext context) {
+    this(context, Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setNameFormat("BlueSpiceLinkResolver-%d").setDaemon(true).build()
+    ));
+  }
+
+  @VisibleForTesting
+  BlueSpiceLinkResolver(BlueSpiceContext context, Executor executor) {
+    this.context = context;
+    this.executor = executor;
+    context.addListener(this);
+  }
+
+  /**
+   * Returns the BlueSpice url for the given repository or an empty optional, if the repository has no link.
+   */
+  public Optional<String> resolve(Repository repository) {
+    if (repository.getId() == null) {
+      return compute(repository).getUrl();
+    }
+    ResolvedLink link = links.get(repository.getId());
+    if (link != null) {
+      return link.getUrl();
+    }
+    ResolvedLink computed = compute(repository);
+    link = links.computeIfAbsent(repository.getId(), id -> indexed(id, computed));
+    if (link == computed && computed.getGeneration() != generation.get() && links.remove(repository.getId(), computed)) {
+      // the configuration changed during the computation, the link may be outdated
+      unindexed(repository.getId(), computed);
+      dropped.add(repository.getId());
+    }
+    return computed.getUrl();
+  }
+
+  /**
+   * Returns the ids of all repositories with a resolved link starting with the given prefix. Only repositories which
+   * have been resolved before are found, see {@link #drainDropped()}.
+   */
+  public List<String> findByUrlPrefix(String prefix) {
+    return urls.subMap(prefix, true, prefix + Character.MAX_VALUE, true)
+      .values()
+      .stream()
+      .flatMap(Collection::stream)
+      .toList();
+  }
+
+  /**
+   * Returns the ids of all repositories whose link points to the page with the given title in the wiki of the global
+   * base url. The title has to be normalized like MediaWiki does. Only repositories which have been resolved before
+   * are found, see {@link #drainDropped()}.
+   */
+  public Collection<String> findByPageTitle(String title) {
+    return List.copyOf(titles.getOrDefault(title, Set.of()));
+  }
+
+  /**
+   * Returns the ids of all repositories with a resolved link starting with the given path below the base url of their
+   * wiki. The base url of a repository is the base url of its instance, of its namespace or the global base url, so
+   * the same path is looked up below each of them. Direct urls are matched against all base urls. Only repositories
+   * which have been resolved before are found, see {@link #drainDropped()}.
+   */
+  public List<String> findByWikiPath(String path) {
+    GlobalBlueSpiceConfig globalConfig = context.getConfiguration();
+    Set<String> baseUrls = new LinkedHashSet<>();
+    baseUrls.add(globalConfig.getBaseUrl());
+    globalConfig.getInstances().forEach(instance -> baseUrls.add(instance.getBaseUrl()));
+    context.getNamespaceConfigurations().values().forEach(namespaceConfig -> baseUrls.add(namespaceConfig.getBaseUrl()));
+    String relativePath = path.startsWith("/") ? path.substring(1) : path;
+    Set<String> ids = new LinkedHashSet<>();
+    for (String baseUrl : baseUrls) {
+      if (Strings.isNullOrEmpty(baseUrl)) {
+        continue;
+      }
+      for (String id : findByUrlPrefix(baseUrl + "/" + relativePath)) {
+        ResolvedLink link = links.get(id);
+        if (link != null && (link.getBaseUrl() == null || baseUrl.equals(link.getBaseUrl()))) {
+          ids.add(id);
+        }
+      }
+    }
+    return List.copyOf(ids);
+  }
+
+  /**
+   * Returns and forgets the ids of all repositories whose link has been dropped because their configuration changed.
+   * Those repositories have to be resolved again to be found by {@link #findByUrlPrefix(String)}.
+   */
+  Collection<String> drainDropped() {
+    List<String> ids = List.copyOf(dropped);
+    ids.forEach(dropped::remove);
+    return ids;
+  }
+
+  private ResolvedLink indexed(String id, ResolvedLink link) {
+    synchronized (urls) {
+      dropped.remove(id);
+      link.getUrl().ifPresent(url -> urls.computeIfAbsent(url, u -> ConcurrentHashMap.newKeySet()).add(id));
+      if (link.getPageTitle() != null) {
+        titles.computeIfAbsent(link.getPageTitle(), t -> ConcurrentHashMap.newKeySet()).add(id);
+      }
+    }
+    return link;
+  }
+
+  private void unindexed(String id, ResolvedLink link) {
+    synchronized (urls) {
+      link.getUrl().ifPresent(url -> {
+        Set<String> ids = urls.get(url);
+        if (ids != null) {
+          ids.remove(id);
+          if (ids.isEmpty()) {
+            urls.remove(url);
+          }
+        }
+      });
+      if (link.getPageTitle() != null) {
+        Set<String> ids = titles.get(link.getPageTitle());
+        if (ids != null) {
+          ids.remove(id);
+          if (ids.isEmpty()) {
+            titles.remove(link.getPageTitle());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops the links of all repositories which are not part of the given live repositories.
+   *
+   * @return number of dropped links
+   */
+  int retainRepositories(Set<String> repositoryIds) {
+    int removed = 0;
+    for (String id : links.keySet()) {
+      if (!repositoryIds.contains(id)) {
+        ResolvedLink link = links.remove(id);
+        if (link != null) {
+          unindexed(id, link);
+          removed++;
+        }
+      }
+    }
+    dropped.removeIf(id -> !repositoryIds.contains(id));
+    return removed;
+  }
+
+  @Override
+  public void globalConfigChanged(GlobalBlueSpiceConfig configuration) {
+    long changed = generation.incrementAndGet();
+    executor.execute(() -> recomputeAfterGlobalChange(changed));
+  }
+
+  private void recomputeAfterGlobalChange(long changed) {
+    synchronized (recomputeLock) {
+      // listeners of concurrent changes may be called in any order, so the current configuration is compared
+      GlobalBlueSpiceConfig configuration = context.getConfiguration();
+      GlobalBlueSpiceConfig previous = lastConfiguration;
+      lastConfiguration = configuration;
+      int count;
+      if (previous != null && hasSameLinkSettings(previous, configuration)) {
+        count = recompute(changed, link -> link.getInstanceId() != null && link.getInstanceVersion() != configuration.getInstanceVersion(link.getInstanceId()));
+      } else {
+        count = recompute(changed, link -> true);
+      }
+      LOG.debug("recomputed {} BlueSpice links after change of global configuration", count);
+    }
+  }
+
+  private static boolean hasSameLinkSettings(GlobalBlueSpiceConfig previous, GlobalBlueSpiceConfig configuration) {
+    return Objects.equals(previous.getBaseUrl(), configuration.getBaseUrl())
+      && Objects.equals(previous.getUrlTemplate(), configuration.getUrlTemplate())
+      && Objects.equals(previous.getRules(), configuration.getRules());
+  }
+
+  @Override
+  public void namespaceConfigChanged(String namespace) {
+    long changed = generation.incrementAndGet();
+    executor.execute(() -> {
+      synchronized (recomputeLock) {
+        int count = recompute(changed, link -> namespace.equals(link.getNamespace()));
+        LOG.debug("recomputed {} BlueSpice links after change of namespace {}", count, namespace);
+      }
+    });
+  }
+
+  @Override
+  public void repositoryConfigChanged(String repositoryId) {
+    generation.incrementAndGet();
+    ResolvedLink link = links.remove(repositoryId);
+    if (link != null) {
+      unindexed(repositoryId, link);
+    }
+    dropped.add(repositoryId);
+  }
+
+  /**
+   * Recomputes all affected links, which are older than the given generation, against the current configuration.
+   * Links which are computed by requests during the pass are either younger or are removed by the request itself.
+   */
+  private int recompute(long changed, Predicate<ResolvedLink> affected) {
+    int count = 0;
+    for (Map.Entry<String, ResolvedLink> entry : links.entrySet()) {
+      ResolvedLink link = entry.getValue();
+      if (link.getGeneration() < changed && link.isDependsOnBaseUrl() && affected.test(link)) {
+        ResolvedLink recomputed = compute(new Repository(entry.getKey(), null, link.getNamespace(), link.getName()));
+        if (links.replace(entry.getKey(), link, recomputed)) {
+          unindexed(entry.getKey(), link);
+          indexed(entry.getKey(), recomputed);
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public void close() {
+    if (executor instanceof ExecutorService executorService) {
+      executorService.shutdownNow();
+    }
+  }
+
+  private ResolvedLink compute(Repository repository) {
+    // the generation is read first, so a change during the computation is detected
+    long computedGeneration = generation.get();
+    return compute(computedGeneration, context.getConfiguration(), repository);
+  }
+
+  private ResolvedLink compute(long computedGeneration, GlobalBlueSpiceConfig globalConfig, Repository repository) {
+    BlueSpiceRepositoryConfig config = context.getConfiguration(repository);
+    Optional<BlueSpiceNamespaceConfig> namespaceConfig = context.getNamespaceConfiguration(repository.getNamespace());
+    String instanceId = config.getInstanceId();
+    long instanceVersion = 0;
+    String baseUrl;
+    if (instanceId != null) {
+      Optional<BlueSpiceInstance> instance = globalConfig.getInstance(instanceId);
+      instanceVersion = instance.map(BlueSpiceInstance::getVersion).orElse(0L);
+      // a repository of a removed instance has no link instead of a link into another wiki
+      baseUrl = instance.map(BlueSpiceInstance::getBaseUrl).orElse(null);
+    } else {
+      baseUrl = namespaceConfig
+        .map(BlueSpiceNamespaceConfig::getBaseUrl)
+        .filter(url -> !url.isEmpty())
+        .orElse(globalConfig.getBaseUrl());
+    }
+    String path = config.getRelativePath();
+    String directUrl = config.getDirectUrl();
+    OverrideOption override = config.getOverride();
+
+    if (!Strings.isNullOrEmpty(directUrl) && OverrideOption.OVERRIDE.equals(override)) {
+      return new ResolvedLink(repository, directUrl, false, computedGeneration);
+    } else if (OverrideOption.APPEND.equals(override)) {
+      if (Strings.isNullOrEmpty(baseUrl)) {
+        return new ResolvedLink(repository.getNamespace(), repository.getName(), null, null, null, true, instanceId, instanceVersion, computedGeneration);
+      }
+      StringBuilder url = new StringBuilder(baseUrl);
+      namespaceConfig
+        .map(BlueSpiceNamespaceConfig::getRelativePath)
+        .filter(namespacePath -> !namespacePath.isEmpty())
+        .ifPresent(namespacePath -> url.append('/').append(namespacePath));
+      if (Strings.isNullOrEmpty(path)) {
+        appendGenericPath(globalConfig, repository, path, url);
+      } else {
+        url.append('/').append(path);
+      }
+      String pageTitle = instanceId == null && baseUrl.equals(globalConfig.getBaseUrl()) && url.length() > baseUrl.length() + 1
+        ? pageTitle(url.substring(baseUrl.length() + 1))
+        : null;
+      return new ResolvedLink(repository.getNamespace(), repository.getName(), url.toString(), baseUrl, pageTitle, true, instanceId, instanceVersion, computedGeneration);
+    }
+    return new ResolvedLink(repository, null, false, computedGeneration);
+  }
+
+  /**
+   * Derives the title of a page from its path below the base url of the wiki. For links with a relative path this is
+   * the title of {@link BlueSpiceContext#getPageTitle(Repository)}, links built by rules or the url template get
+   * their title the same way. The path is percent decoded and normalized like MediaWiki does.
+   */
+  @VisibleForTesting
+  static String pageTitle(String path) {
+    int fragment = path.indexOf('#');
+    String title = fragment < 0 ? path : path.substring(0, fragment);
+    if (title.indexOf('?') >= 0) {
+      // the page is addressed by query parameters, which can not be mapped to a title
+      return null;
+    }
+    try {
+      // a plus is part of the title and not an encoded space
+      title = URLDecoder.decode(title.replace("+", "%2B"), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      // not percent encoded, the path is taken literally
+    }
+    String normalized = BlueSpicePageCrawler.normalize(title);
+    return normalized.isEmpty() ? null : normalized;
+  }
+
+  private void appendGenericPath(GlobalBlueSpiceConfig globalConfig, Repository repository, String path, StringBuilder url) {
+    int length = url.length();
+    url.append('/');
+    LinkRuleMatcher rules = globalConfig.getCompiledRules();
+    if (rules != null && rules.render(repository, url)) {
+      return;
+    }
+    UrlTemplate urlTemplate = globalConfig.getCompiledUrlTemplate();
+    if (urlTemplate != null) {
+      urlTemplate.render(repository, url);
+    } else if (path == null) {
+      url.setLength(length);
+    }
+  }
+
+  @Getter
+  @AllArgsConstructor
+  private static final class ResolvedLink {
+
+    private final String namespace;
+    private final String name;
+    private final String url;
+    /**
+     * Base url the link is built on, {@code null} for direct urls.
+     */
+    private final String baseUrl;
+    /**
+     * Normalized title of the page in the wiki of the global base url, {@code null} for links into other wikis.
+     */
+    private final String pageTitle;
+    private final boolean dependsOnBaseUrl;
+    private final String instanceId;
+    private final long instanceVersion;
+    /**
+     * Generation of the configuration the link is computed with.
+     */
+    private final long generation;
+
+    private ResolvedLink(Repository repository, String url, boolean dependsOnBaseUrl, long generation) {
+      this(repository.getNamespace(), repository.getName(), url, null, null, dependsOnBaseUrl, null, 0, generation);
+    }
+
+    Optional<String> getUrl() {
+      return Optional.ofNullable(url);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import sonia.scm.api.v2.resources.LinkBuilder;
+import sonia.scm.api.v2.resources.ScmPathInfo;
+import sonia.scm.repository.Repository;
+
+import java.net.URI;
+
+/**
+ * Hrefs of the endpoints of {@link BlueSpiceConfigResource}. The paths of the resource methods are resolved with a
+ * {@link LinkBuilder} only once per api base uri, afterwards a link is built by inserting the escaped namespace and
+ * name into the precomputed template.
+ */
+final class BlueSpiceLinks {
+
+  private static final int MAX_BASE_URIS = 16;
+  private static final String FIRST_MARKER = "blueSpiceFirstParameter";
+  private static final String SECOND_MARKER = "blueSpiceSecondParameter";
+  private static final Escaper ESCAPER = UrlEscapers.urlPathSegmentEscaper();
+
+  private static final Cache<URI, BlueSpiceLinks> LINKS = CacheBuilder.newBuilder()
+    .maximumSize(MAX_BASE_URIS)
+    .build();
+
+  private final String globalConfig;
+  private final String updateGlobalConfig;
+  private final Template namespaceConfig;
+  private final Template updateNamespaceConfig;
+  private final Template repositoryConfig;
+  private final Template updateRepositoryConfig;
+  private final Template pagePreview;
+
+  private BlueSpiceLinks(ScmPathInfo pathInfo) {
+    globalConfig = href(pathInfo, "getGlobalConfig");
+    updateGlobalConfig = href(pathInfo, "updateGlobalConfig");
+    namespaceConfig = new Template(href(pathInfo, "getNamespaceConfig", FIRST_MARKER), FIRST_MARKER);
+    updateNamespaceConfig = new Template(href(pathInfo, "updateNamespaceConfig", FIRST_MARKER), FIRST_MARKER);
+    repositoryConfig = repositoryTemplate(pathInfo, "getRepoConfig");
+    updateRepositoryConfig = repositoryTemplate(pathInfo, "updateRepoConfig");
+    pagePreview = repositoryTemplate(pathInfo, "getPagePreview");
+  }
+
+  /**
+   * Returns the links for the api base uri of the given path info. The links are computed on the first call for each
+   * base uri, later calls only look up the cached instance.
+   */
+  static BlueSpiceLinks of(ScmPathInfo pathInfo) {
+    URI baseUri = pathInfo.getApiRestUri();
+    BlueSpiceLinks links = LINKS.getIfPresent(baseUri);
+    if (links == null) {
+      links = new BlueSpiceLinks(pathInfo);
+      LINKS.put(baseUri, links);
+    }
+    return links;
+  }
+
+  String globalConfig() {
+    return globalConfig;
+  }
+
+  String updateGlobalConfig() {
+    return updateGlobalConfig;
+  }
+
+  String namespaceConfig(String namespace) {
+    return namespaceConfig.expand(namespace);
+  }
+
+  String updateNamespaceConfig(String namespace) {
+    return updateNamespaceConfig.expand(namespace);
+  }
+
+  String repositoryConfig(Repository repository) {
+    return repositoryConfig.expand(repository.getNamespace(), repository.getName());
+  }
+
+  String updateRepositoryConfig(Repository repository) {
+    return updateRepositoryConfig.expand(repository.getNamespace(), repository.getName());
+  }
+
+  String pagePreview(Repository repository) {
+    return pagePreview.expand(repository.getNamespace(), repository.getName());
+  }
+
+  private static Template repositoryTemplate(ScmPathInfo pathInfo, String method) {
+    return new Template(href(pathInfo, method, FIRST_MARKER, SECOND_MARKER), FIRST_MARKER, SECOND_MARKER);
+  }
+
+  private static String href(ScmPathInfo pathInfo, String method, String... parameters) {
+    return new LinkBuilder(pathInfo, BlueSpiceConfigResource.class).method(method).parameters(parameters).href();
+  }
+
+  /**
+   * An href split at its path parameters. The markers used to resolve the template consist of letters only, so they
+   * are never escaped by the link builder.
+   */
+  private static final class Template {
+
+    private final String[] parts;
+    private final int length;
+
+    private Template(String href, String... markers) {
+      parts = new String[markers.length + 1];
+      int start = 0;
+      for (int i = 0; i < markers.length; i++) {
+        int index = href.indexOf(markers[i], start);
+        if (index < 0) {
+          throw new IllegalStateException("parameter " + markers[i] + " not found in " + href);
+        }
+        parts[i] = href.substring(start, index);
+        start = index + markers[i].length();
+      }
+      parts[markers.length] = href.substring(start);
+      int partsLength = 0;
+      for (String part : parts) {
+        partsLength += part.length();
+      }
+      length = partsLength;
+    }
+
+    private String expand(String first) {
+      return new StringBuilder(length + first.length() + 16)
+        .append(parts[0])
+        .append(ESCAPER.escape(first))
+        .append(parts[1])
+        .toString();
+    }
+
+    private String expand(String first, String second) {
+      return new StringBuilder(length + first.length() + second.length() + 16)
+        .append(parts[0])
+        .append(ESCAPER.escape(first))
+        .append(parts[1])
+        .append(ESCAPER.escape(second))
+        .append(parts[2])
+        .toString();
+    }
+  }
+}
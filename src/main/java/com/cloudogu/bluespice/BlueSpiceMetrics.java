@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Meters of the BlueSpice plugin. All meters are created once, so that recording on the enrichment path is only a
+ * counter increment or a timer update.
+ */
+@Singleton
+public class BlueSpiceMetrics {
+
+  private static final String PREFIX = "scm.bluespice.";
+
+  private final MeterRegistry registry;
+
+  private final Timer repositoryEnrichment;
+  private final Timer indexEnrichment;
+  private final Counter globalStoreReads;
+  private final Counter globalStoreWrites;
+  private final Counter repositoryStoreReads;
+  private final Counter repositoryStoreWrites;
+
+  @Inject
+  public BlueSpiceMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    this.repositoryEnrichment = enrichmentTimer(registry, "repository");
+    this.indexEnrichment = enrichmentTimer(registry, "index");
+    this.globalStoreReads = storeCounter(registry, "reads", "global");
+    this.globalStoreWrites = storeCounter(registry, "writes", "global");
+    this.repositoryStoreReads = storeCounter(registry, "reads", "repository");
+    this.repositoryStoreWrites = storeCounter(registry, "writes", "repository");
+  }
+
+  private static Timer enrichmentTimer(MeterRegistry registry, String type) {
+    return Timer.builder(PREFIX + "enrichment")
+      .description("Time spent to append BlueSpice links to hal responses")
+      .tag("type", type)
+      .register(registry);
+  }
+
+  private static Counter storeCounter(MeterRegistry registry, String operation, String scope) {
+    return Counter.builder(PREFIX + "store." + operation)
+      .description("Number of BlueSpice configuration store " + operation)
+      .tag("scope", scope)
+      .register(registry);
+  }
+
+  void repositoryEnriched(long startNanos) {
+    repositoryEnrichment.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  void indexEnriched(long startNanos) {
+    indexEnrichment.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  void globalStoreRead() {
+    globalStoreReads.increment();
+  }
+
+  void globalStoreWritten() {
+    globalStoreWrites.increment();
+  }
+
+  void repositoryStoreRead() {
+    repositoryStoreReads.increment();
+  }
+
+  void repositoryStoreWritten() {
+    repositoryStoreWrites.increment();
+  }
+
+  void monitorCache(Cache<?, ?> cache, String name) {
+    GuavaCacheMetrics.monitor(registry, cache, PREFIX + name);
+  }
+
+  <T> void activeLinks(T object, ToDoubleFunction<T> function) {
+    Gauge.builder(PREFIX + "links.active", object, function)
+      .description("Number of repositories with an active BlueSpice link")
+      .register(registry);
+  }
+}
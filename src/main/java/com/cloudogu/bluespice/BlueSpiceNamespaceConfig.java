@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.Data;
+
+/**
+ * BlueSpice configuration of a namespace, which sits between the global and the repository configuration. The base url
+ * replaces the global base url for all repositories of the namespace and the relative path is prepended to the
+ * relative path of each repository.
+ */
+@Data
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlRootElement(name = "bluespice-namespace-config")
+public class BlueSpiceNamespaceConfig {
+
+  private String baseUrl;
+  private String relativePath;
+}
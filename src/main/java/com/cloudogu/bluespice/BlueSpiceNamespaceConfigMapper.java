@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.annotations.VisibleForTesting;
+import de.otto.edison.hal.Link;
+import de.otto.edison.hal.Links;
+import jakarta.inject.Inject;
+import org.mapstruct.AfterMapping;
+import org.mapstruct.Context;
+import org.mapstruct.Mapper;
+import org.mapstruct.MappingTarget;
+import sonia.scm.api.v2.resources.HalAppenderMapper;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.config.ConfigurationPermissions;
+
+import static de.otto.edison.hal.Links.linkingTo;
+import static com.cloudogu.bluespice.BlueSpiceContext.NAME;
+
+@Mapper
+public abstract class BlueSpiceNamespaceConfigMapper extends HalAppenderMapper {
+
+  @Inject
+  private ScmPathInfoStore scmPathInfoStore;
+
+  @VisibleForTesting
+  void setScmPathInfoStore(ScmPathInfoStore scmPathInfoStore) {
+    this.scmPathInfoStore = scmPathInfoStore;
+  }
+
+  public abstract BlueSpiceNamespaceConfigDto map(BlueSpiceNamespaceConfig config, @Context String namespace);
+
+  public abstract BlueSpiceNamespaceConfig map(BlueSpiceNamespaceConfigDto dto);
+
+  @AfterMapping
+  public void appendLinks(@MappingTarget BlueSpiceNamespaceConfigDto target, @Context String namespace) {
+    Links.Builder linksBuilder = linkingTo().self(self(namespace));
+    if (ConfigurationPermissions.write(NAME).isPermitted()) {
+      linksBuilder.single(Link.link("update", update(namespace)));
+    }
+    target.add(linksBuilder.build());
+  }
+
+  private String self(String namespace) {
+    return BlueSpiceLinks.of(scmPathInfoStore.get()).namespaceConfig(namespace);
+  }
+
+  private String update(String namespace) {
+    return BlueSpiceLinks.of(scmPathInfoStore.get()).updateNamespaceConfig(namespace);
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads pages and recent changes from the MediaWiki api of the BlueSpice instance. All lists are read in batches of
+ * {@link #BATCH_SIZE} pages, which is the maximum number of extracts the api returns with a single request.
+ */
+@Singleton
+public class BlueSpicePageCrawler {
+
+  static final int BATCH_SIZE = 20;
+  static final int EXTRACT_LENGTH = 500;
+  private static final int RECENT_CHANGES_LIMIT = 500;
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final String PAGE_PROPERTIES = "prop=extracts%7Cinfo&exintro=1&explaintext=1&exlimit=" + BATCH_SIZE + "&exchars=" + EXTRACT_LENGTH;
+
+  private final BlueSpiceContext context;
+  private final HttpClient client;
+
+  @Inject
+  public BlueSpicePageCrawler(BlueSpiceContext context) {
+    this(context, HttpClient.newBuilder().connectTimeout(TIMEOUT).followRedirects(HttpClient.Redirect.NORMAL).build());
+  }
+
+  @VisibleForTesting
+  BlueSpicePageCrawler(BlueSpiceContext context, HttpClient client) {
+    this.context = context;
+    this.client = client;
+  }
+
+  /**
+   * Passes the page with the given title and all of its sub pages to the consumer, one batch at a time.
+   */
+  public void crawl(String title, Consumer<List<WikiPage>> batches) throws IOException {
+    String normalized = normalize(title);
+    int namespace = 0;
+    String prefix = normalized;
+    int colon = normalized.indexOf(':');
+    if (colon > 0) {
+      Integer namespaceId = namespaces().get(normalize(normalized.substring(0, colon)));
+      if (namespaceId != null) {
+        namespace = namespaceId;
+        prefix = normalize(normalized.substring(colon + 1));
+      }
+    }
+    Map<String, String> continuation = Map.of();
+    do {
+      JsonNode response = query(
+        "generator=allpages&gaplimit=" + BATCH_SIZE + "&gapnamespace=" + namespace
+          + "&gapprefix=" + encode(prefix) + "&" + PAGE_PROPERTIES,
+        continuation
+      );
+      List<WikiPage> batch = new ArrayList<>();
+      for (WikiPage page : pages(response)) {
+        // the prefix matches sibling pages like "Project_10" for "Project_1" as well
+        if (page.getTitle().equals(normalized) || page.getTitle().startsWith(normalized + "/")) {
+          batch.add(page);
+        }
+      }
+      if (!batch.isEmpty()) {
+        batches.accept(batch);
+      }
+      continuation = continuation(response);
+    } while (!continuation.isEmpty());
+  }
+
+  /**
+   * Returns the existing pages of the given titles. Pages which do not exist are omitted.
+   */
+  public List<WikiPage> fetch(Collection<String> titles) throws IOException {
+    List<WikiPage> pages = new ArrayList<>(titles.size());
+    Iterator<String> iterator = titles.iterator();
+    while (iterator.hasNext()) {
+      List<String> batch = new ArrayList<>(BATCH_SIZE);
+      while (iterator.hasNext() && batch.size() < BATCH_SIZE) {
+        batch.add(iterator.next());
+      }
+      pages.addAll(pages(query("titles=" + encode(String.join("|", batch)) + "&" + PAGE_PROPERTIES, Map.of())));
+    }
+    return pages;
+  }
+
+  /**
+   * Returns all pages which have been created, edited, deleted, restored or moved since the given timestamp. The
+   * result maps the normalized titles to whether the page exists after the last of its changes.
+   */
+  public RecentChanges recentChanges(String since) throws IOException {
+    Map<String, Boolean> changes = new LinkedHashMap<>();
+    String latest = since;
+    Map<String, String> continuation = Map.of();
+    do {
+      JsonNode response = query(
+        "list=recentchanges&rcdir=newer&rctype=edit%7Cnew%7Clog&rcprop=title%7Ctimestamp%7Cloginfo"
+          + "&rclimit=" + RECENT_CHANGES_LIMIT + "&rcstart=" + encode(since),
+        continuation
+      );
+      for (JsonNode change : response.path("query").path("recentchanges")) {
+        String title = change.path("title").asText();
+        if ("log".equals(change.path("type").asText())) {
+          applyLogEntry(changes, title, change);
+        } else {
+          changes.put(title, true);
+        }
+        String timestamp = change.path("timestamp").asText();
+        if (latest == null || isAfter(timestamp, latest)) {
+          latest = timestamp;
+        }
+      }
+      continuation = continuation(response);
+    } while (!continuation.isEmpty());
+    return new RecentChanges(changes, latest);
+  }
+
+  private void applyLogEntry(Map<String, Boolean> changes, String title, JsonNode change) {
+    String logType = change.path("logtype").asText();
+    String logAction = change.path("logaction").asText();
+    if ("delete".equals(logType)) {
+      if ("delete".equals(logAction)) {
+        changes.put(title, false);
+      } else if ("restore".equals(logAction)) {
+        changes.put(title, true);
+      }
+    } else if ("move".equals(logType)) {
+      changes.put(title, false);
+      String target = change.path("logparams").path("target_title").asText(null);
+      if (target != null) {
+        changes.put(target, true);
+      }
+    }
+  }
+
+  private static boolean isAfter(String timestamp, String other) {
+    try {
+      return Instant.parse(timestamp).isAfter(Instant.parse(other));
+    } catch (DateTimeParseException e) {
+      return false;
+    }
+  }
+
+  private Map<String, Integer> namespaces() throws IOException {
+    Map<String, Integer> namespaces = new HashMap<>();
+    for (JsonNode namespace : query("meta=siteinfo&siprop=namespaces", Map.of()).path("query").path("namespaces")) {
+      int id = namespace.path("id").asInt();
+      namespaces.put(normalize(namespace.path("name").asText()), id);
+      if (namespace.has("canonical")) {
+        namespaces.put(normalize(namespace.path("canonical").asText()), id);
+      }
+    }
+    return namespaces;
+  }
+
+  private List<WikiPage> pages(JsonNode response) {
+    List<WikiPage> pages = new ArrayList<>();
+    for (JsonNode page : response.path("query").path("pages")) {
+      if (page.has("missing") || page.has("invalid")) {
+        continue;
+      }
+      Instant lastModified = null;
+      if (page.hasNonNull("touched")) {
+        try {
+          lastModified = Instant.parse(page.path("touched").asText());
+        } catch (DateTimeParseException e) {
+          // the page is indexed without modification date
+        }
+      }
+      pages.add(new WikiPage(page.path("title").asText(), page.path("extract").asText(null), lastModified));
+    }
+    return pages;
+  }
+
+  private static Map<String, String> continuation(JsonNode response) {
+    Map<String, String> continuation = new LinkedHashMap<>();
+    response.path("continue").fields().forEachRemaining(field -> continuation.put(field.getKey(), field.getValue().asText()));
+    return continuation;
+  }
+
+  private JsonNode query(String parameters, Map<String, String> continuation) throws IOException {
+    String apiUrl = context.getConfiguration().getApiUrl();
+    StringBuilder uri = new StringBuilder(apiUrl)
+      .append(apiUrl.contains("?") ? "&" : "?")
+      .append("action=query&format=json&formatversion=2&")
+      .append(parameters);
+    continuation.forEach((key, value) -> uri.append('&').append(encode(key)).append('=').append(encode(value)));
+    HttpRequest request = HttpRequest.newBuilder(URI.create(uri.toString())).GET().timeout(TIMEOUT).build();
+    HttpResponse<InputStream> response;
+    try {
+      response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while querying BlueSpice api");
+    }
+    try (InputStream body = response.body()) {
+      if (response.statusCode() != 200) {
+        throw new IOException("BlueSpice api returned status " + response.statusCode());
+      }
+      JsonNode root = OBJECT_MAPPER.readTree(body);
+      if (root.has("error")) {
+        throw new IOException("BlueSpice api returned error " + root.path("error").path("code").asText());
+      }
+      return root;
+    }
+  }
+
+  private static String encode(String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Normalizes a title the way MediaWiki does for the default configuration: underscores become spaces and the first
+   * letter is upper case.
+   */
+  static String normalize(String title) {
+    String normalized = title.replace('_', ' ').trim();
+    if (normalized.isEmpty()) {
+      return normalized;
+    }
+    return normalized.substring(0, 1).toUpperCase(Locale.ENGLISH) + normalized.substring(1);
+  }
+
+  @Getter
+  @AllArgsConstructor
+  public static class WikiPage {
+    private final String title;
+    /**
+     * Plain text of the lead section or {@code null}, if the api does not provide extracts.
+     */
+    private final String extract;
+    private final Instant lastModified;
+  }
+
+  @Getter
+  @AllArgsConstructor
+  public static class RecentChanges {
+    private final Map<String, Boolean> pages;
+    /**
+     * Timestamp of the latest change, which is the start of the next query.
+     */
+    private final String cursor;
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import jakarta.inject.Inject;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import sonia.scm.plugin.Extension;
+import sonia.scm.schedule.Scheduler;
+import sonia.scm.search.IndexLog;
+import sonia.scm.search.IndexLogStore;
+import sonia.scm.search.SearchEngine;
+
+/**
+ * Builds the search index of the BlueSpice pages on startup, if it was built by another version, and applies the
+ * recent changes of the wiki periodically.
+ */
+@Extension
+public class BlueSpicePageIndexScheduler implements ServletContextListener {
+
+  static final String EXPRESSION = "0 0/10 * * * ?";
+
+  private final Scheduler scheduler;
+  private final SearchEngine searchEngine;
+  private final IndexLogStore logStore;
+
+  @Inject
+  public BlueSpicePageIndexScheduler(Scheduler scheduler, SearchEngine searchEngine, IndexLogStore logStore) {
+    this.scheduler = scheduler;
+    this.searchEngine = searchEngine;
+    this.logStore = logStore;
+  }
+
+  @Override
+  public void contextInitialized(ServletContextEvent servletContextEvent) {
+    int version = logStore.defaultIndex().get(IndexedBlueSpicePage.class).map(IndexLog::getVersion).orElse(0);
+    if (version != BlueSpicePageIndexer.VERSION) {
+      searchEngine.forType(IndexedBlueSpicePage.class).update(BlueSpicePageIndexer.ReindexAllTask.class);
+    }
+    scheduler.schedule(EXPRESSION, BlueSpicePageIndexTask.class);
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent servletContextEvent) {
+    // the scheduler cancels all tasks on shutdown
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import lombok.Data;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Progress of the search index of the BlueSpice pages, which survives restarts.
+ */
+@Data
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlRootElement(name = "bluespice-page-index")
+public class BlueSpicePageIndexState {
+
+  /**
+   * Api url the index was built from. If the url changes, the whole index is built again.
+   */
+  private String apiUrl;
+  /**
+   * Base url of the page urls in the index. If the url changes, the whole index is built again.
+   */
+  private String baseUrl;
+  /**
+   * Timestamp of the latest recent change of the wiki, which has been applied to the index.
+   */
+  private String cursor;
+  /**
+   * Ids of the repositories whose pages have to be crawled again.
+   */
+  private Set<String> pendingRepositories = new LinkedHashSet<>();
+  /**
+   * Namespaces whose repositories have to be crawled again.
+   */
+  private Set<String> pendingNamespaces = new LinkedHashSet<>();
+}
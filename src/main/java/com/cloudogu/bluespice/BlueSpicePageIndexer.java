@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.repository.RepositoryPermissions;
+import sonia.scm.search.Id;
+import sonia.scm.search.Index;
+import sonia.scm.search.IndexLogStore;
+import sonia.scm.search.IndexTask;
+import sonia.scm.search.SearchEngine;
+import sonia.scm.store.ConfigurationStore;
+import sonia.scm.store.ConfigurationStoreFactory;
+import sonia.scm.web.security.AdministrationContext;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the BlueSpice pages of all repositories in the search index of SCM-Manager. The index is built once by crawling
+ * the wiki path of every repository. Afterwards only the recent changes of the wiki are applied and only repositories
+ * whose configuration changed are crawled again. Crawls are split into tasks of {@link #REPOSITORY_BATCH_SIZE}
+ * repositories, so the index queue is not blocked by a single long running task.
+ */
+@Singleton
+public class BlueSpicePageIndexer implements BlueSpiceConfigListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlueSpicePageIndexer.class);
+
+  static final int VERSION = 1;
+  static final int REPOSITORY_BATCH_SIZE = 20;
+  /**
+   * A new index follows the recent changes from slightly before its start, to tolerate clocks which are not in sync.
+   */
+  private static final Duration CURSOR_MARGIN = Duration.ofMinutes(5);
+  private static final String STORE_NAME = "blueSpicePageIndex";
+
+  private final AdministrationContext administrationContext;
+  private final RepositoryManager repositoryManager;
+  private final BlueSpiceContext context;
+  private final BlueSpicePageCrawler crawler;
+  private final SearchEngine searchEngine;
+  private final ConfigurationStore<BlueSpicePageIndexState> store;
+
+  private final Set<String> changedRepositories = ConcurrentHashMap.newKeySet();
+  private final Set<String> changedNamespaces = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean updateScheduled = new AtomicBoolean();
+
+  @Inject
+  public BlueSpicePageIndexer(AdministrationContext administrationContext, RepositoryManager repositoryManager, BlueSpiceContext context, BlueSpicePageCrawler crawler, SearchEngine searchEngine, ConfigurationStoreFactory storeFactory) {
+    this.administrationContext = administrationContext;
+    this.repositoryManager = repositoryManager;
+    this.context = context;
+    this.crawler = crawler;
+    this.searchEngine = searchEngine;
+    this.store = storeFactory.withType(BlueSpicePageIndexState.class).withName(STORE_NAME).build();
+    context.addListener(this);
+  }
+
+  @Override
+  public void globalConfigChanged(GlobalBlueSpiceConfig configuration) {
+    // a changed api or base url is detected by the update itself
+    scheduleUpdate();
+  }
+
+  @Override
+  public void namespaceConfigChanged(String namespace) {
+    changedNamespaces.add(namespace);
+    scheduleUpdate();
+  }
+
+  @Override
+  public void repositoryConfigChanged(String repositoryId) {
+    changedRepositories.add(repositoryId);
+    scheduleUpdate();
+  }
+
+  /**
+   * Queues an update of the index, unless an update is already queued.
+   */
+  public void scheduleUpdate() {
+    if (updateScheduled.compareAndSet(false, true)) {
+      searchEngine.forType(IndexedBlueSpicePage.class).update(UpdateTask.class);
+    }
+  }
+
+  void repositoryDeleted(String repositoryId) {
+    changedRepositories.remove(repositoryId);
+    searchEngine.forType(IndexedBlueSpicePage.class)
+      .update(index -> index.delete().by(Repository.class, repositoryId).execute());
+  }
+
+  /**
+   * Removes all pages from the index and marks all repositories to be crawled again.
+   */
+  @VisibleForTesting
+  synchronized void reindexAll(Index<IndexedBlueSpicePage> index) {
+    index.delete().all();
+    GlobalBlueSpiceConfig configuration = context.getConfiguration();
+    BlueSpicePageIndexState state = new BlueSpicePageIndexState();
+    state.setApiUrl(configuration.getApiUrl());
+    state.setBaseUrl(configuration.getBaseUrl());
+    if (!Strings.isNullOrEmpty(configuration.getApiUrl())) {
+      state.setCursor(Instant.now().minus(CURSOR_MARGIN).truncatedTo(ChronoUnit.SECONDS).toString());
+      state.getPendingRepositories().addAll(repositories().keySet());
+    }
+    changedRepositories.clear();
+    changedNamespaces.clear();
+    store.set(state);
+  }
+
+  /**
+   * Applies the recent changes of the wiki to the index and crawls the next batch of repositories.
+   *
+   * @return {@code true}, if repositories are left for another batch
+   */
+  @VisibleForTesting
+  synchronized boolean update(Index<IndexedBlueSpicePage> index) {
+    updateScheduled.set(false);
+    GlobalBlueSpiceConfig configuration = context.getConfiguration();
+    BlueSpicePageIndexState state = store.getOptional().orElseGet(BlueSpicePageIndexState::new);
+    if (!equal(configuration.getApiUrl(), state.getApiUrl()) || !equal(configuration.getBaseUrl(), state.getBaseUrl())) {
+      reindexAll(index);
+      state = store.get();
+    }
+    if (Strings.isNullOrEmpty(state.getApiUrl())) {
+      return false;
+    }
+
+    Map<String, Repository> repositories = repositories();
+    drainChanges(state, repositories.values());
+    try {
+      applyRecentChanges(index, state, repositories.values());
+      crawlPendingRepositories(index, state, repositories);
+    } catch (IOException e) {
+      LOG.warn("failed to update index of BlueSpice pages from {}, will retry with next update", state.getApiUrl(), e);
+      store.set(state);
+      return false;
+    }
+    store.set(state);
+    return !state.getPendingRepositories().isEmpty();
+  }
+
+  private void drainChanges(BlueSpicePageIndexState state, Collection<Repository> repositories) {
+    drain(changedRepositories, state.getPendingRepositories());
+    drain(changedNamespaces, state.getPendingNamespaces());
+    if (!state.getPendingNamespaces().isEmpty()) {
+      for (Repository repository : repositories) {
+        if (state.getPendingNamespaces().contains(repository.getNamespace())) {
+          state.getPendingRepositories().add(repository.getId());
+        }
+      }
+      state.getPendingNamespaces().clear();
+    }
+  }
+
+  private static void drain(Set<String> changes, Set<String> pending) {
+    Iterator<String> iterator = changes.iterator();
+    while (iterator.hasNext()) {
+      pending.add(iterator.next());
+      iterator.remove();
+    }
+  }
+
+  private void applyRecentChanges(Index<IndexedBlueSpicePage> index, BlueSpicePageIndexState state, Collection<Repository> repositories) throws IOException {
+    if (state.getCursor() == null) {
+      return;
+    }
+    BlueSpicePageCrawler.RecentChanges changes = crawler.recentChanges(state.getCursor());
+    if (changes.getPages().isEmpty()) {
+      return;
+    }
+    Map<String, List<Repository>> owners = owners(repositories);
+    List<String> existing = new ArrayList<>();
+    for (Map.Entry<String, Boolean> change : changes.getPages().entrySet()) {
+      List<Repository> pageOwners = owners(owners, change.getKey());
+      if (change.getValue()) {
+        if (!pageOwners.isEmpty()) {
+          existing.add(change.getKey());
+        }
+      } else {
+        pageOwners.forEach(repository -> index.delete().byId(id(change.getKey(), repository)));
+      }
+    }
+    for (BlueSpicePageCrawler.WikiPage page : crawler.fetch(existing)) {
+      owners(owners, page.getTitle()).forEach(repository -> store(index, state, repository, page));
+    }
+    state.setCursor(changes.getCursor());
+  }
+
+  private void crawlPendingRepositories(Index<IndexedBlueSpicePage> index, BlueSpicePageIndexState state, Map<String, Repository> repositories) throws IOException {
+    Iterator<String> pending = state.getPendingRepositories().iterator();
+    int crawled = 0;
+    while (pending.hasNext() && crawled < REPOSITORY_BATCH_SIZE) {
+      String id = pending.next();
+      Repository repository = repositories.get(id);
+      index.delete().by(Repository.class, id).execute();
+      if (repository != null) {
+        Optional<String> title = context.getPageTitle(repository);
+        if (title.isPresent()) {
+          crawler.crawl(title.get(), batch -> batch.forEach(page -> store(index, state, repository, page)));
+        }
+      }
+      pending.remove();
+      crawled++;
+    }
+  }
+
+  private void store(Index<IndexedBlueSpicePage> index, BlueSpicePageIndexState state, Repository repository, BlueSpicePageCrawler.WikiPage page) {
+    index.store(
+      id(page.getTitle(), repository),
+      RepositoryPermissions.read(repository).asShiroString(),
+      new IndexedBlueSpicePage(page.getTitle(), page.getExtract(), url(state.getBaseUrl(), page.getTitle()), page.getLastModified())
+    );
+  }
+
+  private static Id<IndexedBlueSpicePage> id(String title, Repository repository) {
+    return Id.of(IndexedBlueSpicePage.class, title).and(Repository.class, repository.getId());
+  }
+
+  private static String url(String baseUrl, String title) {
+    return baseUrl + "/" + title.replace(' ', '_');
+  }
+
+  /**
+   * Maps the normalized page titles of all repositories to the repositories, which share a page.
+   */
+  private Map<String, List<Repository>> owners(Collection<Repository> repositories) {
+    Map<String, List<Repository>> owners = new HashMap<>();
+    for (Repository repository : repositories) {
+      context.getPageTitle(repository)
+        .map(BlueSpicePageCrawler::normalize)
+        .ifPresent(title -> owners.computeIfAbsent(title, t -> new ArrayList<>()).add(repository));
+    }
+    return owners;
+  }
+
+  /**
+   * Returns the repositories of the page itself and of all of its parent pages.
+   */
+  private static List<Repository> owners(Map<String, List<Repository>> owners, String title) {
+    List<Repository> pageOwners = new ArrayList<>(owners.getOrDefault(title, List.of()));
+    for (int slash = title.lastIndexOf('/'); slash > 0; slash = title.lastIndexOf('/', slash - 1)) {
+      pageOwners.addAll(owners.getOrDefault(title.substring(0, slash), List.of()));
+    }
+    return pageOwners;
+  }
+
+  private Map<String, Repository> repositories() {
+    Map<String, Repository> repositories = new HashMap<>();
+    administrationContext.runAsAdmin(() -> repositoryManager.getAll().forEach(repository -> repositories.put(repository.getId(), repository)));
+    return repositories;
+  }
+
+  private static boolean equal(String a, String b) {
+    return Strings.nullToEmpty(a).equals(Strings.nullToEmpty(b));
+  }
+
+  /**
+   * Builds the index from scratch and is queued on startup, if the index was built by another version.
+   */
+  public static class ReindexAllTask implements IndexTask<IndexedBlueSpicePage> {
+
+    private final BlueSpicePageIndexer indexer;
+    private final IndexLogStore logStore;
+
+    @Inject
+    public ReindexAllTask(BlueSpicePageIndexer indexer, IndexLogStore logStore) {
+      this.indexer = indexer;
+      this.logStore = logStore;
+    }
+
+    @Override
+    public void update(Index<IndexedBlueSpicePage> index) {
+      indexer.reindexAll(index);
+    }
+
+    @Override
+    public void afterUpdate() {
+      logStore.defaultIndex().log(IndexedBlueSpicePage.class, VERSION);
+      indexer.scheduleUpdate();
+    }
+  }
+
+  public static class UpdateTask implements IndexTask<IndexedBlueSpicePage> {
+
+    private final BlueSpicePageIndexer indexer;
+    private boolean incomplete;
+
+    @Inject
+    public UpdateTask(BlueSpicePageIndexer indexer) {
+      this.indexer = indexer;
+    }
+
+    @Override
+    public void update(Index<IndexedBlueSpicePage> index) {
+      incomplete = indexer.update(index);
+    }
+
+    @Override
+    public void afterUpdate() {
+      if (incomplete) {
+        indexer.scheduleUpdate();
+      }
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Asks the MediaWiki api of the BlueSpice instance whether the pages behind the relative paths of the repositories
+ * exist. Up to {@link #BATCH_SIZE} titles are queried with a single request, results are cached for
+ * {@link #RESULT_TTL} and a title which is already queried is not queried a second time by concurrent lookups.
+ */
+@Singleton
+public class BlueSpicePageLookup implements BlueSpiceConfigListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlueSpicePageLookup.class);
+
+  /**
+   * Maximum number of titles per query, which is allowed for clients without the apihighlimits right.
+   */
+  static final int BATCH_SIZE = 50;
+  static final Duration RESULT_TTL = Duration.ofMinutes(10);
+  private static final int MAX_CACHED_TITLES = 10000;
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final BlueSpiceContext context;
+  private final HttpClient client;
+  private final Executor executor;
+  private final Cache<String, Boolean> results;
+  private final Map<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+  @Inject
+  public BlueSpicePageLookup(BlueSpiceContext context) {
+    this(
+      context,
+      HttpClient.newBuilder().connectTimeout(TIMEOUT).followRedirects(HttpClient.Redirect.NORMAL).build(),
+      Executors.newFixedThreadPool(2, new ThreadFactoryBuilder().setNameFormat("BlueSpicePageLookup-%d").setDaemon(true).build()),
+      Ticker.systemTicker()
+    );
+  }
+
+  @VisibleForTesting
+  BlueSpicePageLookup(BlueSpiceContext context, HttpClient client, Executor executor, Ticker ticker) {
+    this.context = context;
+    this.client = client;
+    this.executor = executor;
+    this.results = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHED_TITLES)
+      .expireAfterWrite(RESULT_TTL.toMillis(), TimeUnit.MILLISECONDS)
+      .ticker(ticker)
+      .build();
+    context.addListener(this);
+  }
+
+  @Override
+  public void globalConfigChanged(GlobalBlueSpiceConfig configuration) {
+    results.invalidateAll();
+  }
+
+  /**
+   * Removes the cached results of the given titles, so they are queried again with the next lookup.
+   */
+  public void invalidate(Collection<String> titles) {
+    results.invalidateAll(titles);
+  }
+
+  /**
+   * Starts the lookup of the pages of all given repositories without waiting for the results.
+   */
+  public void prefetch(Collection<Repository> repositories) {
+    List<String> titles = new ArrayList<>(repositories.size());
+    for (Repository repository : repositories) {
+      context.getPageTitle(repository).ifPresent(titles::add);
+    }
+    lookup(titles);
+  }
+
+  /**
+   * Returns whether the page of the repository exists. The result is empty, if the repository has no page in the
+   * configured wiki or if the api did not answer within the given time.
+   */
+  public Optional<Boolean> pageExists(Repository repository, Duration maxWait) {
+    Optional<String> title = context.getPageTitle(repository);
+    if (title.isEmpty()) {
+      return Optional.empty();
+    }
+    Boolean cached = results.getIfPresent(title.get());
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+    CompletableFuture<Boolean> result = lookup(List.of(title.get())).get(title.get());
+    try {
+      return Optional.ofNullable(result.get(maxWait.toMillis(), TimeUnit.MILLISECONDS));
+    } catch (TimeoutException | ExecutionException e) {
+      return Optional.empty();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Optional.empty();
+    }
+  }
+
+  @VisibleForTesting
+  Map<String, CompletableFuture<Boolean>> lookup(Collection<String> titles) {
+    String apiUrl = context.getConfiguration().getApiUrl();
+    Map<String, CompletableFuture<Boolean>> lookups = new HashMap<>();
+    List<String> batch = new ArrayList<>(BATCH_SIZE);
+    for (String title : titles) {
+      if (lookups.containsKey(title)) {
+        continue;
+      }
+      Boolean cached = results.getIfPresent(title);
+      if (cached != null) {
+        lookups.put(title, CompletableFuture.completedFuture(cached));
+        continue;
+      }
+      CompletableFuture<Boolean> lookup = new CompletableFuture<>();
+      CompletableFuture<Boolean> running = inFlight.putIfAbsent(title, lookup);
+      if (running != null) {
+        lookups.put(title, running);
+      } else {
+        lookups.put(title, lookup);
+        batch.add(title);
+        if (batch.size() == BATCH_SIZE) {
+          submit(apiUrl, batch);
+          batch = new ArrayList<>(BATCH_SIZE);
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      submit(apiUrl, batch);
+    }
+    return lookups;
+  }
+
+  private void submit(String apiUrl, List<String> titles) {
+    executor.execute(() -> {
+      Map<String, Boolean> pages = Map.of();
+      try {
+        pages = query(apiUrl, titles);
+      } catch (IOException | RuntimeException e) {
+        LOG.warn("failed to query {} pages from BlueSpice api {}", titles.size(), apiUrl, e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      for (String title : titles) {
+        Boolean exists = pages.get(title);
+        if (exists != null) {
+          results.put(title, exists);
+        }
+        // unanswered titles complete with null, so they are queried again by the next lookup
+        inFlight.remove(title).complete(exists);
+      }
+    });
+  }
+
+  private Map<String, Boolean> query(String apiUrl, List<String> titles) throws IOException, InterruptedException {
+    URI uri = URI.create(
+      apiUrl + (apiUrl.contains("?") ? "&" : "?")
+        + "action=query&format=json&formatversion=2&titles="
+        + URLEncoder.encode(String.join("|", titles), StandardCharsets.UTF_8)
+    );
+    HttpRequest request = HttpRequest.newBuilder(uri).GET().timeout(TIMEOUT).build();
+    HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    try (InputStream body = response.body()) {
+      if (response.statusCode() != 200) {
+        throw new IOException("BlueSpice api returned status " + response.statusCode());
+      }
+      JsonNode query = OBJECT_MAPPER.readTree(body).path("query");
+
+      // the api answers with normalized titles, e.g. with an upper case first letter
+      Map<String, List<String>> requested = new HashMap<>();
+      for (JsonNode normalized : query.path("normalized")) {
+        requested.computeIfAbsent(normalized.path("to").asText(), to -> new ArrayList<>()).add(normalized.path("from").asText());
+      }
+      Map<String, Boolean> pages = new HashMap<>();
+      for (JsonNode page : query.path("pages")) {
+        String title = page.path("title").asText();
+        boolean exists = !page.has("missing") && !page.has("invalid");
+        pages.put(title, exists);
+        requested.getOrDefault(title, List.of()).forEach(from -> pages.put(from, exists));
+      }
+      return pages;
+    }
+  }
+}
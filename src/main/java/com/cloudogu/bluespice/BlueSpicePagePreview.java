@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.regex.Pattern.CASE_INSENSITIVE;
+import static java.util.regex.Pattern.DOTALL;
+
+/**
+ * Fetches the lead section of the wiki page of a repository with the MediaWiki parse api and reduces it to plain text,
+ * so no markup of the wiki ends up in the repository view. Previews are cached for up to {@link #MAX_CACHED_PAGES}
+ * titles, the least recently used ones are evicted first. A preview older than {@link #REFRESH_AFTER} is still served,
+ * while it is fetched again in the background. It is dropped after {@link #RESULT_TTL}, if the wiki could not be
+ * reached since.
+ */
+@Singleton
+public class BlueSpicePagePreview implements BlueSpiceConfigListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlueSpicePagePreview.class);
+
+  static final int MAX_CACHED_PAGES = 500;
+  static final Duration REFRESH_AFTER = Duration.ofMinutes(5);
+  static final Duration RESULT_TTL = Duration.ofHours(1);
+  static final int MAX_EXCERPT_LENGTH = 1000;
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private static final Pattern INVISIBLE = Pattern.compile("<(script|style)\\b[^>]*>.*?</\\1\\s*>", CASE_INSENSITIVE | DOTALL);
+  private static final Pattern COMMENT = Pattern.compile("<!--.*?-->", DOTALL);
+  private static final Pattern REFERENCE = Pattern.compile("<sup\\b[^>]*\\breference\\b[^>]*>.*?</sup\\s*>", CASE_INSENSITIVE | DOTALL);
+  private static final Pattern BLOCK_END = Pattern.compile("<(br\\b[^>]*|/(p|div|li|dd|dt|tr|h[1-6]|pre|blockquote)\\s*)>", CASE_INSENSITIVE);
+  private static final Pattern TAG = Pattern.compile("<[^>]*>");
+  private static final Pattern ENTITY = Pattern.compile("&(#[0-9]{1,7}|#[xX][0-9a-fA-F]{1,6}|[a-zA-Z]+);");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Map<String, String> NAMED_ENTITIES = Map.of(
+    "amp", "&",
+    "lt", "<",
+    "gt", ">",
+    "quot", "\"",
+    "apos", "'",
+    "nbsp", " "
+  );
+
+  private final BlueSpiceContext context;
+  private final HttpClient client;
+  private final LoadingCache<String, PagePreview> previews;
+
+  @Inject
+  public BlueSpicePagePreview(BlueSpiceContext context) {
+    this(
+      context,
+      HttpClient.newBuilder().connectTimeout(TIMEOUT).followRedirects(HttpClient.Redirect.NORMAL).build(),
+      Executors.newFixedThreadPool(2, new ThreadFactoryBuilder().setNameFormat("BlueSpicePagePreview-%d").setDaemon(true).build()),
+      Ticker.systemTicker()
+    );
+  }
+
+  @VisibleForTesting
+  BlueSpicePagePreview(BlueSpiceContext context, HttpClient client, Executor executor, Ticker ticker) {
+    this.context = context;
+    this.client = client;
+    this.previews = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHED_PAGES)
+      .refreshAfterWrite(REFRESH_AFTER.toMillis(), TimeUnit.MILLISECONDS)
+      .expireAfterWrite(RESULT_TTL.toMillis(), TimeUnit.MILLISECONDS)
+      .ticker(ticker)
+      .build(CacheLoader.asyncReloading(new CacheLoader<String, PagePreview>() {
+        @Override
+        public PagePreview load(String title) throws IOException {
+          return fetch(title);
+        }
+      }, executor));
+    context.addListener(this);
+  }
+
+  @Override
+  public void globalConfigChanged(GlobalBlueSpiceConfig configuration) {
+    previews.invalidateAll();
+  }
+
+  /**
+   * Removes the cached previews of the given titles, so they are fetched again with the next request.
+   */
+  public void invalidate(Collection<String> titles) {
+    previews.invalidateAll(titles);
+  }
+
+  /**
+   * Returns the preview of the wiki page of the repository. The result is empty, if the repository has no page in the
+   * configured wiki. Concurrent requests for a page which is not cached wait for a single request to the wiki.
+   *
+   * @throws IOException if the page is not cached and the wiki could not be reached
+   */
+  public Optional<PagePreview> getPreview(Repository repository) throws IOException {
+    Optional<String> title = context.getPageTitle(repository);
+    if (title.isEmpty()) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(previews.get(title.get()));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      LOG.warn("failed to fetch preview of page {} from BlueSpice api", title.get(), e.getCause());
+      throw new IOException("failed to fetch preview of page " + title.get(), e.getCause());
+    }
+  }
+
+  private PagePreview fetch(String title) throws IOException {
+    String apiUrl = context.getConfiguration().getApiUrl();
+    URI uri = URI.create(
+      apiUrl + (apiUrl.contains("?") ? "&" : "?")
+        + "action=parse&format=json&formatversion=2&prop=text&section=0&redirects=1&disableeditsection=1&disablelimitreport=1&page="
+        + URLEncoder.encode(title, StandardCharsets.UTF_8)
+    );
+    HttpRequest request = HttpRequest.newBuilder(uri).GET().timeout(TIMEOUT).build();
+    HttpResponse<InputStream> response;
+    try {
+      response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while fetching page " + title);
+    }
+    try (InputStream body = response.body()) {
+      if (response.statusCode() != 200) {
+        throw new IOException("BlueSpice api returned status " + response.statusCode());
+      }
+      JsonNode root = OBJECT_MAPPER.readTree(body);
+      JsonNode error = root.path("error");
+      if (!error.isMissingNode()) {
+        String code = error.path("code").asText();
+        if ("missingtitle".equals(code) || "invalidtitle".equals(code)) {
+          return new PagePreview(title, false, null, Instant.now());
+        }
+        throw new IOException("BlueSpice api returned error " + code);
+      }
+      JsonNode parse = root.path("parse");
+      return new PagePreview(
+        parse.path("title").asText(title),
+        true,
+        excerpt(parse.path("text").asText(), MAX_EXCERPT_LENGTH),
+        Instant.now()
+      );
+    }
+  }
+
+  /**
+   * Reduces the given html to its text. Paragraphs are separated by a single line break and the text is cut at a word
+   * boundary, if it is longer than the given length.
+   */
+  @VisibleForTesting
+  static String excerpt(String html, int maxLength) {
+    String text = INVISIBLE.matcher(html).replaceAll("");
+    text = COMMENT.matcher(text).replaceAll("");
+    text = REFERENCE.matcher(text).replaceAll("");
+    text = BLOCK_END.matcher(text).replaceAll("\n");
+    text = TAG.matcher(text).replaceAll("");
+    text = decodeEntities(text);
+
+    StringBuilder excerpt = new StringBuilder();
+    for (String line : text.split("\n")) {
+      String paragraph = WHITESPACE.matcher(line).replaceAll(" ").trim();
+      if (!paragraph.isEmpty()) {
+        if (excerpt.length() > 0) {
+          excerpt.append('\n');
+        }
+        excerpt.append(paragraph);
+      }
+    }
+    if (excerpt.length() <= maxLength) {
+      return excerpt.toString();
+    }
+    int end = maxLength;
+    int lastSpace = Math.max(excerpt.lastIndexOf(" ", maxLength), excerpt.lastIndexOf("\n", maxLength));
+    if (lastSpace > maxLength / 2) {
+      end = lastSpace;
+    }
+    return excerpt.substring(0, end) + "…";
+  }
+
+  private static String decodeEntities(String text) {
+    Matcher matcher = ENTITY.matcher(text);
+    StringBuilder decoded = new StringBuilder(text.length());
+    while (matcher.find()) {
+      matcher.appendReplacement(decoded, Matcher.quoteReplacement(decodeEntity(matcher.group(1), matcher.group())));
+    }
+    matcher.appendTail(decoded);
+    return decoded.toString();
+  }
+
+  private static String decodeEntity(String entity, String raw) {
+    if (entity.startsWith("#")) {
+      int codePoint = entity.startsWith("#x") || entity.startsWith("#X")
+        ? Integer.parseInt(entity.substring(2), 16)
+        : Integer.parseInt(entity.substring(1));
+      return Character.isValidCodePoint(codePoint) ? new String(Character.toChars(codePoint)) : raw;
+    }
+    return NAMED_ENTITIES.getOrDefault(entity, raw);
+  }
+}
@@ -29,4 +29,18 @@ public class BlueSpiceRepositoryConfig {
   private String relativePath;
   private String directUrl;
   private OverrideOption override = OverrideOption.APPEND;
+  /**
+   * Id of the {@link BlueSpiceInstance} whose base url replaces the base url of the namespace and the global
+   * configuration.
+   */
+  private String instanceId;
+
+  BlueSpiceRepositoryConfig copy() {
+    BlueSpiceRepositoryConfig copy = new BlueSpiceRepositoryConfig();
+    copy.setRelativePath(relativePath);
+    copy.setDirectUrl(directUrl);
+    copy.setOverride(override);
+    copy.setInstanceId(instanceId);
+    return copy;
+  }
 }
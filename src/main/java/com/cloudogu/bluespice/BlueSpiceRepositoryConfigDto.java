@@ -22,6 +22,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.util.List;
+
 @NoArgsConstructor
 @Getter
 @Setter
@@ -29,6 +31,15 @@ public class BlueSpiceRepositoryConfigDto extends HalRepresentation {
   private String relativePath;
   private String directUrl;
   private OverrideOption override;
+  private String instanceId;
+  /**
+   * Ids of the registered instances, which can be referenced by {@link #instanceId}.
+   */
+  private List<String> availableInstances;
+  /**
+   * Whether the page behind the relative path exists or {@code null}, if this is unknown.
+   */
+  private Boolean pageExists;
 
   @Override
   protected HalRepresentation add(Links links) {
@@ -22,20 +22,25 @@ import de.otto.edison.hal.Links;
 import jakarta.inject.Inject;
 import org.mapstruct.*;
 import sonia.scm.api.v2.resources.HalAppenderMapper;
-import sonia.scm.api.v2.resources.LinkBuilder;
 import sonia.scm.api.v2.resources.ScmPathInfoStore;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryPermissions;
 
+import java.time.Duration;
+
 import static de.otto.edison.hal.Links.linkingTo;
 
 @Mapper
 public abstract class BlueSpiceRepositoryConfigMapper extends HalAppenderMapper {
 
+  private static final Duration PAGE_LOOKUP_TIMEOUT = Duration.ofSeconds(2);
+
   @Inject
   private ScmPathInfoStore scmPathInfoStore;
   @Inject
   private BlueSpiceContext blueSpiceContext;
+  @Inject
+  private BlueSpicePageLookup pageLookup;
 
   @VisibleForTesting
   void setScmPathInfoStore(ScmPathInfoStore scmPathInfoStore) {
@@ -47,16 +52,35 @@ public abstract class BlueSpiceRepositoryConfigMapper extends HalAppenderMapper
     this.blueSpiceContext = blueSpiceContext;
   }
 
+  @VisibleForTesting
+  void setPageLookup(BlueSpicePageLookup pageLookup) {
+    this.pageLookup = pageLookup;
+  }
+
+  @Mapping(target = "pageExists", ignore = true)
+  @Mapping(target = "availableInstances", ignore = true)
   public abstract BlueSpiceRepositoryConfigDto map(BlueSpiceRepositoryConfig config, @Context Repository repository);
 
   public abstract BlueSpiceRepositoryConfig map(BlueSpiceRepositoryConfigDto dto, @Context BlueSpiceRepositoryConfig oldConfig);
 
+  @AfterMapping
+  public void appendPageExists(@MappingTarget BlueSpiceRepositoryConfigDto target, @Context Repository repository) {
+    target.setPageExists(pageLookup.pageExists(repository, PAGE_LOOKUP_TIMEOUT).orElse(null));
+  }
+
+  @AfterMapping
+  public void appendAvailableInstances(@MappingTarget BlueSpiceRepositoryConfigDto target) {
+    target.setAvailableInstances(
+      blueSpiceContext.getConfiguration().getInstances().stream().map(BlueSpiceInstance::getId).toList()
+    );
+  }
+
   @AfterMapping
   public void appendLinks(@MappingTarget BlueSpiceRepositoryConfigDto target, @Context Repository repository) {
     Links.Builder linksBuilder = linkingTo().self(self(repository));
     if (RepositoryPermissions.custom("configureBlueSpice", repository).isPermitted()) {
       linksBuilder.single(Link.link("update", update(repository)));
-      String baseUrl = baseUrl();
+      String baseUrl = baseUrl(target.getInstanceId(), repository);
       if (baseUrl != null && !baseUrl.isEmpty()) {
         linksBuilder.single(Link.link("baseUrl", baseUrl));
       }
@@ -65,16 +89,25 @@ public abstract class BlueSpiceRepositoryConfigMapper extends HalAppenderMapper
   }
 
   private String self(Repository repository) {
-    LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get(), BlueSpiceConfigResource.class);
-    return linkBuilder.method("getRepoConfig").parameters(repository.getNamespace(), repository.getName()).href();
+    return BlueSpiceLinks.of(scmPathInfoStore.get()).repositoryConfig(repository);
   }
 
   private String update(Repository repository) {
-    LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get(), BlueSpiceConfigResource.class);
-    return linkBuilder.method("updateRepoConfig").parameters(repository.getNamespace(), repository.getName()).href();
+    return BlueSpiceLinks.of(scmPathInfoStore.get()).updateRepositoryConfig(repository);
   }
 
-  private String baseUrl() {
-    return blueSpiceContext.getConfiguration().getBaseUrl();
+  /**
+   * Returns the base url the relative path of the repository is appended to: the base url of its instance, of its
+   * namespace or the global base url.
+   */
+  private String baseUrl(String instanceId, Repository repository) {
+    GlobalBlueSpiceConfig configuration = blueSpiceContext.getConfiguration();
+    if (instanceId != null) {
+      return configuration.getInstance(instanceId).map(BlueSpiceInstance::getBaseUrl).orElse(null);
+    }
+    return blueSpiceContext.getNamespaceConfiguration(repository.getNamespace())
+      .map(BlueSpiceNamespaceConfig::getBaseUrl)
+      .filter(url -> !url.isEmpty())
+      .orElse(configuration.getBaseUrl());
   }
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.store.ConfigurationStore;
+import sonia.scm.store.ConfigurationStoreFactory;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.cloudogu.bluespice.BlueSpiceContext.NAME;
+
+/**
+ * Storage of the repository configurations behind {@link BlueSpiceContext}. By default all configurations are read
+ * from a single data store keyed by repository id, which can be enumerated without opening a store per repository. The
+ * former storage with one configuration store per repository can be selected with the system property
+ * {@value #PROPERTY} set to {@code repository}.
+ * <p>
+ * Until the per repository storage is removed, changes are written to both storages. So the per repository stores stay
+ * part of the export of a repository and switching between the storages never brings back outdated configurations.
+ * The two writes are not atomic. The storage which is not read is written first, so a failed write never changes the
+ * configuration which is read. If the write of the storage which is read fails, the previous configuration of the
+ * other storage is restored. Only if the restore fails as well, the storages differ until the configuration of the
+ * repository is stored again, which is logged.
+ * <p>
+ * Data stores are not guaranteed to be thread safe, so all writes of the shared data store are serialized by a single
+ * lock. The per repository stores are only written under the lock of their repository in {@link BlueSpiceContext}.
+ */
+abstract class BlueSpiceRepositoryConfigStore {
+
+  static final String PROPERTY = "scm.bluespice.repositoryConfigStore";
+  static final String DATA_STORE_NAME = "blueSpiceRepositories";
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlueSpiceRepositoryConfigStore.class);
+
+  private final Object dataStoreLock = new Object();
+
+  enum Type {
+    /**
+     * One configuration store per repository, which is deleted together with the repository.
+     */
+    REPOSITORY,
+    /**
+     * A single data store keyed by repository id.
+     */
+    DATA_STORE;
+
+    static Type fromSystemProperty() {
+      String value = System.getProperty(PROPERTY);
+      if (Strings.isNullOrEmpty(value)) {
+        return DATA_STORE;
+      }
+      try {
+        return valueOf(value.trim().toUpperCase(Locale.ENGLISH).replace('-', '_'));
+      } catch (IllegalArgumentException e) {
+        LOG.warn("unknown BlueSpice repository config store {}, using {}", value, DATA_STORE);
+        return DATA_STORE;
+      }
+    }
+  }
+
+  static BlueSpiceRepositoryConfigStore create(Type type, ConfigurationStoreFactory storeFactory, DataStoreFactory dataStoreFactory) {
+    if (type == Type.REPOSITORY) {
+      return new PerRepository(storeFactory, dataStore(dataStoreFactory));
+    }
+    return new Indexed(storeFactory, dataStore(dataStoreFactory));
+  }
+
+  static DataStore<BlueSpiceRepositoryConfig> dataStore(DataStoreFactory dataStoreFactory) {
+    return dataStoreFactory.withType(BlueSpiceRepositoryConfig.class).withName(DATA_STORE_NAME).build();
+  }
+
+  static ConfigurationStore<BlueSpiceRepositoryConfig> repositoryStore(ConfigurationStoreFactory storeFactory, String repositoryId) {
+    return storeFactory.withType(BlueSpiceRepositoryConfig.class).withName(NAME).forRepository(repositoryId).build();
+  }
+
+  abstract Optional<BlueSpiceRepositoryConfig> get(String repositoryId);
+
+  abstract void set(String repositoryId, BlueSpiceRepositoryConfig configuration);
+
+  /**
+   * Removes the configuration of a deleted repository.
+   */
+  abstract void remove(String repositoryId);
+
+  /**
+   * Returns the ids of all repositories with a stored configuration. Stores which can not be enumerated return an
+   * empty set.
+   */
+  abstract Set<String> getRepositoryIds();
+
+  /**
+   * Returns all configurations of the data store by repository id. The data store is written with every storage.
+   */
+  abstract Map<String, BlueSpiceRepositoryConfig> getAll();
+
+  void putInDataStore(DataStore<BlueSpiceRepositoryConfig> store, String repositoryId, BlueSpiceRepositoryConfig configuration) {
+    synchronized (dataStoreLock) {
+      store.put(repositoryId, configuration);
+    }
+  }
+
+  void removeFromDataStore(DataStore<BlueSpiceRepositoryConfig> store, String repositoryId) {
+    synchronized (dataStoreLock) {
+      store.remove(repositoryId);
+    }
+  }
+
+  /**
+   * Writes the storage which is not read first and restores it, if the write of the storage which is read fails.
+   */
+  static void writeBoth(String repositoryId, Runnable writeOther, Runnable writeRead, Runnable restoreOther) {
+    writeOther.run();
+    try {
+      writeRead.run();
+    } catch (RuntimeException e) {
+      try {
+        restoreOther.run();
+      } catch (RuntimeException restoreFailure) {
+        e.addSuppressed(restoreFailure);
+        LOG.error("BlueSpice configuration storages of repository {} differ until its configuration is stored again", repositoryId, restoreFailure);
+      }
+      throw e;
+    }
+  }
+
+  private static final class PerRepository extends BlueSpiceRepositoryConfigStore {
+
+    private final ConfigurationStoreFactory storeFactory;
+    private final DataStore<BlueSpiceRepositoryConfig> store;
+
+    private PerRepository(ConfigurationStoreFactory storeFactory, DataStore<BlueSpiceRepositoryConfig> store) {
+      this.storeFactory = storeFactory;
+      this.store = store;
+    }
+
+    @Override
+    Optional<BlueSpiceRepositoryConfig> get(String repositoryId) {
+      return repositoryStore(storeFactory, repositoryId).getOptional();
+    }
+
+    @Override
+    void set(String repositoryId, BlueSpiceRepositoryConfig configuration) {
+      BlueSpiceRepositoryConfig previous = store.get(repositoryId);
+      writeBoth(
+        repositoryId,
+        () -> putInDataStore(store, repositoryId, configuration),
+        () -> repositoryStore(storeFactory, repositoryId).set(configuration),
+        () -> {
+          if (previous == null) {
+            removeFromDataStore(store, repositoryId);
+          } else {
+            putInDataStore(store, repositoryId, previous);
+          }
+        }
+      );
+    }
+
+    @Override
+    void remove(String repositoryId) {
+      // the configuration store is deleted together with the repository
+      removeFromDataStore(store, repositoryId);
+    }
+
+    @Override
+    Set<String> getRepositoryIds() {
+      return Set.of();
+    }
+
+    @Override
+    Map<String, BlueSpiceRepositoryConfig> getAll() {
+      return store.getAll();
+    }
+  }
+
+  private static final class Indexed extends BlueSpiceRepositoryConfigStore {
+
+    private final ConfigurationStoreFactory storeFactory;
+    private final DataStore<BlueSpiceRepositoryConfig> store;
+
+    private Indexed(ConfigurationStoreFactory storeFactory, DataStore<BlueSpiceRepositoryConfig> store) {
+      this.storeFactory = storeFactory;
+      this.store = store;
+    }
+
+    @Override
+    Optional<BlueSpiceRepositoryConfig> get(String repositoryId) {
+      return Optional.ofNullable(store.get(repositoryId));
+    }
+
+    @Override
+    void set(String repositoryId, BlueSpiceRepositoryConfig configuration) {
+      ConfigurationStore<BlueSpiceRepositoryConfig> repositoryStore = repositoryStore(storeFactory, repositoryId);
+      // a configuration store can not be removed, a missing configuration is restored as the default configuration
+      BlueSpiceRepositoryConfig previous = repositoryStore.getOptional().orElseGet(BlueSpiceRepositoryConfig::new);
+      writeBoth(
+        repositoryId,
+        () -> repositoryStore.set(configuration),
+        () -> putInDataStore(store, repositoryId, configuration),
+        () -> repositoryStore.set(previous)
+      );
+    }
+
+    @Override
+    void remove(String repositoryId) {
+      // the configuration store is deleted together with the repository
+      removeFromDataStore(store, repositoryId);
+    }
+
+    @Override
+    Set<String> getRepositoryIds() {
+      return Set.copyOf(store.getAll().keySet());
+    }
+
+    @Override
+    Map<String, BlueSpiceRepositoryConfig> getAll() {
+      return store.getAll();
+    }
+  }
+}
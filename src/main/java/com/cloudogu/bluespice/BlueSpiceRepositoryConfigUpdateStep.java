@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.migration.UpdateStep;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.RepositoryLocationResolver;
+import sonia.scm.store.ConfigurationStoreFactory;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
+import sonia.scm.version.Version;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies the configurations of all repositories from their per repository stores into the data store keyed by
+ * repository id. The per repository stores are read in parallel, because opening thousands of small stores dominates
+ * the migration. The per repository stores are kept, so the former storage can still be selected with
+ * {@value BlueSpiceRepositoryConfigStore#PROPERTY}.
+ */
+@Extension
+public class BlueSpiceRepositoryConfigUpdateStep implements UpdateStep {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlueSpiceRepositoryConfigUpdateStep.class);
+
+  static final int THREADS = 8;
+  static final int PROGRESS_INTERVAL = 1000;
+
+  private final RepositoryLocationResolver locationResolver;
+  private final ConfigurationStoreFactory storeFactory;
+  private final DataStoreFactory dataStoreFactory;
+
+  @Inject
+  public BlueSpiceRepositoryConfigUpdateStep(RepositoryLocationResolver locationResolver, ConfigurationStoreFactory storeFactory, DataStoreFactory dataStoreFactory) {
+    this.locationResolver = locationResolver;
+    this.storeFactory = storeFactory;
+    this.dataStoreFactory = dataStoreFactory;
+  }
+
+  @Override
+  public void doUpdate() throws InterruptedException {
+    List<String> repositoryIds = new ArrayList<>();
+    locationResolver.forClass(Path.class).forAllLocations((repositoryId, location) -> repositoryIds.add(repositoryId));
+    migrate(repositoryIds, THREADS);
+  }
+
+  @VisibleForTesting
+  int migrate(List<String> repositoryIds, int threads) throws InterruptedException {
+    long start = System.nanoTime();
+    DataStore<BlueSpiceRepositoryConfig> dataStore = BlueSpiceRepositoryConfigStore.dataStore(dataStoreFactory);
+    AtomicInteger processed = new AtomicInteger();
+    AtomicInteger migrated = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.min(threads, Math.max(1, repositoryIds.size())),
+      new ThreadFactoryBuilder().setNameFormat("BlueSpiceMigration-%d").setDaemon(true).build()
+    );
+    try {
+      for (String repositoryId : repositoryIds) {
+        executor.execute(() -> {
+          if (migrate(dataStore, repositoryId)) {
+            migrated.incrementAndGet();
+          }
+          int count = processed.incrementAndGet();
+          if (count % PROGRESS_INTERVAL == 0) {
+            LOG.info("migrated BlueSpice configurations of {} of {} repositories", count, repositoryIds.size());
+          }
+        });
+      }
+    } finally {
+      executor.shutdown();
+    }
+    if (!executor.awaitTermination(1, TimeUnit.DAYS)) {
+      throw new IllegalStateException("migration of BlueSpice configurations did not finish");
+    }
+    LOG.info(
+      "migrated {} BlueSpice configurations of {} repositories in {} ms",
+      migrated.get(),
+      repositoryIds.size(),
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+    );
+    return migrated.get();
+  }
+
+  private boolean migrate(DataStore<BlueSpiceRepositoryConfig> dataStore, String repositoryId) {
+    try {
+      Optional<BlueSpiceRepositoryConfig> configuration = BlueSpiceRepositoryConfigStore.repositoryStore(storeFactory, repositoryId).getOptional();
+      if (configuration.isEmpty()) {
+        return false;
+      }
+      // data stores are not guaranteed to be thread safe, only the reads of the small stores run in parallel
+      synchronized (dataStore) {
+        dataStore.put(repositoryId, configuration.get());
+      }
+      return true;
+    } catch (RuntimeException e) {
+      // a broken store must not prevent the start of SCM-Manager, the repository falls back to an empty configuration
+      LOG.warn("failed to migrate BlueSpice configuration of repository {}", repositoryId, e);
+      return false;
+    }
+  }
+
+  @Override
+  public Version getTargetVersion() {
+    return Version.parse("2.0.0");
+  }
+
+  @Override
+  public String getAffectedDataType() {
+    return "com.cloudogu.bluespice.repository.config";
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.github.legman.Subscribe;
+import jakarta.inject.Inject;
+import sonia.scm.EagerSingleton;
+import sonia.scm.HandlerEventType;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.RepositoryEvent;
+
+@Extension
+@EagerSingleton
+public class BlueSpiceRepositoryEventListener {
+
+  private final BlueSpiceContext context;
+  private final BlueSpicePageIndexer pageIndexer;
+
+  @Inject
+  public BlueSpiceRepositoryEventListener(BlueSpiceContext context, BlueSpicePageIndexer pageIndexer) {
+    this.context = context;
+    this.pageIndexer = pageIndexer;
+  }
+
+  @Subscribe(async = false)
+  public void onEvent(RepositoryEvent event) {
+    HandlerEventType eventType = event.getEventType();
+    if (eventType == HandlerEventType.CREATE || eventType == HandlerEventType.MODIFY) {
+      context.invalidate(event.getItem().getId());
+    }
+    if (eventType == HandlerEventType.DELETE) {
+      context.removeConfiguration(event.getItem().getId());
+      pageIndexer.repositoryDeleted(event.getItem().getId());
+    }
+  }
+}
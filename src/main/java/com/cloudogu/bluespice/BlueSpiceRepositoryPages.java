@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Streams;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Iterates all repositories page by page, so only the copies of the repositories of one page are held at a time. The
+ * repository manager keeps all repositories in memory on its own and sorts references to all of them for every page,
+ * so memory is constant only beyond that. The pages are sorted by id, repositories which are created or deleted while
+ * iterating may be missed or returned twice.
+ */
+final class BlueSpiceRepositoryPages {
+
+  static final int PAGE_SIZE = 1000;
+
+  private static final Comparator<Repository> BY_ID = Comparator.comparing(Repository::getId);
+
+  private BlueSpiceRepositoryPages() {
+  }
+
+  static Stream<Repository> stream(RepositoryManager repositoryManager) {
+    return Streams.stream(iterator(repositoryManager));
+  }
+
+  static Iterator<Repository> iterator(RepositoryManager repositoryManager) {
+    return new AbstractIterator<>() {
+
+      private int start = 0;
+      private Iterator<Repository> page = null;
+      private boolean lastPage = false;
+
+      @Override
+      protected Repository computeNext() {
+        while (page == null || !page.hasNext()) {
+          if (lastPage) {
+            return endOfData();
+          }
+          Collection<Repository> repositories = repositoryManager.getAll(BY_ID, start, PAGE_SIZE);
+          lastPage = repositories.size() < PAGE_SIZE;
+          start += PAGE_SIZE;
+          page = repositories.iterator();
+        }
+        return page.next();
+      }
+    };
+  }
+}
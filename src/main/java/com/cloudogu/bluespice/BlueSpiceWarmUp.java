@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Inject;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.web.security.AdministrationContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads the configuration and the link of every repository in the background after startup, if it is enabled in the
+ * global configuration. Requests which arrive before the warm up is finished load the configurations lazily as
+ * before. Only as many repositories are warmed up as fit into the cache of the configurations, further ones would
+ * just evict the first ones again.
+ */
+@Extension
+public class BlueSpiceWarmUp implements ServletContextListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlueSpiceWarmUp.class);
+
+  static final int THREADS = 4;
+
+  private final AdministrationContext administrationContext;
+  private final RepositoryManager repositoryManager;
+  private final BlueSpiceContext context;
+  private final BlueSpiceLinkResolver linkResolver;
+  private final int maxRepositories;
+
+  @Inject
+  public BlueSpiceWarmUp(AdministrationContext administrationContext, RepositoryManager repositoryManager, BlueSpiceContext context, BlueSpiceLinkResolver linkResolver) {
+    this(administrationContext, repositoryManager, context, linkResolver, BlueSpiceContext.MAX_CACHED_REPOSITORY_CONFIGS);
+  }
+
+  @VisibleForTesting
+  BlueSpiceWarmUp(AdministrationContext administrationContext, RepositoryManager repositoryManager, BlueSpiceContext context, BlueSpiceLinkResolver linkResolver, int maxRepositories) {
+    this.administrationContext = administrationContext;
+    this.repositoryManager = repositoryManager;
+    this.context = context;
+    this.linkResolver = linkResolver;
+    this.maxRepositories = maxRepositories;
+  }
+
+  @Override
+  public void contextInitialized(ServletContextEvent servletContextEvent) {
+    if (context.getConfiguration().isWarmUpEnabled()) {
+      ExecutorService executor = Executors.newFixedThreadPool(
+        THREADS,
+        new ThreadFactoryBuilder().setNameFormat("BlueSpiceWarmUp-%d").setDaemon(true).build()
+      );
+      warmUp(executor).whenComplete((count, error) -> executor.shutdown());
+    }
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent servletContextEvent) {
+    // nothing to do, the threads of the warm up are daemons
+  }
+
+  @VisibleForTesting
+  CompletableFuture<Integer> warmUp(Executor executor) {
+    long start = System.nanoTime();
+    return CompletableFuture.supplyAsync(this::loadRepositories, executor)
+      .thenCompose(repositories -> {
+        if (repositories.size() > maxRepositories) {
+          LOG.info("warming up only {} of {} repositories, which fit into the cache of BlueSpice configurations", maxRepositories, repositories.size());
+        }
+        List<CompletableFuture<Void>> loads = new ArrayList<>(Math.min(repositories.size(), maxRepositories));
+        for (Repository repository : Iterables.limit(repositories, maxRepositories)) {
+          loads.add(CompletableFuture.runAsync(() -> load(repository), executor));
+        }
+        return CompletableFuture.allOf(loads.toArray(CompletableFuture[]::new)).thenApply(done -> loads.size());
+      })
+      .whenComplete((count, error) -> {
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (error != null) {
+          LOG.warn("warm up of BlueSpice configuration failed after {} ms", duration, error);
+        } else {
+          LOG.info("warmed up BlueSpice configuration of {} repositories in {} ms", count, duration);
+        }
+      });
+  }
+
+  private Collection<Repository> loadRepositories() {
+    AtomicReference<Collection<Repository>> repositories = new AtomicReference<>();
+    administrationContext.runAsAdmin(() -> repositories.set(repositoryManager.getAll()));
+    return repositories.get();
+  }
+
+  private void load(Repository repository) {
+    try {
+      context.getConfiguration(repository);
+      linkResolver.resolve(repository);
+    } catch (RuntimeException e) {
+      // the configuration is loaded lazily on first access again
+      LOG.debug("failed to warm up BlueSpice configuration of repository {}", repository, e);
+    }
+  }
+}
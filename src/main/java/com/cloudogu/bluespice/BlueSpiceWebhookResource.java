@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.google.inject.Inject;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import sonia.scm.api.v2.resources.ErrorDto;
+import sonia.scm.security.AllowAnonymousAccess;
+import sonia.scm.web.VndMediaType;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Endpoint which is called by BlueSpice whenever pages are edited, moved or deleted. The calls are not authenticated
+ * by a user, but signed with the webhook secret of the global configuration. The signature covers a timestamp, so a
+ * recorded call can only be replayed within a short tolerance. Calls without signature are rejected before the body is
+ * read and the body is read only up to a fixed size.
+ */
+@AllowAnonymousAccess
+@Path("v2/bluespice/webhook")
+public class BlueSpiceWebhookResource {
+
+  static final String SIGNATURE_HEADER = "X-BlueSpice-Signature";
+  static final String TIMESTAMP_HEADER = "X-BlueSpice-Timestamp";
+  static final int MAX_BODY_SIZE = 64 * 1024;
+  static final Duration TIMESTAMP_TOLERANCE = Duration.ofMinutes(5);
+  private static final String SIGNATURE_PREFIX = "sha256=";
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final BlueSpiceContext context;
+  private final BlueSpiceInvalidation invalidation;
+
+  @Inject
+  public BlueSpiceWebhookResource(BlueSpiceContext context, BlueSpiceInvalidation invalidation) {
+    this.context = context;
+    this.invalidation = invalidation;
+  }
+
+  @POST
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Operation(
+    summary = "Receive BlueSpice page changes",
+    description = "Evicts the cached state of the repositories linked to the changed pages. The current time in seconds since the epoch has to be sent in the header " + TIMESTAMP_HEADER + ". The timestamp, a dot and the body have to be signed with the webhook secret as hex encoded HMAC-SHA256 in the header " + SIGNATURE_HEADER + " with the prefix " + SIGNATURE_PREFIX + ".",
+    tags = "BlueSpice Plugin",
+    operationId = "bluespice_webhook",
+    requestBody = @RequestBody(
+      content = @Content(
+        mediaType = MediaType.APPLICATION_JSON,
+        schema = @Schema(implementation = BlueSpiceWebhookDto.class)
+      )
+    )
+  )
+  @ApiResponse(responseCode = "202", description = "changes accepted")
+  @ApiResponse(responseCode = "400", description = "invalid body")
+  @ApiResponse(responseCode = "401", description = "missing or invalid signature or timestamp")
+  @ApiResponse(responseCode = "404", description = "not found, no webhook secret is configured")
+  @ApiResponse(responseCode = "413", description = "body too large")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response receive(@HeaderParam(SIGNATURE_HEADER) String signature,
+                          @HeaderParam(TIMESTAMP_HEADER) String timestamp,
+                          @HeaderParam(HttpHeaders.CONTENT_LENGTH) String contentLength,
+                          InputStream bodyStream) throws IOException {
+    String secret = context.getConfiguration().getWebhookSecret();
+    if (Strings.isNullOrEmpty(secret)) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    if (Strings.isNullOrEmpty(signature) || !isRecent(timestamp)) {
+      return Response.status(Response.Status.UNAUTHORIZED).build();
+    }
+    if (isTooLarge(contentLength)) {
+      return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE).build();
+    }
+    // one more byte than allowed is read to detect bodies without or with a wrong content length
+    byte[] body = ByteStreams.limit(bodyStream, MAX_BODY_SIZE + 1L).readAllBytes();
+    if (body.length > MAX_BODY_SIZE) {
+      return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE).build();
+    }
+    if (!isValid(signature, secret, timestamp, body)) {
+      return Response.status(Response.Status.UNAUTHORIZED).build();
+    }
+    BlueSpiceWebhookDto webhook;
+    try {
+      webhook = OBJECT_MAPPER.readValue(body, BlueSpiceWebhookDto.class);
+    } catch (IOException e) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    if (webhook.getEvents() != null) {
+      for (BlueSpiceWebhookDto.Event event : webhook.getEvents()) {
+        if (!Strings.isNullOrEmpty(event.getTitle())) {
+          invalidation.pageChanged(event.getTitle());
+        }
+        if (!Strings.isNullOrEmpty(event.getTarget())) {
+          invalidation.pageChanged(event.getTarget());
+        }
+      }
+    }
+    return Response.accepted().build();
+  }
+
+  static String sign(String secret, String timestamp, byte[] body) throws GeneralSecurityException {
+    Mac mac = Mac.getInstance(ALGORITHM);
+    mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+    mac.update((timestamp + ".").getBytes(StandardCharsets.US_ASCII));
+    return SIGNATURE_PREFIX + BaseEncoding.base16().lowerCase().encode(mac.doFinal(body));
+  }
+
+  private static boolean isRecent(String timestamp) {
+    if (Strings.isNullOrEmpty(timestamp)) {
+      return false;
+    }
+    try {
+      Instant sent = Instant.ofEpochSecond(Long.parseLong(timestamp.trim()));
+      return Duration.between(sent, Instant.now()).abs().compareTo(TIMESTAMP_TOLERANCE) <= 0;
+    } catch (NumberFormatException | DateTimeException e) {
+      return false;
+    }
+  }
+
+  private static boolean isTooLarge(String contentLength) {
+    if (Strings.isNullOrEmpty(contentLength)) {
+      return false;
+    }
+    try {
+      return Long.parseLong(contentLength.trim()) > MAX_BODY_SIZE;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private static boolean isValid(String signature, String secret, String timestamp, byte[] body) {
+    try {
+      // constant time comparison, so the signature can not be guessed byte by byte
+      return MessageDigest.isEqual(
+        sign(secret, timestamp.trim(), body).getBytes(StandardCharsets.US_ASCII),
+        signature.trim().toLowerCase(Locale.ENGLISH).getBytes(StandardCharsets.US_ASCII)
+      );
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("failed to compute webhook signature", e);
+    }
+  }
+}
@@ -18,14 +18,206 @@ package com.cloudogu.bluespice;
 
 import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlElementWrapper;
 import jakarta.xml.bind.annotation.XmlRootElement;
-import lombok.Data;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
-@Data
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Global configuration of the plugin. Instances created by {@link #snapshot()} are shared between threads and can not
+ * be modified, all other instances are plain mutable beans.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
 @XmlAccessorType(XmlAccessType.FIELD)
 @XmlRootElement(name = "bluespice-config")
 public class GlobalBlueSpiceConfig {
 
   private String baseUrl;
+  private String urlTemplate;
+  private String apiUrl;
+  @XmlElementWrapper(name = "rules")
+  @XmlElement(name = "rule")
+  private List<LinkRule> rules = new ArrayList<>();
+  @XmlElementWrapper(name = "instances")
+  @XmlElement(name = "instance")
+  private List<BlueSpiceInstance> instances = new ArrayList<>();
+  private boolean linkCheckEnabled;
+  private boolean hideBrokenLinks;
+  /**
+   * Probes direct urls to any host with the link check. Otherwise only links to hosts of configured base urls are
+   * probed.
+   */
+  private boolean linkCheckDirectUrls;
+  private boolean warmUpEnabled;
+  /**
+   * Secret which signs the calls of the webhook. The webhook is disabled without a secret.
+   */
+  @ToString.Exclude
+  private String webhookSecret;
+
+  @Getter(AccessLevel.NONE)
+  @ToString.Exclude
+  private transient boolean frozen;
+  @Getter(AccessLevel.NONE)
+  @ToString.Exclude
+  private transient volatile UrlTemplate compiledUrlTemplate;
+  @Getter(AccessLevel.NONE)
+  @ToString.Exclude
+  private transient volatile LinkRuleMatcher compiledRules;
+  @Getter(AccessLevel.NONE)
+  @ToString.Exclude
+  private transient volatile Map<String, BlueSpiceInstance> instancesById;
+
+  public void setBaseUrl(String baseUrl) {
+    checkModifiable();
+    this.baseUrl = baseUrl;
+  }
+
+  public void setUrlTemplate(String urlTemplate) {
+    checkModifiable();
+    this.urlTemplate = urlTemplate;
+    this.compiledUrlTemplate = null;
+  }
+
+  public void setApiUrl(String apiUrl) {
+    checkModifiable();
+    this.apiUrl = apiUrl;
+  }
+
+  public void setRules(List<LinkRule> rules) {
+    checkModifiable();
+    this.rules = rules;
+    this.compiledRules = null;
+  }
+
+  public void setInstances(List<BlueSpiceInstance> instances) {
+    checkModifiable();
+    this.instances = instances;
+    this.instancesById = null;
+  }
+
+  public void setLinkCheckEnabled(boolean linkCheckEnabled) {
+    checkModifiable();
+    this.linkCheckEnabled = linkCheckEnabled;
+  }
+
+  public void setHideBrokenLinks(boolean hideBrokenLinks) {
+    checkModifiable();
+    this.hideBrokenLinks = hideBrokenLinks;
+  }
+
+  public void setLinkCheckDirectUrls(boolean linkCheckDirectUrls) {
+    checkModifiable();
+    this.linkCheckDirectUrls = linkCheckDirectUrls;
+  }
+
+  public void setWarmUpEnabled(boolean warmUpEnabled) {
+    checkModifiable();
+    this.warmUpEnabled = warmUpEnabled;
+  }
+
+  public void setWebhookSecret(String webhookSecret) {
+    checkModifiable();
+    this.webhookSecret = webhookSecret;
+  }
+
+  private void checkModifiable() {
+    if (frozen) {
+      throw new UnsupportedOperationException("configuration snapshot can not be modified, use copy() instead");
+    }
+  }
+
+  /**
+   * Returns the compiled {@link #urlTemplate} or {@code null}, if no template is configured. The template is compiled
+   * only once per configuration instance.
+   */
+  public UrlTemplate getCompiledUrlTemplate() {
+    UrlTemplate template = compiledUrlTemplate;
+    if (template == null && urlTemplate != null && !urlTemplate.isEmpty()) {
+      template = UrlTemplate.compile(urlTemplate);
+      compiledUrlTemplate = template;
+    }
+    return template;
+  }
+
+  /**
+   * Returns the {@link #rules} compiled into a matcher. The rules are compiled only once per configuration
+   * instance.
+   */
+  public LinkRuleMatcher getCompiledRules() {
+    LinkRuleMatcher matcher = compiledRules;
+    if (matcher == null) {
+      matcher = LinkRuleMatcher.compile(rules == null ? List.of() : rules);
+      compiledRules = matcher;
+    }
+    return matcher;
+  }
+
+  /**
+   * Returns the registered instance with the given id or an empty optional, if there is no such instance. The lookup
+   * map is created only once per configuration instance.
+   */
+  public Optional<BlueSpiceInstance> getInstance(String id) {
+    Map<String, BlueSpiceInstance> byId = instancesById;
+    if (byId == null) {
+      byId = instances == null ? Map.of() : instances.stream()
+        .filter(instance -> instance.getId() != null)
+        .collect(Collectors.toUnmodifiableMap(BlueSpiceInstance::getId, Function.identity(), (first, second) -> second));
+      instancesById = byId;
+    }
+    return id == null ? Optional.empty() : Optional.ofNullable(byId.get(id));
+  }
+
+  /**
+   * Returns the version of the instance with the given id or {@code 0}, if there is no such instance.
+   */
+  long getInstanceVersion(String id) {
+    return getInstance(id).map(BlueSpiceInstance::getVersion).orElse(0L);
+  }
+
+  GlobalBlueSpiceConfig copy() {
+    GlobalBlueSpiceConfig copy = new GlobalBlueSpiceConfig();
+    copy.setBaseUrl(baseUrl);
+    copy.setUrlTemplate(urlTemplate);
+    copy.setApiUrl(apiUrl);
+    copy.setLinkCheckEnabled(linkCheckEnabled);
+    copy.setHideBrokenLinks(hideBrokenLinks);
+    copy.setLinkCheckDirectUrls(linkCheckDirectUrls);
+    copy.setWarmUpEnabled(warmUpEnabled);
+    copy.setWebhookSecret(webhookSecret);
+    if (rules != null) {
+      rules.forEach(rule -> copy.getRules().add(new LinkRule(rule.getNamespacePattern(), rule.getNamePattern(), rule.getPathTemplate())));
+    }
+    if (instances != null) {
+      instances.forEach(instance -> copy.getInstances().add(instance.copy()));
+    }
+    return copy;
+  }
 
+  /**
+   * Creates an unmodifiable copy of this configuration, which can be shared between threads. All derived values are
+   * computed before the copy is returned.
+   */
+  GlobalBlueSpiceConfig snapshot() {
+    GlobalBlueSpiceConfig snapshot = copy();
+    snapshot.rules = List.copyOf(snapshot.rules);
+    snapshot.instances = List.copyOf(snapshot.instances);
+    snapshot.getCompiledUrlTemplate();
+    snapshot.getCompiledRules();
+    snapshot.getInstance(null);
+    snapshot.frozen = true;
+    return snapshot;
+  }
 }
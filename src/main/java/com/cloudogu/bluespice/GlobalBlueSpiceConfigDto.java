@@ -18,16 +18,35 @@ package com.cloudogu.bluespice;
 
 import de.otto.edison.hal.HalRepresentation;
 import de.otto.edison.hal.Links;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Pattern;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.util.List;
+
 @NoArgsConstructor
 @Getter
 @Setter
 public class GlobalBlueSpiceConfigDto extends HalRepresentation {
 
   private String baseUrl;
+  @Pattern(regexp = UrlTemplate.VALID_TEMPLATE)
+  private String urlTemplate;
+  private String apiUrl;
+  private List<@Valid LinkRule> rules;
+  private List<@Valid BlueSpiceInstance> instances;
+  private boolean linkCheckEnabled;
+  private boolean hideBrokenLinks;
+  private boolean linkCheckDirectUrls;
+  private boolean warmUpEnabled;
+  /**
+   * New webhook secret. It is never returned, an empty secret keeps the stored one.
+   */
+  private String webhookSecret;
+  private boolean webhookSecretSet;
+  private boolean removeWebhookSecret;
 
   @Override
   protected HalRepresentation add(Links links) {
@@ -17,15 +17,16 @@
 package com.cloudogu.bluespice;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
 import de.otto.edison.hal.Link;
 import de.otto.edison.hal.Links;
 import jakarta.inject.Inject;
 import org.mapstruct.AfterMapping;
 import org.mapstruct.Context;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
 import sonia.scm.api.v2.resources.HalAppenderMapper;
-import sonia.scm.api.v2.resources.LinkBuilder;
 import sonia.scm.api.v2.resources.ScmPathInfoStore;
 import sonia.scm.config.ConfigurationPermissions;
 
@@ -38,6 +39,9 @@ public abstract class GlobalBlueSpiceConfigMapper extends HalAppenderMapper {
   @Inject
   private ScmPathInfoStore scmPathInfoStore;
 
+  @Mapping(target = "webhookSecret", ignore = true)
+  @Mapping(target = "webhookSecretSet", expression = "java(!com.google.common.base.Strings.isNullOrEmpty(config.getWebhookSecret()))")
+  @Mapping(target = "removeWebhookSecret", ignore = true)
   public abstract GlobalBlueSpiceConfigDto map(GlobalBlueSpiceConfig config);
 
   public abstract GlobalBlueSpiceConfig map(GlobalBlueSpiceConfigDto dto, @Context GlobalBlueSpiceConfig oldConfig);
@@ -47,6 +51,19 @@ public abstract class GlobalBlueSpiceConfigMapper extends HalAppenderMapper {
     this.scmPathInfoStore = scmPathInfoStore;
   }
 
+  /**
+   * The secret is never sent to clients, so an update without a secret keeps the stored one unless its removal is
+   * requested explicitly.
+   */
+  @AfterMapping
+  void keepWebhookSecret(GlobalBlueSpiceConfigDto dto, @MappingTarget GlobalBlueSpiceConfig config, @Context GlobalBlueSpiceConfig oldConfig) {
+    if (dto.isRemoveWebhookSecret()) {
+      config.setWebhookSecret(null);
+    } else if (Strings.isNullOrEmpty(dto.getWebhookSecret()) && oldConfig != null) {
+      config.setWebhookSecret(oldConfig.getWebhookSecret());
+    }
+  }
+
   @AfterMapping
   public void appendLinks(@MappingTarget GlobalBlueSpiceConfigDto target) {
     Links.Builder linksBuilder = linkingTo().self(self());
@@ -59,12 +76,10 @@ public abstract class GlobalBlueSpiceConfigMapper extends HalAppenderMapper {
   }
 
   private String self() {
-    LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get(), BlueSpiceConfigResource.class);
-    return linkBuilder.method("getGlobalConfig").parameters().href();
+    return BlueSpiceLinks.of(scmPathInfoStore.get()).globalConfig();
   }
 
   private String update() {
-    LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get(), BlueSpiceConfigResource.class);
-    return linkBuilder.method("updateGlobalConfig").parameters().href();
+    return BlueSpiceLinks.of(scmPathInfoStore.get()).updateGlobalConfig();
   }
 }
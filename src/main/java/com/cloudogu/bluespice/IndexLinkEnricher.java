@@ -29,17 +29,20 @@ import static com.cloudogu.bluespice.BlueSpiceContext.NAME;
 public class IndexLinkEnricher implements HalEnricher {
 
   private final Provider<ScmPathInfoStore> scmPathInfoStore;
+  private final BlueSpiceMetrics metrics;
 
   @Inject
-  public IndexLinkEnricher(Provider<ScmPathInfoStore> scmPathInfoStore) {
+  public IndexLinkEnricher(Provider<ScmPathInfoStore> scmPathInfoStore, BlueSpiceMetrics metrics) {
     this.scmPathInfoStore = scmPathInfoStore;
+    this.metrics = metrics;
   }
 
   @Override
   public void enrich(HalEnricherContext context, HalAppender appender) {
+    long start = System.nanoTime();
     if (ConfigurationPermissions.read(NAME).isPermitted()) {
-      LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get().get(), BlueSpiceConfigResource.class);
-      appender.appendLink("blueSpiceConfig", linkBuilder.method("getGlobalConfig").parameters().href());
+      appender.appendLink("blueSpiceConfig", BlueSpiceLinks.of(scmPathInfoStore.get().get()).globalConfig());
     }
+    metrics.indexEnriched(start);
   }
 }
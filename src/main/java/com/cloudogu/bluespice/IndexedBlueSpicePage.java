@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import sonia.scm.search.Indexed;
+import sonia.scm.search.IndexedType;
+
+import java.time.Instant;
+
+/**
+ * Wiki page below the BlueSpice path of a repository as it is stored in the search index.
+ */
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@IndexedType(value = "blueSpicePage", repositoryScoped = true, namespaceScoped = true)
+public class IndexedBlueSpicePage {
+
+  @Indexed(defaultQuery = true, boost = 1.5f)
+  private String title;
+  @Indexed(defaultQuery = true, highlighted = true)
+  private String extract;
+  @Indexed(type = Indexed.Type.STORED_ONLY)
+  private String url;
+  @Indexed(type = Indexed.Type.SEARCHABLE)
+  private Instant lastModified;
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * Result of a single probe of a BlueSpice link.
+ */
+@Getter
+@AllArgsConstructor
+public class LinkHealth {
+
+  private final String url;
+  private final Status status;
+  /**
+   * Http status of the response or {@code 0}, if the server could not be reached.
+   */
+  private final int httpStatus;
+  private final Instant checkedAt;
+
+  public boolean isBroken() {
+    return status == Status.BROKEN;
+  }
+
+  public enum Status {
+    /**
+     * The page exists.
+     */
+    OK,
+    /**
+     * The server answered, but the page does not exist.
+     */
+    BROKEN,
+    /**
+     * The server could not be reached or its answer does not tell whether the page exists, e.g. because a login is
+     * required.
+     */
+    UNREACHABLE
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Rule which maps repositories to a wiki path. The namespace and name patterns may contain {@code *} as wildcard, the
+ * values matched by the wildcards can be used in the path template as {@code {1}}, {@code {2}} and so on, numbered
+ * from left to right over the namespace and the name pattern.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@XmlAccessorType(XmlAccessType.FIELD)
+public class LinkRule {
+
+  static final String VALID_PATTERN = "^[A-Za-z0-9._\\-*]+$";
+
+  @NotEmpty
+  @Pattern(regexp = VALID_PATTERN)
+  private String namespacePattern;
+  @NotEmpty
+  @Pattern(regexp = VALID_PATTERN)
+  private String namePattern;
+  @NotEmpty
+  @Pattern(regexp = UrlTemplate.VALID_TEMPLATE)
+  private String pathTemplate;
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import sonia.scm.repository.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * All {@link LinkRule}s indexed by their namespace. Rules with a namespace pattern without wildcard are looked up by
+ * the namespace of the repository. The remaining rules with wildcards in the namespace are compiled into a single
+ * alternation, which finds the first of them matching the repository in one pass. The group of each alternative maps
+ * the match back to its rule. The first matching rule of both wins.
+ */
+public final class LinkRuleMatcher {
+
+  private static final int[] NO_RULES = new int[0];
+
+  private final List<LinkRule> rules;
+  private final Pattern[] patterns;
+  private final UrlTemplate[] templates;
+  private final Map<String, int[]> rulesByNamespace;
+  private final Pattern wildcardPattern;
+  private final int[] wildcardRules;
+  private final int[] wildcardGroups;
+
+  private LinkRuleMatcher(List<LinkRule> rules, Pattern[] patterns, UrlTemplate[] templates, Map<String, int[]> rulesByNamespace, Pattern wildcardPattern, int[] wildcardRules, int[] wildcardGroups) {
+    this.rules = rules;
+    this.patterns = patterns;
+    this.templates = templates;
+    this.rulesByNamespace = rulesByNamespace;
+    this.wildcardPattern = wildcardPattern;
+    this.wildcardRules = wildcardRules;
+    this.wildcardGroups = wildcardGroups;
+  }
+
+  public static LinkRuleMatcher compile(List<LinkRule> rules) {
+    Pattern[] patterns = new Pattern[rules.size()];
+    UrlTemplate[] templates = new UrlTemplate[rules.size()];
+    Map<String, List<Integer>> byNamespace = new HashMap<>();
+    List<Integer> wildcards = new ArrayList<>();
+    List<Integer> groups = new ArrayList<>();
+    StringBuilder alternation = new StringBuilder();
+    int group = 1;
+    for (int i = 0; i < rules.size(); i++) {
+      LinkRule rule = rules.get(i);
+      validate(rule.getNamespacePattern());
+      validate(rule.getNamePattern());
+      templates[i] = UrlTemplate.compile(rule.getPathTemplate());
+      StringBuilder regex = new StringBuilder();
+      int captures = appendGlob(regex, rule.getNamespacePattern());
+      regex.append('/');
+      captures += appendGlob(regex, rule.getNamePattern());
+      if (rule.getNamespacePattern().indexOf('*') >= 0) {
+        // the alternatives are tried from left to right, so the first matching rule wins
+        if (!wildcards.isEmpty()) {
+          alternation.append('|');
+        }
+        alternation.append('(').append(regex).append(')');
+        wildcards.add(i);
+        groups.add(group);
+        group += captures + 1;
+      } else {
+        patterns[i] = Pattern.compile(regex.toString());
+        byNamespace.computeIfAbsent(rule.getNamespacePattern(), namespace -> new ArrayList<>()).add(i);
+      }
+    }
+    Map<String, int[]> rulesByNamespace = new HashMap<>();
+    byNamespace.forEach((namespace, indices) -> rulesByNamespace.put(namespace, toArray(indices)));
+    Pattern wildcardPattern = wildcards.isEmpty() ? null : Pattern.compile(alternation.toString());
+    return new LinkRuleMatcher(List.copyOf(rules), patterns, templates, Map.copyOf(rulesByNamespace), wildcardPattern, toArray(wildcards), toArray(groups));
+  }
+
+  private static int[] toArray(List<Integer> indices) {
+    return indices.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private static void validate(String glob) {
+    if (glob == null || !glob.matches(LinkRule.VALID_PATTERN)) {
+      throw new IllegalArgumentException("invalid rule pattern: " + glob);
+    }
+  }
+
+  /**
+   * Appends the glob as regular expression with a group for each wildcard and returns the number of groups.
+   */
+  private static int appendGlob(StringBuilder regex, String glob) {
+    int groups = 0;
+    int start = 0;
+    int wildcard;
+    while ((wildcard = glob.indexOf('*', start)) >= 0) {
+      if (wildcard > start) {
+        regex.append(Pattern.quote(glob.substring(start, wildcard)));
+      }
+      regex.append("([^/]*)");
+      groups++;
+      start = wildcard + 1;
+    }
+    if (start < glob.length()) {
+      regex.append(Pattern.quote(glob.substring(start)));
+    }
+    return groups;
+  }
+
+  /**
+   * Returns the index of the first rule matching the repository or -1, if no rule matches.
+   */
+  public int match(Repository repository) {
+    if (rules.isEmpty()) {
+      return -1;
+    }
+    return find(repository, null);
+  }
+
+  /**
+   * Appends the path of the first rule matching the repository to the given builder.
+   *
+   * @return {@code true} if a rule has matched
+   */
+  public boolean render(Repository repository, StringBuilder target) {
+    if (rules.isEmpty()) {
+      return false;
+    }
+    String[][] captured = new String[1][];
+    int rule = find(repository, captured);
+    if (rule < 0) {
+      return false;
+    }
+    templates[rule].render(repository, captured[0], target);
+    return true;
+  }
+
+  /**
+   * Matches the rules of the namespace of the repository one by one, until a rule is found which comes before the
+   * first matching rule with wildcard namespace.
+   */
+  private int find(Repository repository, String[][] captured) {
+    int[] namespaceRules = rulesByNamespace.getOrDefault(repository.getNamespace(), NO_RULES);
+    if (namespaceRules.length == 0 && wildcardPattern == null) {
+      return -1;
+    }
+    String path = repository.getNamespace() + "/" + repository.getName();
+    Matcher wildcardMatcher = wildcardPattern == null ? null : wildcardPattern.matcher(path);
+    int wildcard = wildcardMatcher != null && wildcardMatcher.matches() ? matchedAlternative(wildcardMatcher) : -1;
+    int wildcardRule = wildcard < 0 ? Integer.MAX_VALUE : wildcardRules[wildcard];
+    for (int rule : namespaceRules) {
+      if (rule > wildcardRule) {
+        break;
+      }
+      Matcher matcher = patterns[rule].matcher(path);
+      if (matcher.matches()) {
+        if (captured != null) {
+          captured[0] = captures(matcher, 1, matcher.groupCount());
+        }
+        return rule;
+      }
+    }
+    if (wildcard < 0) {
+      return -1;
+    }
+    if (captured != null) {
+      int group = wildcardGroups[wildcard];
+      int end = wildcard + 1 < wildcardGroups.length ? wildcardGroups[wildcard + 1] - 1 : wildcardMatcher.groupCount();
+      captured[0] = captures(wildcardMatcher, group + 1, end);
+    }
+    return wildcardRule;
+  }
+
+  private int matchedAlternative(Matcher matcher) {
+    for (int i = 0; i < wildcardGroups.length; i++) {
+      if (matcher.start(wildcardGroups[i]) >= 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static String[] captures(Matcher matcher, int first, int last) {
+    String[] captures = new String[last - first + 1];
+    for (int i = 0; i < captures.length; i++) {
+      captures[i] = matcher.group(first + i);
+    }
+    return captures;
+  }
+
+  public List<LinkRule> getRules() {
+    return rules;
+  }
+
+  public boolean isEmpty() {
+    return rules.isEmpty();
+  }
+}
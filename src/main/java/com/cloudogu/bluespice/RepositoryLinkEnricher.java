@@ -16,7 +16,6 @@
 
 package com.cloudogu.bluespice;
 
-import com.google.common.base.Strings;
 import jakarta.inject.Inject;
 import jakarta.inject.Provider;
 
@@ -24,45 +23,47 @@ import sonia.scm.api.v2.resources.Enrich;
 import sonia.scm.api.v2.resources.HalAppender;
 import sonia.scm.api.v2.resources.HalEnricher;
 import sonia.scm.api.v2.resources.HalEnricherContext;
-import sonia.scm.api.v2.resources.LinkBuilder;
-import sonia.scm.api.v2.resources.ScmPathInfoStore;
 import sonia.scm.plugin.Extension;
 import sonia.scm.repository.Repository;
-import sonia.scm.repository.RepositoryPermissions;
+
+import java.util.Optional;
 
 @Extension
 @Enrich(Repository.class)
 public class RepositoryLinkEnricher implements HalEnricher {
 
-  private final Provider<ScmPathInfoStore> scmPathInfoStore;
+  private final Provider<BlueSpiceEnrichmentContext> enrichmentContext;
   private final BlueSpiceContext blueSpiceContext;
+  private final BlueSpiceLinkResolver linkResolver;
+  private final BlueSpiceLinkChecker linkChecker;
+  private final BlueSpiceMetrics metrics;
 
   @Inject
-  public RepositoryLinkEnricher(Provider<ScmPathInfoStore> scmPathInfoStore, BlueSpiceContext blueSpiceContext) {
-    this.scmPathInfoStore = scmPathInfoStore;
+  public RepositoryLinkEnricher(Provider<BlueSpiceEnrichmentContext> enrichmentContext, BlueSpiceContext blueSpiceContext, BlueSpiceLinkResolver linkResolver, BlueSpiceLinkChecker linkChecker, BlueSpiceMetrics metrics) {
+    this.enrichmentContext = enrichmentContext;
     this.blueSpiceContext = blueSpiceContext;
+    this.linkResolver = linkResolver;
+    this.linkChecker = linkChecker;
+    this.metrics = metrics;
   }
 
   @Override
   public void enrich(HalEnricherContext context, HalAppender appender) {
+    long start = System.nanoTime();
     Repository repository = context.oneRequireByType(Repository.class);
-    LinkBuilder linkBuilder = new LinkBuilder(scmPathInfoStore.get().get(), BlueSpiceConfigResource.class);
+    BlueSpiceEnrichmentContext requestContext = enrichmentContext.get();
 
-    if (RepositoryPermissions.custom("configureBlueSpice", repository).isPermitted()) {
-      appender.appendLink("blueSpiceConfig", linkBuilder.method("getRepoConfig").parameters(repository.getNamespace(), repository.getName()).href());
+    if (requestContext.isConfigurePermitted(repository)) {
+      appender.appendLink("blueSpiceConfig", requestContext.configLink(repository));
     }
 
-    String baseUrl = blueSpiceContext.getConfiguration().getBaseUrl();
-    String path = blueSpiceContext.getConfiguration(repository).getRelativePath();
-    String directUrl = blueSpiceContext.getConfiguration(repository).getDirectUrl();
-    OverrideOption override = blueSpiceContext.getConfiguration(repository).getOverride();
-    String link = "blueSpice";
-
-    if (!Strings.isNullOrEmpty(directUrl) && OverrideOption.OVERRIDE.equals(override)) {
-      appender.appendLink(link, directUrl);
-    } else if (!Strings.isNullOrEmpty(baseUrl) && OverrideOption.APPEND.equals(override)) {
-      path = path == null ? "" : "/" + path;
-      appender.appendLink(link, baseUrl + path);
+    Optional<String> link = linkResolver.resolve(repository).filter(url -> !linkChecker.isSuppressed(url));
+    if (link.isPresent()) {
+      appender.appendLink("blueSpice", link.get());
+      if (blueSpiceContext.getPageTitle(repository).isPresent()) {
+        appender.appendLink("blueSpicePreview", requestContext.previewLink(repository));
+      }
     }
+    metrics.repositoryEnriched(start);
   }
 }
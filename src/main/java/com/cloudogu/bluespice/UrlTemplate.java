@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import sonia.scm.repository.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled url template with the placeholders {@code {namespace}}, {@code {name}} and {@code {id}}. Templates of
+ * {@link LinkRule}s may additionally use numbered placeholders like {@code {1}}, which are replaced with the wildcard
+ * captures of the rule. The template is parsed once and rendered directly into a given {@link StringBuilder}, the
+ * values of the placeholders are percent encoded as path segments.
+ */
+public final class UrlTemplate {
+
+  static final String VALID_TEMPLATE = "^([^{}]|\\{(namespace|name|id|[1-9][0-9]*)\\})*$";
+
+  private static final String[] NO_CAPTURES = new String[0];
+  private static final Pattern PLACEHOLDER = Pattern.compile("\\{(namespace|name|id|[1-9][0-9]*)}");
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  private final String template;
+  private final String[] literals;
+  private final Placeholder[] placeholders;
+  private final int[] captureIndexes;
+
+  private UrlTemplate(String template, String[] literals, Placeholder[] placeholders, int[] captureIndexes) {
+    this.template = template;
+    this.literals = literals;
+    this.placeholders = placeholders;
+    this.captureIndexes = captureIndexes;
+  }
+
+  public static UrlTemplate compile(String template) {
+    if (!template.matches(VALID_TEMPLATE)) {
+      throw new IllegalArgumentException("invalid url template: " + template);
+    }
+    List<String> literals = new ArrayList<>();
+    List<Placeholder> placeholders = new ArrayList<>();
+    List<Integer> captureIndexes = new ArrayList<>();
+    Matcher matcher = PLACEHOLDER.matcher(template);
+    int start = 0;
+    while (matcher.find()) {
+      literals.add(template.substring(start, matcher.start()));
+      String placeholder = matcher.group(1);
+      if (Character.isDigit(placeholder.charAt(0))) {
+        placeholders.add(Placeholder.CAPTURE);
+        captureIndexes.add(Integer.parseInt(placeholder) - 1);
+      } else {
+        placeholders.add(Placeholder.valueOf(placeholder.toUpperCase(Locale.ENGLISH)));
+        captureIndexes.add(-1);
+      }
+      start = matcher.end();
+    }
+    literals.add(template.substring(start));
+    return new UrlTemplate(
+      template,
+      literals.toArray(new String[0]),
+      placeholders.toArray(new Placeholder[0]),
+      captureIndexes.stream().mapToInt(Integer::intValue).toArray()
+    );
+  }
+
+  public void render(Repository repository, StringBuilder target) {
+    render(repository, NO_CAPTURES, target);
+  }
+
+  /**
+   * Renders the template with the given wildcard captures. Numbered placeholders without a capture are left empty.
+   */
+  public void render(Repository repository, String[] captures, StringBuilder target) {
+    for (int i = 0; i < placeholders.length; i++) {
+      target.append(literals[i]);
+      if (placeholders[i] == Placeholder.CAPTURE) {
+        int captureIndex = captureIndexes[i];
+        appendEncoded(target, captureIndex < captures.length ? captures[captureIndex] : null);
+      } else {
+        appendEncoded(target, placeholders[i].value(repository));
+      }
+    }
+    target.append(literals[placeholders.length]);
+  }
+
+  public String render(Repository repository) {
+    StringBuilder builder = new StringBuilder(template.length() + 32);
+    render(repository, builder);
+    return builder.toString();
+  }
+
+  @Override
+  public String toString() {
+    return template;
+  }
+
+  private static void appendEncoded(StringBuilder target, String value) {
+    if (value == null) {
+      return;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (isUnreserved(c)) {
+        target.append(c);
+      } else {
+        appendEncodedSlow(target, value, i);
+        return;
+      }
+    }
+  }
+
+  private static void appendEncodedSlow(StringBuilder target, String value, int offset) {
+    byte[] bytes = value.substring(offset).getBytes(StandardCharsets.UTF_8);
+    for (byte b : bytes) {
+      char c = (char) (b & 0xFF);
+      if (isUnreserved(c)) {
+        target.append(c);
+      } else {
+        target.append('%').append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+      }
+    }
+  }
+
+  private static boolean isUnreserved(char c) {
+    return (c >= 'a' && c <= 'z')
+      || (c >= 'A' && c <= 'Z')
+      || (c >= '0' && c <= '9')
+      || c == '-' || c == '.' || c == '_' || c == '~';
+  }
+
+  private enum Placeholder {
+    NAMESPACE {
+      @Override
+      String value(Repository repository) {
+        return repository.getNamespace();
+      }
+    },
+    NAME {
+      @Override
+      String value(Repository repository) {
+        return repository.getName();
+      }
+    },
+    ID {
+      @Override
+      String value(Repository repository) {
+        return repository.getId();
+      }
+    },
+    CAPTURE {
+      @Override
+      String value(Repository repository) {
+        throw new IllegalStateException("captures are rendered from the match");
+      }
+    };
+
+    abstract String value(Repository repository);
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+import React, { FC } from "react";
+import { Hit, HitProps, TextHitField, useStringHitFieldValue } from "@scm-manager/ui-components";
+
+const BlueSpicePageHitRenderer: FC<HitProps> = ({ hit }) => {
+  const url = useStringHitFieldValue(hit, "url");
+  const repository = hit._embedded?.repository;
+
+  return (
+    <Hit>
+      <Hit.Content>
+        <a href={url} target="_blank" rel="noopener noreferrer">
+          <Hit.Title>
+            <TextHitField hit={hit} field="title" />
+          </Hit.Title>
+        </a>
+        <p>
+          <TextHitField hit={hit} field="extract" truncateValueAt={300} />
+        </p>
+        {repository ? (
+          <small>
+            {repository.namespace}/{repository.name}
+          </small>
+        ) : null}
+      </Hit.Content>
+    </Hit>
+  );
+};
+
+export default BlueSpicePageHitRenderer;
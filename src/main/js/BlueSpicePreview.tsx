@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+import React, { FC } from "react";
+import { useTranslation } from "react-i18next";
+import { useQuery } from "react-query";
+import { apiClient } from "@scm-manager/ui-api";
+import { Link, Repository } from "@scm-manager/ui-types";
+
+type BlueSpicePagePreview = {
+  title: string;
+  url?: string;
+  exists: boolean;
+  excerpt?: string;
+  fetchedAt: string;
+};
+
+type Props = {
+  repository: Repository;
+};
+
+const BlueSpicePreview: FC<Props> = ({ repository }) => {
+  const [t] = useTranslation("plugins");
+  const link = (repository._links["blueSpicePreview"] as Link).href;
+
+  const { data } = useQuery<BlueSpicePagePreview | null, Error>(["bluespice", "preview", link], () =>
+    apiClient.get(link).then(response => (response.status === 204 ? null : response.json()))
+  );
+
+  // the preview is only an addition to the repository view, so it is left out while loading or on errors
+  if (!data?.exists || !data.excerpt) {
+    return null;
+  }
+
+  return (
+    <div className="box">
+      <h3 className="subtitle">{data.title}</h3>
+      {data.excerpt.split("\n").map((paragraph, index) => (
+        <p key={index}>{paragraph}</p>
+      ))}
+      {data.url ? (
+        <a href={data.url} target="_blank" rel="noopener noreferrer">
+          {t("scm-bluespice-plugin.preview.more")}
+        </a>
+      ) : null}
+    </div>
+  );
+};
+
+export default BlueSpicePreview;
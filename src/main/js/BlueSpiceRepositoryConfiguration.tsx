@@ -16,7 +16,7 @@
 
 import React, { FC } from "react";
 import { useTranslation } from "react-i18next";
-import { validation } from "@scm-manager/ui-components";
+import { Notification, validation } from "@scm-manager/ui-components";
 import { ConfigurationForm, Subtitle, Form } from "@scm-manager/ui-core";
 import { HalRepresentation } from "@scm-manager/ui-types";
 import { BaseUrlWrapper, LinkButton } from "./BlueSpiceRepositoryUtil";
@@ -25,6 +25,9 @@ type BlueSpiceRepositoryConfigurationDto = HalRepresentation & {
   directUrl: string;
   relativePath: string;
   override: string;
+  instanceId?: string;
+  availableInstances?: string[];
+  pageExists?: boolean;
   _links: {
     baseUrl?: {
       href: string;
@@ -69,6 +72,17 @@ const BlueSpiceRepositoryConfiguration: FC<Props> = ({ link }) => {
         return (
           <>
             <Subtitle>{t("scm-bluespice-plugin.config.title")}</Subtitle>
+            {watch("availableInstances")?.length ? (
+              <Form.Row>
+                <Form.Select
+                  name="instanceId"
+                  options={[
+                    { label: t("scm-bluespice-plugin.config.instanceId.default"), value: "" },
+                    ...(watch("availableInstances") ?? []).map(id => ({ label: id, value: id }))
+                  ]}
+                />
+              </Form.Row>
+            ) : null}
             {watch("_links.baseUrl")?.href ? (
               <>
                 <p className="mb-4">{t("scm-bluespice-plugin.config.baseUrl.header")}</p>
@@ -100,6 +114,9 @@ const BlueSpiceRepositoryConfiguration: FC<Props> = ({ link }) => {
                     </LinkButton>
                   </div>
                 </Form.Row>
+                {watch("override") === "APPEND" && watch("pageExists") === false ? (
+                  <Notification type="warning">{t("scm-bluespice-plugin.config.pageMissing")}</Notification>
+                ) : null}
                 <p className="mt-4 has-text-weight-bold" hidden={watch("override") === "APPEND"}>
                   {t("scm-bluespice-plugin.config.overridePath.label")}
                 </p>
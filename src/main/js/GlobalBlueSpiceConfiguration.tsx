@@ -22,6 +22,15 @@ import { validation } from "@scm-manager/ui-components";
 
 type GlobalBlueSpiceConfigurationDto = HalRepresentation & {
   baseUrl: string;
+  urlTemplate?: string;
+  apiUrl?: string;
+  linkCheckEnabled: boolean;
+  hideBrokenLinks: boolean;
+  linkCheckDirectUrls: boolean;
+  warmUpEnabled: boolean;
+  webhookSecret?: string;
+  webhookSecretSet: boolean;
+  removeWebhookSecret: boolean;
 };
 
 const GlobalBlueSpiceConfiguration: FC<{ link: string }> = ({ link }) => {
@@ -31,6 +40,10 @@ const GlobalBlueSpiceConfiguration: FC<{ link: string }> = ({ link }) => {
     return baseUrl === "" || validation.isUrlValid(baseUrl);
   };
 
+  const isValidUrlTemplate = (urlTemplate?: string) => {
+    return !urlTemplate || /^([^{}]|\{(namespace|name|id|[1-9][0-9]*)\})*$/.test(urlTemplate);
+  };
+
   return (
     <ConfigurationForm<GlobalBlueSpiceConfigurationDto>
       link={link}
@@ -41,6 +54,30 @@ const GlobalBlueSpiceConfiguration: FC<{ link: string }> = ({ link }) => {
       <Form.Row>
         <Form.Input name="baseUrl" rules={{ validate: isValidBaseUrl }} />
       </Form.Row>
+      <Form.Row>
+        <Form.Input name="urlTemplate" rules={{ validate: isValidUrlTemplate }} />
+      </Form.Row>
+      <Form.Row>
+        <Form.Input name="apiUrl" rules={{ validate: isValidBaseUrl }} />
+      </Form.Row>
+      <Form.Row>
+        <Form.Checkbox name="linkCheckEnabled" />
+      </Form.Row>
+      <Form.Row>
+        <Form.Checkbox name="hideBrokenLinks" />
+      </Form.Row>
+      <Form.Row>
+        <Form.Checkbox name="linkCheckDirectUrls" />
+      </Form.Row>
+      <Form.Row>
+        <Form.Checkbox name="warmUpEnabled" />
+      </Form.Row>
+      <Form.Row>
+        <Form.Input name="webhookSecret" type="password" autoComplete="new-password" />
+      </Form.Row>
+      <Form.Row>
+        <Form.Checkbox name="removeWebhookSecret" />
+      </Form.Row>
     </ConfigurationForm>
   );
 };
@@ -19,6 +19,9 @@ import { ConfigurationBinder } from "@scm-manager/ui-components";
 import BlueSpiceRepositoryConfiguration from "./BlueSpiceRepositoryConfiguration";
 import BlueSpiceNavLink from "./BlueSpiceNavLink";
 import GlobalBlueSpiceConfiguration from "./GlobalBlueSpiceConfiguration";
+import BlueSpiceNamespaceConfiguration from "./BlueSpiceNamespaceConfiguration";
+import BlueSpicePreview from "./BlueSpicePreview";
+import BlueSpicePageHitRenderer from "./BlueSpicePageHitRenderer";
 
 ConfigurationBinder.bindGlobal(
   "/bluespice",
@@ -34,6 +37,19 @@ ConfigurationBinder.bindRepositorySetting(
   BlueSpiceRepositoryConfiguration
 );
 
+ConfigurationBinder.bindNamespaceSetting(
+  "/bluespice",
+  "scm-bluespice-plugin.navLink",
+  "blueSpiceConfig",
+  BlueSpiceNamespaceConfiguration
+);
+
 binder.bind("repository.navigation", BlueSpiceNavLink, {
   predicate: props => !!props.repository._links.blueSpice?.href
 });
+
+binder.bind("repos.repository-details.information", BlueSpicePreview, {
+  predicate: props => !!props.repository._links.blueSpicePreview?.href
+});
+
+binder.bind("search.hit.blueSpicePage.renderer", BlueSpicePageHitRenderer);
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+import sonia.scm.web.security.AdministrationContext;
+import sonia.scm.web.security.PrivilegedAction;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BlueSpiceCompactionTest {
+
+  private final Repository heartOfGold = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+  private final Repository puzzle = new Repository("puzzle", "git", "hitchhiker", "puzzle42");
+  private final Repository deleted = new Repository("deleted", "git", "vogons", "poetry");
+
+  @Mock
+  private AdministrationContext administrationContext;
+  @Mock
+  private RepositoryManager repositoryManager;
+
+  private BlueSpiceContext context;
+  private BlueSpiceLinkResolver linkResolver;
+  private BlueSpiceCompaction compaction;
+
+  @BeforeEach
+  void init() {
+    BlueSpiceMetrics metrics = new BlueSpiceMetrics(new SimpleMeterRegistry());
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), metrics);
+    linkResolver = new BlueSpiceLinkResolver(context, Runnable::run);
+    compaction = new BlueSpiceCompaction(administrationContext, repositoryManager, context, linkResolver);
+    doAnswer(invocation -> {
+      invocation.getArgument(0, PrivilegedAction.class).run();
+      return null;
+    }).when(administrationContext).runAsAdmin(any(PrivilegedAction.class));
+
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("https://wiki.hitchhiker.com");
+    context.storeConfiguration(globalConfig);
+  }
+
+  @Test
+  void shouldRemoveStateOfDeletedRepositories() {
+    BlueSpiceNamespaceConfig namespaceConfig = new BlueSpiceNamespaceConfig();
+    namespaceConfig.setRelativePath("Vogons");
+    context.storeNamespaceConfiguration("vogons", namespaceConfig);
+    context.storeNamespaceConfiguration("hitchhiker", namespaceConfig);
+    List.of(heartOfGold, puzzle, deleted).forEach(linkResolver::resolve);
+    when(repositoryManager.getAll()).thenReturn(List.of(heartOfGold, puzzle));
+
+    BlueSpiceCompactionResultDto result = compaction.compact(true);
+
+    assertThat(result.getRepositories()).isEqualTo(2);
+    assertThat(result.getRemovedNamespaceConfigs()).isEqualTo(1);
+    assertThat(result.getRemovedLinks()).isEqualTo(1);
+    assertThat(context.getNamespaceConfiguration("vogons")).isEmpty();
+    assertThat(context.getNamespaceConfiguration("hitchhiker")).isPresent();
+  }
+
+  @Test
+  void shouldKeepNamespaceConfigurationsWithoutRepositoriesByDefault() {
+    BlueSpiceNamespaceConfig namespaceConfig = new BlueSpiceNamespaceConfig();
+    namespaceConfig.setRelativePath("Vogons");
+    context.storeNamespaceConfiguration("vogons", namespaceConfig);
+    when(repositoryManager.getAll()).thenReturn(List.of(heartOfGold, puzzle));
+
+    BlueSpiceCompactionResultDto result = compaction.compact(false);
+
+    assertThat(result.getRemovedNamespaceConfigs()).isZero();
+    assertThat(context.getNamespaceConfiguration("vogons")).isPresent();
+  }
+
+  @Test
+  void shouldNotRemoveAnythingWithoutOrphans() {
+    List.of(heartOfGold, puzzle).forEach(linkResolver::resolve);
+    when(repositoryManager.getAll()).thenReturn(List.of(heartOfGold, puzzle));
+
+    BlueSpiceCompactionResultDto result = compaction.compact(false);
+
+    assertThat(result.getRemovedNamespaceConfigs()).isZero();
+    assertThat(result.getRemovedCachedConfigs()).isZero();
+    assertThat(result.getRemovedLinks()).isZero();
+  }
+
+  @Test
+  void shouldRemoveConfigurationsOfDeletedRepositories() {
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Poetry");
+    context.storeConfiguration(config, deleted);
+    context.storeConfiguration(config, heartOfGold);
+    when(repositoryManager.getAll()).thenReturn(List.of(heartOfGold, puzzle));
+
+    BlueSpiceCompactionResultDto result = compaction.compact(false);
+
+    assertThat(result.getRemovedRepositoryConfigs()).isEqualTo(1);
+    assertThat(context.getConfiguration(deleted).getRelativePath()).isNull();
+    assertThat(context.getConfiguration(heartOfGold).getRelativePath()).isEqualTo("Poetry");
+  }
+}
@@ -25,6 +25,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.api.v2.resources.ScmPathInfoStore;
@@ -36,10 +37,22 @@ import sonia.scm.web.JsonMockHttpRequest;
 import sonia.scm.web.JsonMockHttpResponse;
 import sonia.scm.web.RestDispatcher;
 
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
 import java.net.URISyntaxException;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -50,6 +63,20 @@ public class BlueSpiceConfigResourceTest {
   private RepositoryManager repositoryManager;
   @Mock
   private BlueSpiceContext context;
+  @Mock
+  private BlueSpiceLinkResolver linkResolver;
+  @Mock
+  private BlueSpiceConfigTransfer transfer;
+  @Mock
+  private BlueSpiceLinkChecker linkChecker;
+  @Mock
+  private BlueSpicePageLookup pageLookup;
+  @Mock
+  private BlueSpiceCompaction compaction;
+  @Mock
+  private BlueSpiceLinkIndex linkIndex;
+  @Mock
+  private BlueSpicePagePreview pagePreview;
 
   private RestDispatcher dispatcher;
 
@@ -58,15 +85,18 @@ public class BlueSpiceConfigResourceTest {
   private final GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
   private final GlobalBlueSpiceConfigMapper globalConfigMapper = new GlobalBlueSpiceConfigMapperImpl();
   private final BlueSpiceRepositoryConfigMapper repoConfigMapper = new BlueSpiceRepositoryConfigMapperImpl();
+  private final BlueSpiceNamespaceConfigMapper namespaceConfigMapper = new BlueSpiceNamespaceConfigMapperImpl();
 
   @BeforeEach
   void init() {
-    BlueSpiceConfigResource resource = new BlueSpiceConfigResource(repositoryManager, context, globalConfigMapper, repoConfigMapper);
+    BlueSpiceConfigResource resource = new BlueSpiceConfigResource(repositoryManager, context, globalConfigMapper, repoConfigMapper, linkResolver, transfer, namespaceConfigMapper, linkChecker, pageLookup, compaction, linkIndex, pagePreview);
 
     pathInfoStore.set(() -> URI.create(domain));
     globalConfigMapper.setScmPathInfoStore(pathInfoStore);
     repoConfigMapper.setScmPathInfoStore(pathInfoStore);
     repoConfigMapper.setBlueSpiceContext(context);
+    repoConfigMapper.setPageLookup(pageLookup);
+    namespaceConfigMapper.setScmPathInfoStore(pathInfoStore);
 
     dispatcher = new RestDispatcher();
     dispatcher.addSingletonResource(resource);
@@ -90,6 +120,81 @@ public class BlueSpiceConfigResourceTest {
     assertThat(responseBody.getLinks().getLinkBy("update").get().getHref()).isEqualTo(domain + "v2/bluespice/");
   }
 
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "configuration:read:blueSpice")
+  void shouldAnswerNotModifiedForUnchangedGlobalConfig() throws URISyntaxException {
+    when(context.getConfiguration()).thenReturn(globalConfig);
+
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(MockHttpRequest.get("/v2/bluespice/"), response);
+    String entityTag = response.getOutputHeaders().getFirst("ETag").toString();
+
+    MockHttpResponse notModified = new MockHttpResponse();
+    dispatcher.invoke(MockHttpRequest.get("/v2/bluespice/").header("If-None-Match", entityTag), notModified);
+
+    assertThat(notModified.getStatus()).isEqualTo(304);
+    assertThat(notModified.getContentAsString()).isEmpty();
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "configuration:read:blueSpice")
+  void shouldTagEqualGlobalConfigsWithSameHash() throws URISyntaxException {
+    globalConfig.setRules(List.of(new LinkRule("*", "*", "{namespace}/{name}")));
+    when(context.getConfiguration()).thenReturn(globalConfig, globalConfig.copy());
+
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(MockHttpRequest.get("/v2/bluespice/"), response);
+    MockHttpResponse copyResponse = new MockHttpResponse();
+    dispatcher.invoke(MockHttpRequest.get("/v2/bluespice/"), copyResponse);
+
+    String entityTag = response.getOutputHeaders().getFirst("ETag").toString();
+    assertThat(entityTag).matches("\"[0-9a-f]{64}\"");
+    assertThat(copyResponse.getOutputHeaders().getFirst("ETag")).hasToString(entityTag);
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "configuration:read,write:blueSpice")
+  void shouldRejectUpdateOfModifiedGlobalConfig() throws URISyntaxException {
+    when(context.getConfiguration()).thenReturn(globalConfig);
+    when(context.storeConfiguration(any(GlobalBlueSpiceConfig.class), any()))
+      .thenAnswer(invocation -> invocation.<Predicate<GlobalBlueSpiceConfig>>getArgument(1).test(globalConfig));
+
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(MockHttpRequest.get("/v2/bluespice/"), response);
+    String entityTag = response.getOutputHeaders().getFirst("ETag").toString();
+    globalConfig.setBaseUrl("https://modified.example.com");
+
+    MockHttpRequest request = MockHttpRequest.put("/v2/bluespice/")
+      .contentType(MediaType.APPLICATION_JSON_TYPE)
+      .header("If-Match", entityTag)
+      .content("{\"baseUrl\":\"https://test.com\"}".getBytes(StandardCharsets.UTF_8));
+    MockHttpResponse updateResponse = new MockHttpResponse();
+    dispatcher.invoke(request, updateResponse);
+
+    assertThat(updateResponse.getStatus()).isEqualTo(412);
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "configuration:read,write:blueSpice")
+  void shouldUpdateGlobalConfigWithMatchingVersion() throws URISyntaxException {
+    when(context.getConfiguration()).thenReturn(globalConfig);
+    when(context.storeConfiguration(any(GlobalBlueSpiceConfig.class), any()))
+      .thenAnswer(invocation -> invocation.<Predicate<GlobalBlueSpiceConfig>>getArgument(1).test(globalConfig));
+
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(MockHttpRequest.get("/v2/bluespice/"), response);
+    String entityTag = response.getOutputHeaders().getFirst("ETag").toString();
+
+    MockHttpRequest request = MockHttpRequest.put("/v2/bluespice/")
+      .contentType(MediaType.APPLICATION_JSON_TYPE)
+      .header("If-Match", entityTag)
+      .content("{\"baseUrl\":\"https://test.com\"}".getBytes(StandardCharsets.UTF_8));
+    MockHttpResponse updateResponse = new MockHttpResponse();
+    dispatcher.invoke(request, updateResponse);
+
+    assertThat(updateResponse.getStatus()).isEqualTo(204);
+  }
+
   @Test
   @SubjectAware(value = "TrainerRed")
   void shouldNotGetGlobalConfigBecausePermissionIsMissing() throws URISyntaxException {
@@ -128,6 +233,211 @@ public class BlueSpiceConfigResourceTest {
     assertThat(response.getStatus()).isEqualTo(403);
   }
 
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = {"configuration:read:blueSpice", "configuration:write:blueSpice"})
+  void shouldGetNamespaceConfig() throws URISyntaxException {
+    BlueSpiceNamespaceConfig config = new BlueSpiceNamespaceConfig();
+    config.setRelativePath("Hitchhiker");
+    when(context.getNamespaceConfiguration("hitchhiker")).thenReturn(Optional.of(config));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/bluespice/namespaces/hitchhiker/config");
+    JsonMockHttpResponse response = new JsonMockHttpResponse();
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    BlueSpiceNamespaceConfigDto responseBody = response.getContentAs(BlueSpiceNamespaceConfigDto.class);
+    assertThat(responseBody.getRelativePath()).isEqualTo("Hitchhiker");
+    assertThat(responseBody.getLinks().getLinkBy("update").get().getHref()).isEqualTo(domain + "v2/bluespice/namespaces/hitchhiker/config");
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "configuration:write:blueSpice")
+  void shouldUpdateNamespaceConfig() throws URISyntaxException {
+    JsonMockHttpRequest request = JsonMockHttpRequest.put("/v2/bluespice/namespaces/hitchhiker/config")
+      .contentType(MediaType.APPLICATION_JSON_TYPE)
+      .json("{ 'baseUrl': 'https://hitchhiker.wiki.com', 'relativePath': 'Hitchhiker' }");
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(204);
+    BlueSpiceNamespaceConfig expectedConfig = new BlueSpiceNamespaceConfig();
+    expectedConfig.setBaseUrl("https://hitchhiker.wiki.com");
+    expectedConfig.setRelativePath("Hitchhiker");
+    verify(context).storeNamespaceConfiguration("hitchhiker", expectedConfig);
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "configuration:write:blueSpice")
+  void shouldPreviewRules() throws URISyntaxException, UnsupportedEncodingException {
+    when(repositoryManager.getAll()).thenReturn(List.of(
+      new Repository("1", "git", "team-blue", "billing-service"),
+      new Repository("2", "git", "team-red", "audit-service"),
+      new Repository("3", "git", "hitchhiker", "HeartOfGold")
+    ));
+
+    JsonMockHttpRequest request = JsonMockHttpRequest.post("/v2/bluespice/rules/preview?limit=1")
+      .contentType(MediaType.APPLICATION_JSON_TYPE)
+      .json("[{ 'namespacePattern': 'team-*', 'namePattern': '*-service', 'pathTemplate': 'Teams/{1}/{name}' }]");
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString())
+      .contains("\"count\":2")
+      .contains("\"repositories\":[\"team-blue/billing-service\"]");
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "configuration:write:blueSpice")
+  void shouldRejectPreviewWithoutRules() throws URISyntaxException {
+    JsonMockHttpRequest request = JsonMockHttpRequest.post("/v2/bluespice/rules/preview")
+      .contentType(MediaType.APPLICATION_JSON_TYPE)
+      .json("null");
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "configuration:write:blueSpice")
+  void shouldRejectPreviewWithNullRule() throws URISyntaxException {
+    JsonMockHttpRequest request = JsonMockHttpRequest.post("/v2/bluespice/rules/preview")
+      .contentType(MediaType.APPLICATION_JSON_TYPE)
+      .json("[null]");
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "repository:configureBlueSpice:id-1")
+  void shouldListLinksOfPermittedRepositories() throws URISyntaxException, UnsupportedEncodingException {
+    Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+    heartOfGold.setId("id-1");
+    Repository puzzle = RepositoryTestData.create42Puzzle();
+    puzzle.setId("id-2");
+    when(repositoryManager.getAll(any(), eq(0), eq(BlueSpiceRepositoryPages.PAGE_SIZE))).thenReturn(List.of(heartOfGold, puzzle));
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("project1");
+    when(context.getConfiguration(heartOfGold)).thenReturn(config);
+    when(linkResolver.resolve(heartOfGold)).thenReturn(Optional.of("https://example.com/project1"));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/bluespice/repositories");
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString().split("\n"))
+      .singleElement()
+      .satisfies(line -> assertThat(line)
+        .contains("\"name\":\"HeartOfGold\"")
+        .contains("\"override\":\"APPEND\"")
+        .contains("\"url\":\"https://example.com/project1\""));
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "repository:configureBlueSpice:*")
+  void shouldPrefetchPagesOfLinkListInChunks() throws URISyntaxException, UnsupportedEncodingException {
+    List<Repository> repositories = new ArrayList<>();
+    for (int i = 0; i <= BlueSpicePageLookup.BATCH_SIZE; i++) {
+      repositories.add(new Repository("id-" + i, "git", "hitchhiker", "repo-" + i));
+    }
+    when(repositoryManager.getAll(any(), eq(0), eq(BlueSpiceRepositoryPages.PAGE_SIZE))).thenReturn(repositories);
+    when(context.getConfiguration(any(Repository.class))).thenReturn(new BlueSpiceRepositoryConfig());
+
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(MockHttpRequest.get("/v2/bluespice/repositories"), response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString().split("\n")).hasSize(repositories.size());
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Collection<Repository>> chunks = ArgumentCaptor.forClass(Collection.class);
+    verify(pageLookup, times(2)).prefetch(chunks.capture());
+    assertThat(chunks.getAllValues()).extracting(Collection::size).containsExactly(BlueSpicePageLookup.BATCH_SIZE, 1);
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "repository:configureBlueSpice:*")
+  void shouldSearchRepositoriesByWikiPath() throws URISyntaxException, UnsupportedEncodingException {
+    Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+    when(context.getConfiguration(heartOfGold)).thenReturn(new BlueSpiceRepositoryConfig());
+    when(linkIndex.findByWikiPath("/Ships/")).thenReturn(List.of(heartOfGold));
+    when(linkResolver.resolve(heartOfGold)).thenReturn(Optional.of("https://example.com/Ships/HeartOfGold"));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/bluespice/links/search?path=/Ships/");
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString().split("\n"))
+      .singleElement()
+      .satisfies(line -> assertThat(line)
+        .contains("\"name\":\"HeartOfGold\"")
+        .contains("\"url\":\"https://example.com/Ships/HeartOfGold\""));
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed")
+  void shouldRejectSearchWithoutUrlAndPath() throws URISyntaxException {
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(MockHttpRequest.get("/v2/bluespice/links/search"), response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "repository:configureBlueSpice:*")
+  void shouldReportBrokenLinks() throws URISyntaxException, UnsupportedEncodingException {
+    Repository heartOfGold = RepositoryTestData.createHeartOfGold();
+    Repository puzzle = RepositoryTestData.create42Puzzle();
+    when(repositoryManager.getAll(any(), eq(0), eq(BlueSpiceRepositoryPages.PAGE_SIZE))).thenReturn(List.of(heartOfGold, puzzle));
+    when(linkResolver.resolve(heartOfGold)).thenReturn(Optional.of("https://example.com/HeartOfGold"));
+    when(linkResolver.resolve(puzzle)).thenReturn(Optional.of("https://example.com/Puzzle"));
+    Instant checkedAt = Instant.parse("2026-10-17T12:00:00Z");
+    when(linkChecker.getHealth("https://example.com/HeartOfGold"))
+      .thenReturn(Optional.of(new LinkHealth("https://example.com/HeartOfGold", LinkHealth.Status.BROKEN, 404, checkedAt)));
+    when(linkChecker.getHealth("https://example.com/Puzzle"))
+      .thenReturn(Optional.of(new LinkHealth("https://example.com/Puzzle", LinkHealth.Status.OK, 200, checkedAt)));
+
+    MockHttpRequest request = MockHttpRequest.get("/v2/bluespice/links/health?brokenOnly=true");
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentAsString().split("\n"))
+      .singleElement()
+      .satisfies(line -> assertThat(line)
+        .contains("\"name\":\"HeartOfGold\"")
+        .contains("\"status\":\"BROKEN\"")
+        .contains("\"httpStatus\":404")
+        .contains("\"checkedAt\":\"2026-10-17T12:00:00Z\""));
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed")
+  void shouldRejectBulkUpdateWithoutArray() throws URISyntaxException {
+    JsonMockHttpRequest request = JsonMockHttpRequest.post("/v2/bluespice/bulk")
+      .contentType(MediaType.APPLICATION_JSON_TYPE)
+      .json("{ 'namespace': 'hitchhiker' }");
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed")
+  void shouldRejectBulkUpdateWithoutBody() throws URISyntaxException {
+    MockHttpRequest request = MockHttpRequest.post("/v2/bluespice/bulk")
+      .contentType(MediaType.APPLICATION_JSON_TYPE);
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
   @Nested
   class WithRepository {
 
@@ -169,6 +479,89 @@ public class BlueSpiceConfigResourceTest {
         .isEqualTo(globalConfig.getBaseUrl());
     }
 
+    @Test
+    @SubjectAware(value = "TrainerRed", permissions = "repository:configureBlueSpice:id-1")
+    void shouldAnswerNotModifiedForUnchangedRepositoryConfig() throws URISyntaxException {
+      repository.setId("id-1");
+      when(context.getConfiguration()).thenReturn(globalConfig);
+      when(context.getConfiguration(repository)).thenReturn(new BlueSpiceRepositoryConfig());
+
+      MockHttpResponse response = new MockHttpResponse();
+      dispatcher.invoke(MockHttpRequest.get(uri), response);
+      String entityTag = response.getOutputHeaders().getFirst("ETag").toString();
+
+      MockHttpResponse notModified = new MockHttpResponse();
+      dispatcher.invoke(MockHttpRequest.get(uri).header("If-None-Match", entityTag), notModified);
+
+      assertThat(notModified.getStatus()).isEqualTo(304);
+    }
+
+    @Test
+    @SubjectAware(value = "TrainerRed", permissions = "repository:configureBlueSpice:id-1")
+    void shouldChangeRepositoryEntityTagWithInstances() throws URISyntaxException {
+      repository.setId("id-1");
+      when(context.getConfiguration()).thenReturn(globalConfig);
+      when(context.getConfiguration(repository)).thenReturn(new BlueSpiceRepositoryConfig());
+
+      MockHttpResponse response = new MockHttpResponse();
+      dispatcher.invoke(MockHttpRequest.get(uri), response);
+      String entityTag = response.getOutputHeaders().getFirst("ETag").toString();
+      BlueSpiceInstance instance = new BlueSpiceInstance();
+      instance.setId("sales");
+      instance.setBaseUrl("https://sales.example.com");
+      globalConfig.setInstances(List.of(instance));
+
+      MockHttpResponse modified = new MockHttpResponse();
+      dispatcher.invoke(MockHttpRequest.get(uri).header("If-None-Match", entityTag), modified);
+
+      assertThat(modified.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    @SubjectAware(value = "TrainerRed", permissions = "repository:configureBlueSpice:id-1")
+    void shouldChangeRepositoryEntityTagWithNamespaceConfig() throws URISyntaxException {
+      repository.setId("id-1");
+      when(context.getConfiguration()).thenReturn(globalConfig);
+      when(context.getConfiguration(repository)).thenReturn(new BlueSpiceRepositoryConfig());
+
+      MockHttpResponse response = new MockHttpResponse();
+      dispatcher.invoke(MockHttpRequest.get(uri), response);
+      String entityTag = response.getOutputHeaders().getFirst("ETag").toString();
+      BlueSpiceNamespaceConfig namespaceConfig = new BlueSpiceNamespaceConfig();
+      namespaceConfig.setBaseUrl("https://hitchhiker.example.com");
+      when(context.getNamespaceConfiguration(repository.getNamespace())).thenReturn(Optional.of(namespaceConfig));
+
+      MockHttpResponse modified = new MockHttpResponse();
+      dispatcher.invoke(MockHttpRequest.get(uri).header("If-None-Match", entityTag), modified);
+
+      assertThat(modified.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    @SubjectAware(value = "TrainerRed", permissions = "repository:configureBlueSpice:id-1")
+    void shouldRejectUpdateOfModifiedRepositoryConfig() throws URISyntaxException {
+      repository.setId("id-1");
+      BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+      when(context.getConfiguration()).thenReturn(globalConfig);
+      when(context.getConfiguration(repository)).thenReturn(config);
+      when(context.storeConfiguration(any(BlueSpiceRepositoryConfig.class), eq(repository), any()))
+        .thenAnswer(invocation -> invocation.<Predicate<BlueSpiceRepositoryConfig>>getArgument(2).test(config));
+
+      MockHttpResponse response = new MockHttpResponse();
+      dispatcher.invoke(MockHttpRequest.get(uri), response);
+      String entityTag = response.getOutputHeaders().getFirst("ETag").toString();
+      config.setRelativePath("modified");
+
+      MockHttpRequest request = MockHttpRequest.put(uri)
+        .contentType(MediaType.APPLICATION_JSON_TYPE)
+        .header("If-Match", entityTag)
+        .content("{\"relativePath\":\"project1\",\"override\":\"APPEND\"}".getBytes(StandardCharsets.UTF_8));
+      MockHttpResponse updateResponse = new MockHttpResponse();
+      dispatcher.invoke(request, updateResponse);
+
+      assertThat(updateResponse.getStatus()).isEqualTo(412);
+    }
+
     @Test
     @SubjectAware(value = "TrainerRed")
     void shouldNotGetRepositoryConfigBecauseOfMissingPermission() throws URISyntaxException {
@@ -197,7 +590,130 @@ public class BlueSpiceConfigResourceTest {
       expectedConfig.setRelativePath("/project1");
       expectedConfig.setDirectUrl("https://example.com/project1");
       expectedConfig.setOverride(OverrideOption.OVERRIDE);
-      verify(context).storeConfiguration(expectedConfig, repository.getId());
+      verify(context).storeConfiguration(expectedConfig, repository);
+    }
+
+    @Test
+    @SubjectAware(value = "TrainerRed", permissions = "repository:configureBlueSpice:id-1")
+    void shouldBulkUpdateRepositoryConfigs() throws URISyntaxException, UnsupportedEncodingException {
+      repository.setId("id-1");
+      Repository otherRepository = RepositoryTestData.create42Puzzle();
+      otherRepository.setId("id-2");
+      when(repositoryManager.get(new NamespaceAndName(otherRepository.getNamespace(), otherRepository.getName()))).thenReturn(otherRepository);
+
+      JsonMockHttpRequest request = JsonMockHttpRequest.post("/v2/bluespice/bulk")
+        .contentType(MediaType.APPLICATION_JSON_TYPE)
+        .json("[" +
+          "{ 'namespace': 'hitchhiker', 'name': 'HeartOfGold', 'config': { 'relativePath': 'project1', 'override': 'APPEND' } }," +
+          "{ 'namespace': 'hitchhiker', 'name': '42Puzzle', 'config': { 'relativePath': 'project2', 'override': 'APPEND' } }," +
+          "{ 'namespace': 'hitchhiker', 'name': 'missing', 'config': { 'relativePath': 'project3', 'override': 'APPEND' } }" +
+          "]");
+      MockHttpResponse response = new MockHttpResponse();
+      dispatcher.invoke(request, response);
+
+      assertThat(response.getStatus()).isEqualTo(200);
+      assertThat(response.getContentAsString().split("\n"))
+        .hasSize(3)
+        .satisfiesExactly(
+          line -> assertThat(line).contains("\"name\":\"HeartOfGold\"").contains("\"status\":204"),
+          line -> assertThat(line).contains("\"name\":\"42Puzzle\"").contains("\"status\":403"),
+          line -> assertThat(line).contains("\"name\":\"missing\"").contains("\"status\":404")
+        );
+      BlueSpiceRepositoryConfig expectedConfig = new BlueSpiceRepositoryConfig();
+      expectedConfig.setRelativePath("project1");
+      expectedConfig.setOverride(OverrideOption.APPEND);
+      verify(context).storeConfiguration(expectedConfig, repository);
+    }
+
+    @Test
+    @SubjectAware(value = "TrainerRed", permissions = "repository:configureBlueSpice:id-1")
+    void shouldNotExposeDetailsOfUnexpectedBulkErrors() throws URISyntaxException, UnsupportedEncodingException {
+      repository.setId("id-1");
+      when(context.getConfiguration(repository)).thenThrow(new IllegalStateException("store /var/lib/scm is broken"));
+
+      JsonMockHttpRequest request = JsonMockHttpRequest.post("/v2/bluespice/bulk")
+        .contentType(MediaType.APPLICATION_JSON_TYPE)
+        .json("[{ 'namespace': 'hitchhiker', 'name': 'HeartOfGold', 'config': { 'relativePath': 'project1' } }]");
+      MockHttpResponse response = new MockHttpResponse();
+      dispatcher.invoke(request, response);
+
+      assertThat(response.getStatus()).isEqualTo(200);
+      assertThat(response.getContentAsString())
+        .contains("\"status\":500")
+        .doesNotContain("/var/lib/scm");
+    }
+
+    @Test
+    @SubjectAware(value = "TrainerRed", permissions = "repository:configureBlueSpice:id-1")
+    void shouldReportInvalidBulkEntries() throws URISyntaxException, UnsupportedEncodingException {
+      repository.setId("id-1");
+
+      JsonMockHttpRequest request = JsonMockHttpRequest.post("/v2/bluespice/bulk")
+        .contentType(MediaType.APPLICATION_JSON_TYPE)
+        .json("[42, { 'namespace': 'hitchhiker', 'name': 'HeartOfGold', 'config': { 'relativePath': 'project1' } }]");
+      MockHttpResponse response = new MockHttpResponse();
+      dispatcher.invoke(request, response);
+
+      assertThat(response.getStatus()).isEqualTo(200);
+      assertThat(response.getContentAsString().split("\n"))
+        .satisfiesExactly(
+          line -> assertThat(line).contains("\"status\":400").contains("not an object"),
+          line -> assertThat(line).contains("\"name\":\"HeartOfGold\"").contains("\"status\":204")
+        );
+    }
+
+    @Test
+    @SubjectAware(value = "TrainerRed", permissions = "repository:read:id-1")
+    void shouldGetPagePreview() throws URISyntaxException, IOException {
+      repository.setId("id-1");
+      when(pagePreview.getPreview(repository))
+        .thenReturn(Optional.of(new PagePreview("Project_1", true, "Heart of Gold", Instant.parse("2026-10-17T12:00:00Z"))));
+      when(linkResolver.resolve(repository)).thenReturn(Optional.of("https://example.com/Project_1"));
+
+      MockHttpResponse response = new MockHttpResponse();
+      dispatcher.invoke(MockHttpRequest.get(uri + "/preview"), response);
+
+      assertThat(response.getStatus()).isEqualTo(200);
+      assertThat(response.getContentAsString())
+        .contains("\"title\":\"Project_1\"")
+        .contains("\"url\":\"https://example.com/Project_1\"")
+        .contains("\"exists\":true")
+        .contains("\"excerpt\":\"Heart of Gold\"");
+    }
+
+    @Test
+    @SubjectAware(value = "TrainerRed", permissions = "repository:read:id-1")
+    void shouldAnswerNoContentWithoutPagePreview() throws URISyntaxException, IOException {
+      repository.setId("id-1");
+      when(pagePreview.getPreview(repository)).thenReturn(Optional.empty());
+
+      MockHttpResponse response = new MockHttpResponse();
+      dispatcher.invoke(MockHttpRequest.get(uri + "/preview"), response);
+
+      assertThat(response.getStatus()).isEqualTo(204);
+    }
+
+    @Test
+    @SubjectAware(value = "TrainerRed", permissions = "repository:read:id-1")
+    void shouldAnswerBadGatewayIfWikiIsNotReachable() throws URISyntaxException, IOException {
+      repository.setId("id-1");
+      when(pagePreview.getPreview(repository)).thenThrow(new IOException("connection refused"));
+
+      MockHttpResponse response = new MockHttpResponse();
+      dispatcher.invoke(MockHttpRequest.get(uri + "/preview"), response);
+
+      assertThat(response.getStatus()).isEqualTo(502);
+    }
+
+    @Test
+    @SubjectAware(value = "TrainerRed")
+    void shouldNotGetPagePreviewWithoutReadPermission() throws URISyntaxException {
+      repository.setId("id-1");
+
+      MockHttpResponse response = new MockHttpResponse();
+      dispatcher.invoke(MockHttpRequest.get(uri + "/preview"), response);
+
+      assertThat(response.getStatus()).isEqualTo(403);
     }
 
     @Test
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.github.sdorra.jse.ShiroExtension;
+import org.github.sdorra.jse.SubjectAware;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.cloudogu.bluespice.BlueSpiceImportResultDto.Result.FAILED;
+import static com.cloudogu.bluespice.BlueSpiceImportResultDto.Result.UNCHANGED;
+import static com.cloudogu.bluespice.BlueSpiceImportResultDto.Result.UPDATED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith({MockitoExtension.class, ShiroExtension.class})
+@SubjectAware(value = "trillian", permissions = {"configuration:read,write:blueSpice", "repository:configureBlueSpice:*"})
+class BlueSpiceConfigTransferTest {
+
+  private static final String IMPORT = """
+    {"type":"global","baseUrl":"https://wiki.hitchhiker.com/"}
+    {"type":"repository","namespace":"hitchhiker","name":"HeartOfGold","relativePath":"/Heart_Of_Gold","override":"APPEND"}
+    """;
+
+  private final Repository repository = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+
+  @Mock
+  private RepositoryManager repositoryManager;
+
+  private BlueSpiceContext context;
+  private BlueSpiceConfigTransfer transfer;
+
+  @BeforeEach
+  void init() {
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), new BlueSpiceMetrics(new SimpleMeterRegistry()));
+    transfer = new BlueSpiceConfigTransfer(repositoryManager, context);
+    lenient().when(repositoryManager.get(repository.getNamespaceAndName())).thenReturn(repository);
+  }
+
+  @Test
+  void shouldExportGlobalAndRepositoryConfigs() {
+    when(repositoryManager.getAll(any(), eq(0), eq(BlueSpiceRepositoryPages.PAGE_SIZE))).thenReturn(List.of(repository));
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("https://wiki.hitchhiker.com");
+    context.storeConfiguration(globalConfig);
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+    context.storeConfiguration(config, repository);
+
+    List<BlueSpiceExportEntryDto> entries = transfer.export().toList();
+
+    assertThat(entries).hasSize(2);
+    assertThat(entries.get(0).getType()).isEqualTo("global");
+    assertThat(entries.get(0).getBaseUrl()).isEqualTo("https://wiki.hitchhiker.com");
+    assertThat(entries.get(1).getType()).isEqualTo("repository");
+    assertThat(entries.get(1).getName()).isEqualTo("HeartOfGold");
+    assertThat(entries.get(1).getRelativePath()).isEqualTo("Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldImportAndNormalizeConfigs() throws IOException {
+    List<BlueSpiceImportResultDto> results = importConfiguration(IMPORT, false);
+
+    assertThat(results).extracting(BlueSpiceImportResultDto::getResult).containsExactly(UPDATED, UPDATED);
+    assertThat(context.getConfiguration().getBaseUrl()).isEqualTo("https://wiki.hitchhiker.com");
+    assertThat(context.getConfiguration(repository).getRelativePath()).isEqualTo("Heart_Of_Gold");
+    assertThat(context.getConfiguration(repository).getOverride()).isEqualTo(OverrideOption.APPEND);
+  }
+
+  @Test
+  void shouldBeIdempotent() throws IOException {
+    importConfiguration(IMPORT, false);
+
+    List<BlueSpiceImportResultDto> results = importConfiguration(IMPORT, false);
+
+    assertThat(results).extracting(BlueSpiceImportResultDto::getResult).containsExactly(UNCHANGED, UNCHANGED);
+  }
+
+  @Test
+  void shouldNotStoreOnDryRun() throws IOException {
+    List<BlueSpiceImportResultDto> results = importConfiguration(IMPORT, true);
+
+    assertThat(results).extracting(BlueSpiceImportResultDto::getResult).containsExactly(UPDATED, UPDATED);
+    assertThat(results).allMatch(BlueSpiceImportResultDto::isDryRun);
+    assertThat(context.getConfiguration().getBaseUrl()).isNull();
+    assertThat(context.getConfiguration(repository).getRelativePath()).isNull();
+  }
+
+  @Test
+  void shouldExportNamespaceConfigsBeforeRepositoryConfigs() {
+    when(repositoryManager.getAll(any(), eq(0), eq(BlueSpiceRepositoryPages.PAGE_SIZE))).thenReturn(List.of(repository));
+    BlueSpiceNamespaceConfig namespaceConfig = new BlueSpiceNamespaceConfig();
+    namespaceConfig.setBaseUrl("https://hitchhiker.wiki.com");
+    namespaceConfig.setRelativePath("Ships");
+    context.storeNamespaceConfiguration("hitchhiker", namespaceConfig);
+
+    List<BlueSpiceExportEntryDto> entries = transfer.export().toList();
+
+    assertThat(entries).extracting(BlueSpiceExportEntryDto::getType).containsExactly("global", "namespace", "repository");
+    assertThat(entries.get(1))
+      .extracting(BlueSpiceExportEntryDto::getNamespace, BlueSpiceExportEntryDto::getBaseUrl, BlueSpiceExportEntryDto::getRelativePath)
+      .containsExactly("hitchhiker", "https://hitchhiker.wiki.com", "Ships");
+  }
+
+  @Test
+  void shouldImportNamespaceConfigs() throws IOException {
+    List<BlueSpiceImportResultDto> results = importConfiguration("""
+      {"type":"namespace","namespace":"hitchhiker","baseUrl":"https://hitchhiker.wiki.com/","relativePath":"/Ships/"}
+      {"type":"repository","namespace":"hitchhiker","name":"HeartOfGold","relativePath":"Heart_Of_Gold","override":"APPEND"}
+      """, false);
+
+    assertThat(results).extracting(BlueSpiceImportResultDto::getResult).containsExactly(UPDATED, UPDATED);
+    BlueSpiceNamespaceConfig namespaceConfig = context.getNamespaceConfiguration("hitchhiker").orElseThrow();
+    assertThat(namespaceConfig.getBaseUrl()).isEqualTo("https://hitchhiker.wiki.com");
+    assertThat(namespaceConfig.getRelativePath()).isEqualTo("Ships");
+    // the namespace provides the base url, so the repository keeps appending to it
+    assertThat(context.getConfiguration(repository).getOverride()).isEqualTo(OverrideOption.APPEND);
+  }
+
+  @Test
+  void shouldUseNamespaceConfigOfPreviousLinesInDryRun() throws IOException {
+    String content = """
+      {"type":"namespace","namespace":"hitchhiker","baseUrl":"https://hitchhiker.wiki.com"}
+      {"type":"repository","namespace":"hitchhiker","name":"HeartOfGold","relativePath":"Heart_Of_Gold","override":"APPEND"}
+      """;
+    List<BlueSpiceImportResultDto> results = importConfiguration(content, true);
+
+    assertThat(results).extracting(BlueSpiceImportResultDto::getResult).containsExactly(UPDATED, UPDATED);
+    assertThat(context.getNamespaceConfiguration("hitchhiker")).isEmpty();
+
+    importConfiguration(content, false);
+
+    assertThat(importConfiguration(content, true)).extracting(BlueSpiceImportResultDto::getResult).containsExactly(UNCHANGED, UNCHANGED);
+  }
+
+  @Test
+  void shouldReportFailedLinesAndContinue() throws IOException {
+    when(repositoryManager.get(any())).thenReturn(null);
+
+    List<BlueSpiceImportResultDto> results = importConfiguration("""
+      no json
+      {"type":"repository","namespace":"hitchhiker","name":"missing","relativePath":"Missing"}
+      {"type":"global","baseUrl":"https://wiki.hitchhiker.com"}
+      """, false);
+
+    assertThat(results).extracting(BlueSpiceImportResultDto::getResult).containsExactly(FAILED, FAILED, UPDATED);
+    assertThat(results).extracting(BlueSpiceImportResultDto::getLine).containsExactly(1, 2, 3);
+  }
+
+  @Test
+  void shouldImportExportedGlobalSettings() throws IOException {
+    when(repositoryManager.getAll(any(), eq(0), eq(BlueSpiceRepositoryPages.PAGE_SIZE))).thenReturn(List.of(repository));
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("https://wiki.hitchhiker.com");
+    globalConfig.setUrlTemplate("{namespace}/{name}");
+    globalConfig.setApiUrl("https://wiki.hitchhiker.com/api.php");
+    globalConfig.setRules(new ArrayList<>(List.of(new LinkRule("team-*", "*", "Teams/{1}/{2}"))));
+    globalConfig.setInstances(new ArrayList<>(List.of(new BlueSpiceInstance("sales", "https://sales.hitchhiker.com", null, 0))));
+    globalConfig.setLinkCheckEnabled(true);
+    globalConfig.setHideBrokenLinks(true);
+    globalConfig.setLinkCheckDirectUrls(true);
+    globalConfig.setWarmUpEnabled(true);
+    globalConfig.setWebhookSecret("secret");
+    context.storeConfiguration(globalConfig);
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+    config.setInstanceId("sales");
+    context.storeConfiguration(config, repository);
+    StringBuilder exported = new StringBuilder();
+    for (BlueSpiceExportEntryDto entry : transfer.export().toList()) {
+      exported.append(new ObjectMapper().writeValueAsString(entry)).append('\n');
+    }
+    GlobalBlueSpiceConfig expected = context.getConfiguration().copy();
+    expected.setWebhookSecret(null);
+
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), new BlueSpiceMetrics(new SimpleMeterRegistry()));
+    transfer = new BlueSpiceConfigTransfer(repositoryManager, context);
+
+    assertThat(importConfiguration(exported.toString(), false)).extracting(BlueSpiceImportResultDto::getResult).containsExactly(UPDATED, UPDATED);
+    assertThat(context.getConfiguration()).isEqualTo(expected);
+    assertThat(context.getConfiguration(repository)).isEqualTo(config);
+  }
+
+  private List<BlueSpiceImportResultDto> importConfiguration(String content, boolean dryRun) throws IOException {
+    List<BlueSpiceImportResultDto> results = new ArrayList<>();
+    transfer.importConfiguration(new BufferedReader(new StringReader(content)), dryRun, results::add);
+    return results;
+  }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.inject.util.Providers;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.github.sdorra.jse.ShiroExtension;
+import org.github.sdorra.jse.SubjectAware;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.api.v2.resources.HalAppender;
+import sonia.scm.api.v2.resources.HalEnricherContext;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.store.ConfigurationStore;
+import sonia.scm.store.ConfigurationStoreFactory;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+import sonia.scm.store.StoreException;
+import sonia.scm.store.TypedStoreParameters;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith({MockitoExtension.class, ShiroExtension.class})
+class BlueSpiceContextTest {
+
+  @Mock
+  private HalAppender appender;
+  @Mock
+  private BlueSpiceLinkChecker linkChecker;
+  @Mock
+  private ConfigurationStore<BlueSpiceRepositoryConfig> failingStore;
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final BlueSpiceMetrics metrics = new BlueSpiceMetrics(registry);
+
+  private BlueSpiceContext context;
+
+  @BeforeEach
+  void init() {
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), metrics);
+  }
+
+  @Test
+  void shouldReadRepositoryConfigOnlyOnce() {
+    Repository repository = RepositoryTestData.createHeartOfGold();
+    repository.setId("hog");
+
+    context.getConfiguration(repository);
+    context.getConfiguration(repository);
+    context.getConfiguration(repository);
+
+    assertThat(context.getRepositoryConfigCacheStats().missCount()).isEqualTo(1);
+    assertThat(context.getRepositoryConfigCacheStats().hitCount()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldCountActiveLinks() {
+    Repository repository = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+    Repository puzzle = new Repository("puzzle", "git", "hitchhiker", "42Puzzle");
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("https://wiki.hitchhiker.com");
+    context.storeConfiguration(globalConfig);
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+    context.storeConfiguration(config, repository);
+
+    assertThat(registry.get("scm.bluespice.links.active").gauge().value()).isEqualTo(1);
+
+    BlueSpiceRepositoryConfig direct = new BlueSpiceRepositoryConfig();
+    direct.setDirectUrl("https://puzzle.hitchhiker.com");
+    direct.setOverride(OverrideOption.OVERRIDE);
+    context.storeConfiguration(direct, puzzle);
+
+    assertThat(registry.get("scm.bluespice.links.active").gauge().value()).isEqualTo(2);
+
+    context.storeConfiguration(new BlueSpiceRepositoryConfig(), puzzle);
+    BlueSpiceRepositoryConfig none = new BlueSpiceRepositoryConfig();
+    none.setOverride(OverrideOption.OVERRIDE);
+    context.storeConfiguration(none, puzzle);
+    context.removeConfiguration(repository.getId());
+
+    assertThat(registry.get("scm.bluespice.links.active").gauge().value()).isZero();
+  }
+
+  @Test
+  void shouldUpdateCacheOnStore() {
+    Repository repository = RepositoryTestData.createHeartOfGold();
+    repository.setId("hog");
+    context.getConfiguration(repository);
+
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("/Heart_Of_Gold");
+    context.storeConfiguration(config, repository);
+
+    assertThat(context.getConfiguration(repository).getRelativePath()).isEqualTo("Heart_Of_Gold");
+    assertThat(context.getRepositoryConfigCacheStats().missCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldNotShareCachedRepositoryConfig() {
+    Repository repository = RepositoryTestData.createHeartOfGold();
+    repository.setId("hog");
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+    context.storeConfiguration(config, repository);
+
+    config.setRelativePath("Modified");
+    context.getConfiguration(repository).setRelativePath("Modified");
+
+    assertThat(context.getConfiguration(repository).getRelativePath()).isEqualTo("Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldCacheLastStoredConfigOnConcurrentReadsAndWrites() throws InterruptedException {
+    Repository repository = RepositoryTestData.createHeartOfGold();
+    repository.setId("hog");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    AtomicBoolean writing = new AtomicBoolean(true);
+    try {
+      for (int i = 0; i < 3; i++) {
+        executor.execute(() -> {
+          while (writing.get()) {
+            // reloads race with the writes
+            context.invalidate(repository.getId());
+            context.getConfiguration(repository);
+          }
+        });
+      }
+      for (int version = 0; version < 200; version++) {
+        BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+        config.setRelativePath("v" + version);
+        context.storeConfiguration(config, repository);
+      }
+    } finally {
+      writing.set(false);
+      executor.shutdown();
+    }
+
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(context.getConfiguration(repository).getRelativePath()).isEqualTo("v199");
+  }
+
+  @Test
+  void shouldReadFromStoreAgainAfterInvalidation() {
+    Repository repository = RepositoryTestData.createHeartOfGold();
+    repository.setId("hog");
+    context.getConfiguration(repository);
+
+    context.invalidate(repository.getId());
+    context.getConfiguration(repository);
+
+    assertThat(context.getRepositoryConfigCacheStats().missCount()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldCountStoreReadsAndWrites() {
+    Repository repository = RepositoryTestData.createHeartOfGold();
+    repository.setId("hog");
+
+    context.getConfiguration();
+    context.getConfiguration(repository);
+    context.getConfiguration(repository);
+    context.storeConfiguration(new BlueSpiceRepositoryConfig(), repository);
+
+    assertThat(registry.get("scm.bluespice.store.reads").tag("scope", "global").counter().count()).isEqualTo(1);
+    assertThat(registry.get("scm.bluespice.store.reads").tag("scope", "repository").counter().count()).isEqualTo(1);
+    assertThat(registry.get("scm.bluespice.store.writes").tag("scope", "repository").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldReturnSameGlobalConfigSnapshot() {
+    assertThat(context.getConfiguration()).isSameAs(context.getConfiguration());
+  }
+
+  @Test
+  void shouldReplaceGlobalConfigSnapshotOnStore() {
+    GlobalBlueSpiceConfig config = new GlobalBlueSpiceConfig();
+    config.setBaseUrl("https://wiki.hitchhiker.com/");
+
+    context.storeConfiguration(config);
+    config.setBaseUrl("https://changed.hitchhiker.com");
+
+    assertThat(context.getConfiguration().getBaseUrl()).isEqualTo("https://wiki.hitchhiker.com");
+  }
+
+  @Test
+  void shouldNotAllowModificationOfGlobalConfigSnapshot() {
+    GlobalBlueSpiceConfig config = new GlobalBlueSpiceConfig();
+    config.setBaseUrl("https://wiki.hitchhiker.com");
+    config.getRules().add(new LinkRule("hitchhiker", "*", "{name}"));
+    context.storeConfiguration(config);
+
+    GlobalBlueSpiceConfig snapshot = context.getConfiguration();
+
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.setBaseUrl("https://changed.hitchhiker.com"));
+    assertThrows(UnsupportedOperationException.class, () -> snapshot.getRules().clear());
+    assertThat(snapshot.copy().getRules()).hasSize(1);
+  }
+
+  @Test
+  void shouldNotAllowModificationOfLoadedGlobalConfigSnapshot() {
+    assertThrows(UnsupportedOperationException.class, () -> context.getConfiguration().setBaseUrl("https://wiki.hitchhiker.com"));
+  }
+
+  @Test
+  void shouldIncreaseInstanceVersionOnlyIfUrlsChange() {
+    GlobalBlueSpiceConfig config = new GlobalBlueSpiceConfig();
+    config.getInstances().add(new BlueSpiceInstance("sales", "https://sales.hitchhiker.com/", null, 0));
+    context.storeConfiguration(config);
+
+    assertThat(context.getConfiguration().getInstance("sales").orElseThrow())
+      .extracting(BlueSpiceInstance::getBaseUrl, BlueSpiceInstance::getVersion)
+      .containsExactly("https://sales.hitchhiker.com", 1L);
+
+    GlobalBlueSpiceConfig unchanged = context.getConfiguration().copy();
+    unchanged.setWarmUpEnabled(true);
+    context.storeConfiguration(unchanged);
+
+    assertThat(context.getConfiguration().getInstanceVersion("sales")).isEqualTo(1L);
+
+    GlobalBlueSpiceConfig moved = context.getConfiguration().copy();
+    moved.getInstances().get(0).setBaseUrl("https://sales.new.hitchhiker.com");
+    moved.getInstances().get(0).setVersion(0);
+    context.storeConfiguration(moved);
+
+    assertThat(context.getConfiguration().getInstanceVersion("sales")).isEqualTo(2L);
+    assertThat(context.getConfiguration().getInstanceVersion("unknown")).isZero();
+  }
+
+  @Test
+  void shouldStoreGlobalConfigOnlyIfPreconditionMatches() {
+    GlobalBlueSpiceConfig config = new GlobalBlueSpiceConfig();
+    config.setBaseUrl("https://wiki.hitchhiker.com");
+    context.storeConfiguration(config);
+    GlobalBlueSpiceConfig read = context.getConfiguration();
+
+    GlobalBlueSpiceConfig first = new GlobalBlueSpiceConfig();
+    first.setBaseUrl("https://first.hitchhiker.com");
+    GlobalBlueSpiceConfig second = new GlobalBlueSpiceConfig();
+    second.setBaseUrl("https://second.hitchhiker.com");
+
+    assertThat(context.storeConfiguration(first, current -> current.equals(read))).isTrue();
+    assertThat(context.storeConfiguration(second, current -> current.equals(read))).isFalse();
+    assertThat(context.getConfiguration().getBaseUrl()).isEqualTo("https://first.hitchhiker.com");
+  }
+
+  @Test
+  void shouldStoreRepositoryConfigOnlyIfPreconditionMatches() {
+    Repository repository = RepositoryTestData.createHeartOfGold();
+    repository.setId("hog");
+    BlueSpiceRepositoryConfig read = context.getConfiguration(repository);
+
+    BlueSpiceRepositoryConfig first = new BlueSpiceRepositoryConfig();
+    first.setRelativePath("First");
+    BlueSpiceRepositoryConfig second = new BlueSpiceRepositoryConfig();
+    second.setRelativePath("Second");
+
+    assertThat(context.storeConfiguration(first, repository, current -> current.equals(read))).isTrue();
+    assertThat(context.storeConfiguration(second, repository, current -> current.equals(read))).isFalse();
+    assertThat(context.getConfiguration(repository).getRelativePath()).isEqualTo("First");
+  }
+
+  @Test
+  void shouldForceOverrideWithoutAnyBaseUrl() {
+    Repository repository = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+
+    context.storeConfiguration(config, repository);
+
+    assertThat(context.getConfiguration(repository).getOverride()).isEqualTo(OverrideOption.OVERRIDE);
+  }
+
+  @Test
+  void shouldKeepAppendIfNamespaceHasBaseUrl() {
+    Repository repository = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+    BlueSpiceNamespaceConfig namespaceConfig = new BlueSpiceNamespaceConfig();
+    namespaceConfig.setBaseUrl("https://hitchhiker.wiki.com");
+    context.storeNamespaceConfiguration("hitchhiker", namespaceConfig);
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+    config.setOverride(OverrideOption.APPEND);
+
+    context.storeConfiguration(config, repository);
+
+    assertThat(context.getConfiguration(repository).getOverride()).isEqualTo(OverrideOption.APPEND);
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed", permissions = "repository:configureBlueSpice:*")
+  void shouldReadEachRepositoryConfigAtMostOnceForListing() {
+    ScmPathInfoStore scmPathInfoStore = new ScmPathInfoStore();
+    scmPathInfoStore.set(() -> URI.create("https://scm-manager.org/scm/api/"));
+    RepositoryLinkEnricher enricher = new RepositoryLinkEnricher(Providers.of(new BlueSpiceEnrichmentContext(scmPathInfoStore)), context, new BlueSpiceLinkResolver(context, Runnable::run), linkChecker, metrics);
+
+    List<Repository> repositories = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      Repository repository = new Repository("id-" + i, "git", "hitchhiker", "repo-" + i);
+      repositories.add(repository);
+    }
+
+    for (int page = 0; page < 2; page++) {
+      for (Repository repository : repositories) {
+        HalEnricherContext enricherContext = HalEnricherContext.of(repository);
+        enricher.enrich(enricherContext, appender);
+      }
+    }
+
+    assertThat(context.getRepositoryConfigCacheStats().missCount()).isEqualTo(100);
+  }
+
+  @Test
+  void shouldStoreRepositoryConfigInBothStoresByDefault() {
+    InMemoryConfigurationStoreFactory storeFactory = new InMemoryConfigurationStoreFactory();
+    InMemoryDataStoreFactory dataStoreFactory = new InMemoryDataStoreFactory();
+    Repository repository = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+    BlueSpiceContext dataStoreContext = new BlueSpiceContext(storeFactory, dataStoreFactory, metrics);
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+
+    dataStoreContext.storeConfiguration(config, repository);
+
+    assertThat(BlueSpiceRepositoryConfigStore.dataStore(dataStoreFactory).get("hog").getRelativePath()).isEqualTo("Heart_Of_Gold");
+    assertThat(BlueSpiceRepositoryConfigStore.repositoryStore(storeFactory, "hog").getOptional().map(BlueSpiceRepositoryConfig::getRelativePath))
+      .contains("Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldStoreRepositoryConfigInBothStoresWithPerRepositoryStorage() {
+    InMemoryConfigurationStoreFactory storeFactory = new InMemoryConfigurationStoreFactory();
+    InMemoryDataStoreFactory dataStoreFactory = new InMemoryDataStoreFactory();
+    Repository repository = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+    BlueSpiceContext repositoryContext = new BlueSpiceContext(storeFactory, dataStoreFactory, metrics, BlueSpiceRepositoryConfigStore.Type.REPOSITORY);
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+
+    repositoryContext.storeConfiguration(config, repository);
+
+    assertThat(BlueSpiceRepositoryConfigStore.repositoryStore(storeFactory, "hog").getOptional().map(BlueSpiceRepositoryConfig::getRelativePath))
+      .contains("Heart_Of_Gold");
+    assertThat(BlueSpiceRepositoryConfigStore.dataStore(dataStoreFactory).get("hog").getRelativePath()).isEqualTo("Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldRestoreDataStoreIfRepositoryStoreFails() {
+    InMemoryConfigurationStoreFactory storeFactory = new InMemoryConfigurationStoreFactory();
+    InMemoryDataStoreFactory dataStoreFactory = new InMemoryDataStoreFactory();
+    doThrow(new StoreException("disk full")).when(failingStore).set(any());
+    ConfigurationStoreFactory failingStoreFactory = new ConfigurationStoreFactory() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public <T> ConfigurationStore<T> getStore(TypedStoreParameters<T> storeParameters) {
+        return storeParameters.getRepositoryId() == null ? storeFactory.getStore(storeParameters) : (ConfigurationStore<T>) failingStore;
+      }
+    };
+    Repository repository = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+    BlueSpiceRepositoryConfig previous = new BlueSpiceRepositoryConfig();
+    previous.setRelativePath("Heart_Of_Gold");
+    BlueSpiceRepositoryConfigStore.dataStore(dataStoreFactory).put("hog", previous);
+    BlueSpiceContext repositoryContext = new BlueSpiceContext(failingStoreFactory, dataStoreFactory, metrics, BlueSpiceRepositoryConfigStore.Type.REPOSITORY);
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Renamed");
+
+    assertThrows(StoreException.class, () -> repositoryContext.storeConfiguration(config, repository));
+
+    assertThat(BlueSpiceRepositoryConfigStore.dataStore(dataStoreFactory).get("hog").getRelativePath()).isEqualTo("Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldRemoveRepositoryConfig() {
+    Repository repository = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+    context.storeConfiguration(config, repository);
+    context.getConfiguration(repository);
+
+    context.removeConfiguration("hog");
+
+    assertThat(context.getConfiguration(repository).getRelativePath()).isNull();
+  }
+
+  @Test
+  void shouldSelectRepositoryConfigStoreBySystemProperty() {
+    try {
+      System.setProperty(BlueSpiceRepositoryConfigStore.PROPERTY, "repository");
+      assertThat(BlueSpiceRepositoryConfigStore.Type.fromSystemProperty()).isEqualTo(BlueSpiceRepositoryConfigStore.Type.REPOSITORY);
+      System.setProperty(BlueSpiceRepositoryConfigStore.PROPERTY, "data-store");
+      assertThat(BlueSpiceRepositoryConfigStore.Type.fromSystemProperty()).isEqualTo(BlueSpiceRepositoryConfigStore.Type.DATA_STORE);
+      System.setProperty(BlueSpiceRepositoryConfigStore.PROPERTY, "unknown");
+      assertThat(BlueSpiceRepositoryConfigStore.Type.fromSystemProperty()).isEqualTo(BlueSpiceRepositoryConfigStore.Type.DATA_STORE);
+    } finally {
+      System.clearProperty(BlueSpiceRepositoryConfigStore.PROPERTY);
+    }
+  }
+}
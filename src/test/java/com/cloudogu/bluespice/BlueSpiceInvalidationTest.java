@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+import sonia.scm.web.security.AdministrationContext;
+import sonia.scm.web.security.PrivilegedAction;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BlueSpiceInvalidationTest {
+
+  private final Repository heartOfGold = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+  private final Repository heartOfGolden = new Repository("golden", "git", "hitchhiker", "HeartOfGolden");
+  private final Repository vogon = new Repository("vogon", "git", "hitchhiker", "Vogon");
+
+  @Mock
+  private AdministrationContext administrationContext;
+  @Mock
+  private RepositoryManager repositoryManager;
+  @Mock
+  private BlueSpicePageLookup pageLookup;
+  @Mock
+  private BlueSpicePagePreview pagePreview;
+  @Mock
+  private BlueSpiceLinkChecker linkChecker;
+  @Mock
+  private BlueSpicePageIndexer pageIndexer;
+  @Mock
+  private ScheduledExecutorService executor;
+
+  private BlueSpiceContext context;
+  private BlueSpiceInvalidation invalidation;
+
+  @BeforeEach
+  void init() {
+    BlueSpiceMetrics metrics = new BlueSpiceMetrics(new SimpleMeterRegistry());
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), metrics);
+    BlueSpiceLinkResolver linkResolver = new BlueSpiceLinkResolver(context, Runnable::run);
+    BlueSpiceLinkIndex linkIndex = new BlueSpiceLinkIndex(administrationContext, repositoryManager, linkResolver);
+    invalidation = new BlueSpiceInvalidation(context, linkResolver, linkIndex, pageLookup, pagePreview, linkChecker, pageIndexer, executor);
+    lenient().doAnswer(invocation -> {
+      invocation.getArgument(0, PrivilegedAction.class).run();
+      return null;
+    }).when(administrationContext).runAsAdmin(any(PrivilegedAction.class));
+    lenient().when(repositoryManager.getAll()).thenReturn(List.of(heartOfGold, heartOfGolden, vogon));
+
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("https://wiki.hitchhiker.com");
+    globalConfig.setApiUrl("https://wiki.hitchhiker.com/w/api.php");
+    context.storeConfiguration(globalConfig);
+    storeRepositoryConfig(heartOfGold, "Heart_Of_Gold");
+    storeRepositoryConfig(heartOfGolden, "Heart_Of_Golden");
+    storeRepositoryConfig(vogon, "vogon");
+  }
+
+  @Test
+  void shouldCoalesceChangesIntoSingleFlush() {
+    invalidation.pageChanged("Heart Of Gold");
+    invalidation.pageChanged("Heart_Of_Gold");
+    invalidation.pageChanged("Vogon");
+
+    verify(executor, times(1)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  @Test
+  void shouldScheduleNextFlushAfterFlush() {
+    invalidation.pageChanged("Heart Of Gold");
+    invalidation.flush();
+    invalidation.pageChanged("Vogon");
+
+    verify(executor, times(2)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  @Test
+  void shouldEvictOnlyRepositoriesLinkedToChangedPage() {
+    invalidation.pageChanged("Heart Of Gold");
+    invalidation.pageChanged("Heart_Of_Gold");
+
+    assertThat(invalidation.flush()).isEqualTo(1);
+
+    verify(pageLookup).invalidate(List.of("Heart_Of_Gold"));
+    verify(pagePreview).invalidate(List.of("Heart_Of_Gold"));
+    verify(linkChecker).invalidate(List.of("https://wiki.hitchhiker.com/Heart_Of_Gold"));
+    verify(pageIndexer).scheduleUpdate();
+  }
+
+  @Test
+  void shouldIgnoreCaseOfFirstLetter() {
+    invalidation.pageChanged("Vogon");
+
+    assertThat(invalidation.flush()).isEqualTo(1);
+
+    verify(pageLookup).invalidate(List.of("vogon"));
+  }
+
+  @Test
+  void shouldEvictRepositoriesLinkedByUrlTemplate() {
+    GlobalBlueSpiceConfig globalConfig = context.getConfiguration().copy();
+    globalConfig.setUrlTemplate("Repositories/{name}");
+    context.storeConfiguration(globalConfig);
+    context.storeConfiguration(new BlueSpiceRepositoryConfig(), heartOfGold);
+
+    invalidation.pageChanged("Repositories/HeartOfGold");
+
+    assertThat(invalidation.flush()).isEqualTo(1);
+
+    verify(linkChecker).invalidate(List.of("https://wiki.hitchhiker.com/Repositories/HeartOfGold"));
+  }
+
+  @Test
+  void shouldEvictRepositoriesWithPercentEncodedPath() {
+    storeRepositoryConfig(vogon, "Vogon%20Poetry");
+
+    invalidation.pageChanged("Vogon_Poetry");
+
+    assertThat(invalidation.flush()).isEqualTo(1);
+
+    verify(linkChecker).invalidate(List.of("https://wiki.hitchhiker.com/Vogon%20Poetry"));
+  }
+
+  @Test
+  void shouldNotEvictRepositoriesOfOtherWikis() {
+    BlueSpiceNamespaceConfig namespaceConfig = new BlueSpiceNamespaceConfig();
+    namespaceConfig.setBaseUrl("https://vogons.example.com");
+    context.storeNamespaceConfiguration("hitchhiker", namespaceConfig);
+
+    invalidation.pageChanged("Heart Of Gold");
+
+    assertThat(invalidation.flush()).isZero();
+  }
+
+  @Test
+  void shouldNotEvictAnythingWithoutChanges() {
+    assertThat(invalidation.flush()).isZero();
+
+    verify(pageIndexer, never()).scheduleUpdate();
+  }
+
+  private void storeRepositoryConfig(Repository repository, String relativePath) {
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath(relativePath);
+    context.storeConfiguration(config, repository);
+  }
+}
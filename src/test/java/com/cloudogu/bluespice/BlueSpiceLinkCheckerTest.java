@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.base.Ticker;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BlueSpiceLinkCheckerTest {
+
+  private final AtomicLong time = new AtomicLong();
+  private final AtomicInteger concurrentRequests = new AtomicInteger();
+  private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+
+  @Mock
+  private RepositoryManager repositoryManager;
+
+  private HttpServer server;
+  private ExecutorService executor;
+  private BlueSpiceContext context;
+  private BlueSpiceLinkChecker checker;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", exchange -> {
+      int concurrent = concurrentRequests.incrementAndGet();
+      maxConcurrentRequests.accumulateAndGet(concurrent, Math::max);
+      try {
+        Thread.sleep(20);
+        String path = exchange.getRequestURI().getPath();
+        int status;
+        if (path.startsWith("/wiki/Deleted")) {
+          status = 404;
+        } else if (path.startsWith("/wiki/Private")) {
+          status = 403;
+        } else if (path.startsWith("/wiki/GetOnly") && "HEAD".equals(exchange.getRequestMethod())) {
+          status = 405;
+        } else {
+          status = 200;
+        }
+        exchange.sendResponseHeaders(status, -1);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        concurrentRequests.decrementAndGet();
+        exchange.close();
+      }
+    });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+
+    executor = Executors.newFixedThreadPool(BlueSpiceLinkChecker.MAX_CONCURRENT_CHECKS);
+    BlueSpiceMetrics metrics = new BlueSpiceMetrics(new SimpleMeterRegistry());
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), metrics);
+    BlueSpiceLinkResolver resolver = new BlueSpiceLinkResolver(context, Runnable::run);
+    checker = new BlueSpiceLinkChecker(repositoryManager, context, resolver, HttpClient.newHttpClient(), executor, new Ticker() {
+      @Override
+      public long read() {
+        return time.get();
+      }
+    });
+
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("http://localhost:" + server.getAddress().getPort() + "/wiki");
+    context.storeConfiguration(globalConfig);
+  }
+
+  @AfterEach
+  void stopServer() {
+    executor.shutdownNow();
+    server.stop(0);
+  }
+
+  @Test
+  void shouldDetectExistingAndDeletedPages() {
+    mockRepositories("Existing", "Deleted", "Private", "GetOnly");
+
+    checker.checkAll().join();
+
+    assertThat(health("Existing").getStatus()).isEqualTo(LinkHealth.Status.OK);
+    assertThat(health("Deleted").getStatus()).isEqualTo(LinkHealth.Status.BROKEN);
+    assertThat(health("Deleted").getHttpStatus()).isEqualTo(404);
+    assertThat(health("Private").getStatus()).isEqualTo(LinkHealth.Status.UNREACHABLE);
+    assertThat(health("GetOnly").getStatus()).isEqualTo(LinkHealth.Status.OK);
+  }
+
+  @Test
+  void shouldMarkUnreachableServer() {
+    String url = "http://localhost:" + server.getAddress().getPort() + "/wiki/Existing";
+    server.stop(0);
+
+    assertThat(checker.check(url).getStatus()).isEqualTo(LinkHealth.Status.UNREACHABLE);
+  }
+
+  @Test
+  void shouldLimitConcurrentRequestsPerHost() {
+    mockRepositories("A", "B", "C", "D", "E", "F", "G", "H", "I", "J");
+
+    checker.checkAll().join();
+
+    assertThat(maxConcurrentRequests.get()).isBetween(1, BlueSpiceLinkChecker.MAX_CHECKS_PER_HOST);
+  }
+
+  @Test
+  void shouldExpireResults() {
+    String url = url("Existing");
+    checker.check(url);
+
+    time.addAndGet(BlueSpiceLinkChecker.RESULT_TTL.toNanos() + TimeUnit.SECONDS.toNanos(1));
+
+    assertThat(checker.getHealth(url)).isEmpty();
+  }
+
+  @Test
+  void shouldOnlySuppressBrokenLinksIfConfigured() {
+    checker.check(url("Deleted"));
+    checker.check(url("Existing"));
+
+    assertThat(checker.isSuppressed(url("Deleted"))).isFalse();
+
+    GlobalBlueSpiceConfig globalConfig = context.getConfiguration().copy();
+    globalConfig.setHideBrokenLinks(true);
+    context.storeConfiguration(globalConfig);
+
+    assertThat(checker.isSuppressed(url("Deleted"))).isTrue();
+    assertThat(checker.isSuppressed(url("Existing"))).isFalse();
+    assertThat(checker.isSuppressed(url("Unchecked"))).isFalse();
+  }
+
+  @Test
+  void shouldNotProbeDirectUrlsToOtherHosts() {
+    String foreignUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/wiki/Existing";
+    mockDirectUrlRepository(foreignUrl);
+
+    checker.checkAll().join();
+
+    assertThat(checker.getHealth(foreignUrl)).isEmpty();
+  }
+
+  @Test
+  void shouldProbeDirectUrlsToOtherHostsIfEnabled() {
+    String foreignUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/wiki/Existing";
+    mockDirectUrlRepository(foreignUrl);
+    GlobalBlueSpiceConfig globalConfig = context.getConfiguration().copy();
+    globalConfig.setLinkCheckDirectUrls(true);
+    context.storeConfiguration(globalConfig);
+
+    checker.checkAll().join();
+
+    assertThat(checker.getHealth(foreignUrl)).get().extracting(LinkHealth::getStatus).isEqualTo(LinkHealth.Status.OK);
+  }
+
+  @Test
+  void shouldProbeDirectUrlsToConfiguredHosts() {
+    mockDirectUrlRepository(url("Deleted"));
+
+    checker.checkAll().join();
+
+    assertThat(health("Deleted").getStatus()).isEqualTo(LinkHealth.Status.BROKEN);
+  }
+
+  @Test
+  void shouldNotStartOverlappingChecks() {
+    mockRepositories("Existing");
+
+    CompletableFuture<Void> running = checker.checkAll();
+    CompletableFuture<Void> overlapping = checker.checkAll();
+
+    assertThat(overlapping).isCompleted();
+    running.join();
+    verify(repositoryManager, times(1)).getAll();
+
+    checker.checkAll().join();
+    verify(repositoryManager, times(2)).getAll();
+  }
+
+  @Test
+  void shouldShutDownExecutorOnClose() {
+    checker.close();
+
+    assertThat(executor.isShutdown()).isTrue();
+  }
+
+  private void mockDirectUrlRepository(String directUrl) {
+    Repository repository = new Repository("direct", "git", "hitchhiker", "direct");
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setDirectUrl(directUrl);
+    config.setOverride(OverrideOption.OVERRIDE);
+    context.storeConfiguration(config, repository);
+    when(repositoryManager.getAll()).thenReturn(List.of(repository));
+  }
+
+  private void mockRepositories(String... paths) {
+    List<Repository> repositories = new ArrayList<>();
+    for (String path : paths) {
+      Repository repository = new Repository(path, "git", "hitchhiker", path);
+      BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+      config.setRelativePath(path);
+      context.storeConfiguration(config, repository);
+      repositories.add(repository);
+    }
+    when(repositoryManager.getAll()).thenReturn(repositories);
+  }
+
+  private LinkHealth health(String path) {
+    return checker.getHealth(url(path)).orElseThrow();
+  }
+
+  private String url(String path) {
+    return context.getConfiguration().getBaseUrl() + "/" + path;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+import sonia.scm.web.security.AdministrationContext;
+import sonia.scm.web.security.PrivilegedAction;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BlueSpiceLinkIndexTest {
+
+  private final Repository heartOfGold = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+  private final Repository puzzle = new Repository("puzzle", "git", "hitchhiker", "puzzle42");
+
+  @Mock
+  private AdministrationContext administrationContext;
+  @Mock
+  private RepositoryManager repositoryManager;
+
+  private BlueSpiceContext context;
+  private BlueSpiceLinkIndex index;
+
+  @BeforeEach
+  void init() {
+    BlueSpiceMetrics metrics = new BlueSpiceMetrics(new SimpleMeterRegistry());
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), metrics);
+    index = new BlueSpiceLinkIndex(administrationContext, repositoryManager, new BlueSpiceLinkResolver(context, Runnable::run));
+    doAnswer(invocation -> {
+      invocation.getArgument(0, PrivilegedAction.class).run();
+      return null;
+    }).when(administrationContext).runAsAdmin(any(PrivilegedAction.class));
+    lenient().when(repositoryManager.get("hog")).thenReturn(heartOfGold);
+    lenient().when(repositoryManager.get("puzzle")).thenReturn(puzzle);
+
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("https://wiki.hitchhiker.com");
+    context.storeConfiguration(globalConfig);
+    storeRepositoryConfig(heartOfGold, "Ships/HeartOfGold");
+    storeRepositoryConfig(puzzle, "Puzzles/42");
+  }
+
+  @Test
+  void shouldResolveAllRepositoriesOnlyForFirstQuery() {
+    when(repositoryManager.getAll()).thenReturn(List.of(heartOfGold, puzzle));
+
+    assertThat(index.findByUrlPrefix("https://wiki.hitchhiker.com/Ships")).containsExactly(heartOfGold);
+    assertThat(index.findByUrlPrefix("https://wiki.hitchhiker.com/Puzzles")).containsExactly(puzzle);
+
+    verify(repositoryManager, times(1)).getAll();
+  }
+
+  @Test
+  void shouldFindRepositoryWithChangedConfiguration() {
+    when(repositoryManager.getAll()).thenReturn(List.of(heartOfGold, puzzle));
+    index.findByUrlPrefix("https://wiki.hitchhiker.com/");
+
+    storeRepositoryConfig(puzzle, "Ships/Puzzle");
+
+    assertThat(index.findByUrlPrefix("https://wiki.hitchhiker.com/Ships")).containsExactlyInAnyOrder(heartOfGold, puzzle);
+    assertThat(index.findByUrlPrefix("https://wiki.hitchhiker.com/Puzzles")).isEmpty();
+  }
+
+  private void storeRepositoryConfig(Repository repository, String relativePath) {
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath(relativePath);
+    context.storeConfiguration(config, repository);
+  }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.Repository;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlueSpiceLinkResolverTest {
+
+  private final Repository repository = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final BlueSpiceMetrics metrics = new BlueSpiceMetrics(registry);
+
+  private BlueSpiceContext context;
+  private BlueSpiceLinkResolver resolver;
+
+  @BeforeEach
+  void init() {
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), metrics);
+    resolver = new BlueSpiceLinkResolver(context, Runnable::run);
+    storeBaseUrl("https://wiki.hitchhiker.com");
+  }
+
+  @Test
+  void shouldResolveBaseUrlWithRelativePath() {
+    storeRepositoryConfig("Heart_Of_Gold", null, OverrideOption.APPEND);
+
+    assertThat(resolver.resolve(repository)).contains("https://wiki.hitchhiker.com/Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldResolveDirectUrl() {
+    storeRepositoryConfig(null, "https://other.hitchhiker.com/HOG", OverrideOption.OVERRIDE);
+
+    assertThat(resolver.resolve(repository)).contains("https://other.hitchhiker.com/HOG");
+  }
+
+  @Test
+  void shouldResolveNoLinkWithoutBaseUrlAndDirectUrl() {
+    storeBaseUrl("");
+
+    assertThat(resolver.resolve(repository)).isEmpty();
+  }
+
+  @Test
+  void shouldNotReadConfigurationAgainForResolvedLink() {
+    resolver.resolve(repository);
+    resolver.resolve(repository);
+
+    assertThat(context.getRepositoryConfigCacheStats().requestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldRecomputeLinkAfterRepositoryConfigChange() {
+    resolver.resolve(repository);
+
+    storeRepositoryConfig("Marvin", null, OverrideOption.APPEND);
+
+    assertThat(resolver.resolve(repository)).contains("https://wiki.hitchhiker.com/Marvin");
+  }
+
+  @Test
+  void shouldRecomputeLinkAfterBaseUrlChange() {
+    storeRepositoryConfig("Heart_Of_Gold", null, OverrideOption.APPEND);
+    resolver.resolve(repository);
+
+    storeBaseUrl("https://new-wiki.hitchhiker.com/");
+
+    assertThat(resolver.resolve(repository)).contains("https://new-wiki.hitchhiker.com/Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldKeepDirectUrlAfterBaseUrlChange() {
+    storeRepositoryConfig(null, "https://other.hitchhiker.com/HOG", OverrideOption.OVERRIDE);
+    resolver.resolve(repository);
+
+    storeBaseUrl("https://new-wiki.hitchhiker.com/");
+
+    assertThat(resolver.resolve(repository)).contains("https://other.hitchhiker.com/HOG");
+  }
+
+  @Test
+  void shouldPrependNamespacePath() {
+    storeRepositoryConfig("Heart_Of_Gold", null, OverrideOption.APPEND);
+    storeNamespaceConfig(null, "/Hitchhiker/");
+
+    assertThat(resolver.resolve(repository)).contains("https://wiki.hitchhiker.com/Hitchhiker/Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldUseNamespaceBaseUrl() {
+    storeRepositoryConfig("Heart_Of_Gold", null, OverrideOption.APPEND);
+    storeNamespaceConfig("https://hitchhiker.wiki.com/", null);
+
+    assertThat(resolver.resolve(repository)).contains("https://hitchhiker.wiki.com/Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldRecomputeLinkAfterNamespaceConfigChange() {
+    storeRepositoryConfig("Heart_Of_Gold", null, OverrideOption.APPEND);
+    resolver.resolve(repository);
+
+    storeNamespaceConfig(null, "Hitchhiker");
+
+    assertThat(resolver.resolve(repository)).contains("https://wiki.hitchhiker.com/Hitchhiker/Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldNotUseNamespaceConfigOfOtherNamespace() {
+    storeRepositoryConfig("Heart_Of_Gold", null, OverrideOption.APPEND);
+    context.storeNamespaceConfiguration("other", namespaceConfig("https://other.wiki.com", "Other"));
+
+    assertThat(resolver.resolve(repository)).contains("https://wiki.hitchhiker.com/Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldUseUrlTemplateForRepositoriesWithoutPath() {
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("https://wiki.hitchhiker.com");
+    globalConfig.setUrlTemplate("/Repositories/{namespace}/{name}");
+    context.storeConfiguration(globalConfig);
+
+    assertThat(resolver.resolve(repository)).contains("https://wiki.hitchhiker.com/Repositories/hitchhiker/HeartOfGold");
+  }
+
+  @Test
+  void shouldPreferRepositoryPathOverUrlTemplate() {
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("https://wiki.hitchhiker.com");
+    globalConfig.setUrlTemplate("Repositories/{name}");
+    context.storeConfiguration(globalConfig);
+    storeRepositoryConfig("Heart_Of_Gold", null, OverrideOption.APPEND);
+
+    assertThat(resolver.resolve(repository)).contains("https://wiki.hitchhiker.com/Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldPreferRulesOverUrlTemplate() {
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("https://wiki.hitchhiker.com");
+    globalConfig.setUrlTemplate("Repositories/{name}");
+    globalConfig.getRules().add(new LinkRule("hitch*", "*Gold", "Ships/{1}/{2}"));
+    context.storeConfiguration(globalConfig);
+
+    assertThat(resolver.resolve(repository)).contains("https://wiki.hitchhiker.com/Ships/hiker/HeartOf");
+  }
+
+  @Test
+  void shouldFindRepositoriesByUrlPrefix() {
+    Repository puzzle = new Repository("puzzle", "git", "hitchhiker", "puzzle42");
+    Repository other = new Repository("other", "git", "vogons", "poetry");
+    storeRepositoryConfig("Ships/HeartOfGold", null, OverrideOption.APPEND);
+    storeRepositoryConfig(puzzle, "Ships/Puzzle");
+    storeRepositoryConfig(other, "Poetry");
+    resolver.resolve(repository);
+    resolver.resolve(puzzle);
+    resolver.resolve(other);
+
+    assertThat(resolver.findByUrlPrefix("https://wiki.hitchhiker.com/Ships/")).containsExactlyInAnyOrder("hog", "puzzle");
+    assertThat(resolver.findByUrlPrefix("https://wiki.hitchhiker.com/Ships/Heart")).containsExactly("hog");
+    assertThat(resolver.findByUrlPrefix("https://wiki.hitchhiker.com/Ships0")).isEmpty();
+  }
+
+  @Test
+  void shouldFindRepositoriesByWikiPathBelowTheirBaseUrl() {
+    Repository other = new Repository("other", "git", "vogons", "poetry");
+    context.storeNamespaceConfiguration("vogons", namespaceConfig("https://wiki.hitchhiker.com/vogons", null));
+    storeRepositoryConfig("Ships/HeartOfGold", null, OverrideOption.APPEND);
+    storeRepositoryConfig(other, "Poetry");
+    resolver.resolve(repository);
+    resolver.resolve(other);
+
+    assertThat(resolver.findByWikiPath("/Ships/")).containsExactly("hog");
+    assertThat(resolver.findByWikiPath("Poetry")).containsExactly("other");
+    assertThat(resolver.findByWikiPath("vogons/")).isEmpty();
+  }
+
+  @Test
+  void shouldFindRepositoriesByPageTitle() {
+    Repository puzzle = new Repository("puzzle", "git", "hitchhiker", "puzzle42");
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("https://wiki.hitchhiker.com");
+    globalConfig.setUrlTemplate("Repositories/{name}");
+    context.storeConfiguration(globalConfig);
+    storeNamespaceConfig(null, "Ships");
+    storeRepositoryConfig("Heart_Of_Gold", null, OverrideOption.APPEND);
+    resolver.resolve(repository);
+    resolver.resolve(puzzle);
+
+    assertThat(resolver.findByPageTitle("Ships/Heart Of Gold")).containsExactly("hog");
+    assertThat(resolver.findByPageTitle("Ships/Repositories/puzzle42")).containsExactly("puzzle");
+  }
+
+  @Test
+  void shouldDerivePageTitleFromPath() {
+    assertThat(BlueSpiceLinkResolver.pageTitle("heart_of_gold")).isEqualTo("Heart of gold");
+    assertThat(BlueSpiceLinkResolver.pageTitle("K%C3%BChlschrank")).isEqualTo("Kühlschrank");
+    assertThat(BlueSpiceLinkResolver.pageTitle("C++#History")).isEqualTo("C++");
+    assertThat(BlueSpiceLinkResolver.pageTitle("100%_Improbable")).isEqualTo("100% Improbable");
+    assertThat(BlueSpiceLinkResolver.pageTitle("index.php?title=Heart_Of_Gold")).isNull();
+  }
+
+  @Test
+  void shouldRemoveChangedRepositoryFromUrlIndex() {
+    storeRepositoryConfig("Ships/HeartOfGold", null, OverrideOption.APPEND);
+    resolver.resolve(repository);
+    resolver.drainDropped();
+
+    storeRepositoryConfig("Ships/Renamed", null, OverrideOption.APPEND);
+
+    assertThat(resolver.findByUrlPrefix("https://wiki.hitchhiker.com/Ships/")).isEmpty();
+    assertThat(resolver.drainDropped()).containsExactly("hog");
+
+    resolver.resolve(repository);
+
+    assertThat(resolver.findByUrlPrefix("https://wiki.hitchhiker.com/Ships/")).containsExactly("hog");
+  }
+
+  @Test
+  void shouldUpdateUrlIndexOnBaseUrlChange() {
+    storeRepositoryConfig("Ships/HeartOfGold", null, OverrideOption.APPEND);
+    resolver.resolve(repository);
+    resolver.drainDropped();
+
+    storeBaseUrl("https://new.hitchhiker.com");
+
+    assertThat(resolver.findByUrlPrefix("https://wiki.hitchhiker.com/")).isEmpty();
+    assertThat(resolver.findByUrlPrefix("https://new.hitchhiker.com/Ships/")).containsExactly("hog");
+    assertThat(resolver.drainDropped()).isEmpty();
+  }
+
+  @Test
+  void shouldRecomputeLinksInBackgroundAfterBaseUrlChange() {
+    List<Runnable> tasks = new ArrayList<>();
+    BlueSpiceLinkResolver background = new BlueSpiceLinkResolver(context, tasks::add);
+    storeRepositoryConfig("Ships/HeartOfGold", null, OverrideOption.APPEND);
+    background.resolve(repository);
+
+    storeBaseUrl("https://new.hitchhiker.com");
+
+    assertThat(background.findByUrlPrefix("https://wiki.hitchhiker.com/Ships/")).containsExactly("hog");
+
+    tasks.forEach(Runnable::run);
+
+    assertThat(background.findByUrlPrefix("https://wiki.hitchhiker.com/")).isEmpty();
+    assertThat(background.findByUrlPrefix("https://new.hitchhiker.com/Ships/")).containsExactly("hog");
+    assertThat(background.resolve(repository)).contains("https://new.hitchhiker.com/Ships/HeartOfGold");
+  }
+
+  @Test
+  void shouldNotKeepLinkResolvedWithOutdatedConfiguration() {
+    List<Runnable> tasks = new ArrayList<>();
+    AtomicBoolean changed = new AtomicBoolean();
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), metrics) {
+      @Override
+      public Optional<BlueSpiceNamespaceConfig> getNamespaceConfiguration(String namespace) {
+        if (changed.compareAndSet(false, true)) {
+          // the base url changes while the link is computed
+          storeBaseUrl("https://new.hitchhiker.com");
+        }
+        return super.getNamespaceConfiguration(namespace);
+      }
+    };
+    BlueSpiceLinkResolver background = new BlueSpiceLinkResolver(context, tasks::add);
+    storeRepositoryConfig("Ships/HeartOfGold", null, OverrideOption.APPEND);
+
+    assertThat(background.resolve(repository)).isEmpty();
+    assertThat(background.findByUrlPrefix("https://")).isEmpty();
+    assertThat(background.drainDropped()).containsExactly("hog");
+
+    tasks.forEach(Runnable::run);
+
+    assertThat(background.resolve(repository)).contains("https://new.hitchhiker.com/Ships/HeartOfGold");
+    assertThat(background.findByUrlPrefix("https://new.hitchhiker.com/Ships/")).containsExactly("hog");
+  }
+
+  @Test
+  void shouldKeepDirectUrlInUrlIndexOnBaseUrlChange() {
+    storeRepositoryConfig(null, "https://other.hitchhiker.com/HOG", OverrideOption.OVERRIDE);
+    resolver.resolve(repository);
+    resolver.drainDropped();
+
+    storeBaseUrl("https://new.hitchhiker.com");
+
+    assertThat(resolver.drainDropped()).isEmpty();
+    assertThat(resolver.findByUrlPrefix("https://other.hitchhiker.com/")).containsExactly("hog");
+  }
+
+  @Test
+  void shouldShutDownExecutorOnClose() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    BlueSpiceLinkResolver closeable = new BlueSpiceLinkResolver(context, executor);
+
+    closeable.close();
+
+    assertThat(executor.isShutdown()).isTrue();
+  }
+
+  @Test
+  void shouldUseBaseUrlOfInstance() {
+    storeInstance("https://sales.hitchhiker.com/");
+    storeInstanceConfig("Heart_Of_Gold");
+    storeNamespaceConfig("https://hitchhiker.wiki.com/", null);
+
+    assertThat(resolver.resolve(repository)).contains("https://sales.hitchhiker.com/Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldResolveNoLinkForUnknownInstance() {
+    storeInstanceConfig("Heart_Of_Gold");
+
+    assertThat(resolver.resolve(repository)).isEmpty();
+  }
+
+  @Test
+  void shouldRecomputeLinkAfterInstanceMoved() {
+    storeInstance("https://sales.hitchhiker.com");
+    storeInstanceConfig("Ships/Heart_Of_Gold");
+    resolver.resolve(repository);
+    resolver.drainDropped();
+
+    storeInstance("https://sales.new.hitchhiker.com");
+
+    assertThat(resolver.findByUrlPrefix("https://sales.hitchhiker.com/")).isEmpty();
+    assertThat(resolver.drainDropped()).isEmpty();
+    assertThat(resolver.resolve(repository)).contains("https://sales.new.hitchhiker.com/Ships/Heart_Of_Gold");
+    assertThat(resolver.findByUrlPrefix("https://sales.new.hitchhiker.com/Ships/")).containsExactly("hog");
+  }
+
+  @Test
+  void shouldKeepLinksWithoutInstanceAfterInstanceChange() {
+    storeInstance("https://sales.hitchhiker.com");
+    storeRepositoryConfig("Heart_Of_Gold", null, OverrideOption.APPEND);
+    resolver.resolve(repository);
+    long requests = context.getRepositoryConfigCacheStats().requestCount();
+
+    storeInstance("https://sales.new.hitchhiker.com");
+
+    assertThat(resolver.resolve(repository)).contains("https://wiki.hitchhiker.com/Heart_Of_Gold");
+    assertThat(context.getRepositoryConfigCacheStats().requestCount()).isEqualTo(requests);
+  }
+
+  private void storeInstance(String baseUrl) {
+    GlobalBlueSpiceConfig globalConfig = context.getConfiguration().copy();
+    globalConfig.getInstances().clear();
+    globalConfig.getInstances().add(new BlueSpiceInstance("sales", baseUrl, null, 0));
+    context.storeConfiguration(globalConfig);
+  }
+
+  private void storeInstanceConfig(String relativePath) {
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath(relativePath);
+    config.setInstanceId("sales");
+    context.storeConfiguration(config, repository);
+  }
+
+  private void storeRepositoryConfig(Repository repository, String relativePath) {
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath(relativePath);
+    context.storeConfiguration(config, repository);
+  }
+
+  private void storeNamespaceConfig(String baseUrl, String relativePath) {
+    context.storeNamespaceConfiguration(repository.getNamespace(), namespaceConfig(baseUrl, relativePath));
+  }
+
+  private BlueSpiceNamespaceConfig namespaceConfig(String baseUrl, String relativePath) {
+    BlueSpiceNamespaceConfig config = new BlueSpiceNamespaceConfig();
+    config.setBaseUrl(baseUrl);
+    config.setRelativePath(relativePath);
+    return config;
+  }
+
+  private void storeBaseUrl(String baseUrl) {
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl(baseUrl);
+    context.storeConfiguration(globalConfig);
+  }
+
+  private void storeRepositoryConfig(String relativePath, String directUrl, OverrideOption override) {
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath(relativePath);
+    config.setDirectUrl(directUrl);
+    config.setOverride(override);
+    context.storeConfiguration(config, repository);
+  }
+}
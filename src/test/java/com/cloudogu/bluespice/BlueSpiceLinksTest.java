@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import org.junit.jupiter.api.Test;
+import sonia.scm.api.v2.resources.LinkBuilder;
+import sonia.scm.api.v2.resources.ScmPathInfo;
+import sonia.scm.repository.Repository;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlueSpiceLinksTest {
+
+  private final ScmPathInfo pathInfo = () -> URI.create("https://scm-manager.org/scm/api/");
+
+  @Test
+  void shouldCreateGlobalLinks() {
+    BlueSpiceLinks links = BlueSpiceLinks.of(pathInfo);
+
+    assertThat(links.globalConfig()).isEqualTo("https://scm-manager.org/scm/api/v2/bluespice/");
+    assertThat(links.updateGlobalConfig()).isEqualTo(linkBuilder("updateGlobalConfig"));
+  }
+
+  @Test
+  void shouldCreateRepositoryLinks() {
+    Repository repository = new Repository("42", "git", "hitchhiker", "heart-of-gold");
+
+    BlueSpiceLinks links = BlueSpiceLinks.of(pathInfo);
+
+    assertThat(links.repositoryConfig(repository))
+      .isEqualTo("https://scm-manager.org/scm/api/v2/bluespice/hitchhiker/heart-of-gold");
+    assertThat(links.updateRepositoryConfig(repository))
+      .isEqualTo(linkBuilder("updateRepoConfig", "hitchhiker", "heart-of-gold"));
+    assertThat(links.pagePreview(repository))
+      .isEqualTo(linkBuilder("getPagePreview", "hitchhiker", "heart-of-gold"));
+  }
+
+  @Test
+  void shouldEscapeLikeLinkBuilder() {
+    Repository repository = new Repository("42", "git", "space ship", "härt of gold");
+
+    BlueSpiceLinks links = BlueSpiceLinks.of(pathInfo);
+
+    assertThat(links.repositoryConfig(repository))
+      .isEqualTo(linkBuilder("getRepoConfig", "space ship", "härt of gold"));
+    assertThat(links.namespaceConfig("space ship"))
+      .isEqualTo(linkBuilder("getNamespaceConfig", "space ship"));
+    assertThat(links.updateNamespaceConfig("space ship"))
+      .isEqualTo(linkBuilder("updateNamespaceConfig", "space ship"));
+  }
+
+  @Test
+  void shouldResolveLinksOncePerBaseUri() {
+    ScmPathInfo otherPathInfo = () -> URI.create("https://scm.hitchhiker.com/api/");
+
+    assertThat(BlueSpiceLinks.of(pathInfo)).isSameAs(BlueSpiceLinks.of(() -> URI.create("https://scm-manager.org/scm/api/")));
+    assertThat(BlueSpiceLinks.of(otherPathInfo)).isNotSameAs(BlueSpiceLinks.of(pathInfo));
+    assertThat(BlueSpiceLinks.of(otherPathInfo).globalConfig()).isEqualTo("https://scm.hitchhiker.com/api/v2/bluespice/");
+  }
+
+  private String linkBuilder(String method, String... parameters) {
+    return new LinkBuilder(pathInfo, BlueSpiceConfigResource.class).method(method).parameters(parameters).href();
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.search.Index;
+import sonia.scm.search.SearchEngine;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+import sonia.scm.web.security.AdministrationContext;
+import sonia.scm.web.security.PrivilegedAction;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BlueSpicePageIndexerTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  /**
+   * Pages per response of the stub wiki, which is smaller than the batch size to cover the continuation.
+   */
+  private static final int PAGE_SIZE = 2;
+
+  private final Repository heartOfGold = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+  private final Map<String, String> pages = new TreeMap<>();
+  private final List<ObjectNode> recentChanges = new ArrayList<>();
+  private final List<Map<String, String>> requests = new CopyOnWriteArrayList<>();
+
+  @Mock
+  private AdministrationContext administrationContext;
+  @Mock
+  private RepositoryManager repositoryManager;
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  private SearchEngine searchEngine;
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  private Index<IndexedBlueSpicePage> index;
+
+  private HttpServer server;
+  private BlueSpiceContext context;
+  private BlueSpicePageIndexer indexer;
+
+  @BeforeEach
+  void init() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/w/api.php", this::answer);
+    server.start();
+
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), new BlueSpiceMetrics(new SimpleMeterRegistry()));
+    BlueSpicePageCrawler crawler = new BlueSpicePageCrawler(context, HttpClient.newHttpClient());
+    indexer = new BlueSpicePageIndexer(administrationContext, repositoryManager, context, crawler, searchEngine, new InMemoryConfigurationStoreFactory());
+    lenient().doAnswer(invocation -> {
+      invocation.getArgument(0, PrivilegedAction.class).run();
+      return null;
+    }).when(administrationContext).runAsAdmin(any(PrivilegedAction.class));
+    lenient().when(repositoryManager.getAll()).thenReturn(List.of(heartOfGold));
+
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("https://wiki.hitchhiker.com");
+    globalConfig.setApiUrl("http://localhost:" + server.getAddress().getPort() + "/w/api.php");
+    context.storeConfiguration(globalConfig);
+    storeRepositoryConfig(heartOfGold, "Heart_Of_Gold");
+
+    pages.put("Heart Of Gold", "Starship with an improbability drive.");
+    pages.put("Heart Of Gold/Crew", "Zaphod, Trillian, Ford and Arthur.");
+    pages.put("Heart Of Gold/Engine", "Infinite improbability.");
+    pages.put("Heart Of Golden", "Not a sub page.");
+    pages.put("Vogon", "Poetry.");
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  /**
+   * Answers like the MediaWiki api with formatversion 2 for the queries of the crawler.
+   */
+  private void answer(HttpExchange exchange) throws IOException {
+    Map<String, String> parameters = new LinkedHashMap<>();
+    for (String parameter : exchange.getRequestURI().getRawQuery().split("&")) {
+      String[] keyAndValue = parameter.split("=", 2);
+      parameters.put(keyAndValue[0], URLDecoder.decode(keyAndValue[1], StandardCharsets.UTF_8));
+    }
+    requests.add(parameters);
+
+    ObjectNode response = OBJECT_MAPPER.createObjectNode();
+    ObjectNode query = response.putObject("query");
+    if (parameters.containsKey("list")) {
+      query.putArray("recentchanges").addAll(recentChanges);
+    } else if (parameters.containsKey("generator")) {
+      String prefix = parameters.get("gapprefix");
+      List<String> titles = pages.keySet().stream()
+        .filter(title -> title.startsWith(prefix))
+        .filter(title -> !parameters.containsKey("gapcontinue") || title.compareTo(parameters.get("gapcontinue")) >= 0)
+        .toList();
+      titles.stream().limit(PAGE_SIZE).forEach(title -> addPage(query.withArray("pages"), title));
+      if (titles.size() > PAGE_SIZE) {
+        response.putObject("continue").put("gapcontinue", titles.get(PAGE_SIZE)).put("continue", "gapcontinue||");
+      }
+    } else if (parameters.containsKey("titles")) {
+      for (String title : parameters.get("titles").split("\\|")) {
+        addPage(query.withArray("pages"), title);
+      }
+    }
+    byte[] body = OBJECT_MAPPER.writeValueAsBytes(response);
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(body);
+    }
+  }
+
+  private void addPage(ArrayNode result, String title) {
+    ObjectNode page = result.addObject().put("ns", 0).put("title", title);
+    if (pages.containsKey(title)) {
+      page.put("extract", pages.get(title)).put("touched", "2099-10-17T12:00:00Z");
+    } else {
+      page.put("missing", true);
+    }
+  }
+
+  @Test
+  void shouldCrawlAllPagesBelowRepositoryPath() {
+    assertThat(indexer.update(index)).isFalse();
+
+    verify(index.delete()).all();
+    assertThat(storedPages())
+      .extracting(IndexedBlueSpicePage::getTitle)
+      .containsExactly("Heart Of Gold", "Heart Of Gold/Crew", "Heart Of Gold/Engine");
+    assertThat(storedPages().get(1).getUrl()).isEqualTo("https://wiki.hitchhiker.com/Heart_Of_Gold/Crew");
+    assertThat(storedPages().get(1).getExtract()).isEqualTo("Zaphod, Trillian, Ford and Arthur.");
+  }
+
+  @Test
+  void shouldApplyRecentChangesWithoutCrawling() {
+    indexer.update(index);
+    clearInvocations(index, index.delete());
+    requests.clear();
+
+    pages.put("Heart Of Gold/Engine", "Finite improbability.");
+    recentChanges.add(change("edit", "Heart Of Gold/Engine", "2099-10-17T12:01:00Z"));
+    recentChanges.add(change("new", "Vogon/Poetry", "2099-10-17T12:02:00Z"));
+    recentChanges.add(change("log", "Heart Of Gold/Crew", "2099-10-17T12:03:00Z").put("logtype", "delete").put("logaction", "delete"));
+
+    indexer.update(index);
+
+    assertThat(storedPages())
+      .singleElement()
+      .satisfies(page -> {
+        assertThat(page.getTitle()).isEqualTo("Heart Of Gold/Engine");
+        assertThat(page.getExtract()).isEqualTo("Finite improbability.");
+      });
+    verify(index.delete(), times(1)).byId(any());
+    assertThat(requests).noneMatch(parameters -> parameters.containsKey("generator"));
+  }
+
+  @Test
+  void shouldContinueRecentChangesFromLatestChange() {
+    indexer.update(index);
+    recentChanges.add(change("edit", "Heart Of Gold/Engine", "2099-10-17T12:01:00Z"));
+
+    indexer.update(index);
+    requests.clear();
+    indexer.update(index);
+
+    assertThat(requests.get(0)).containsEntry("rcstart", "2099-10-17T12:01:00Z");
+  }
+
+  @Test
+  void shouldCrawlRepositoryAgainAfterConfigChange() {
+    indexer.update(index);
+    clearInvocations(index, index.delete());
+
+    storeRepositoryConfig(heartOfGold, "Vogon");
+    indexer.update(index);
+
+    verify(index.delete()).by(Repository.class, "hog");
+    verify(index.delete(), never()).all();
+    assertThat(storedPages()).extracting(IndexedBlueSpicePage::getTitle).containsExactly("Vogon");
+  }
+
+  @Test
+  void shouldCrawlRepositoriesInBatches() {
+    List<Repository> repositories = new ArrayList<>();
+    for (int i = 0; i < BlueSpicePageIndexer.REPOSITORY_BATCH_SIZE + 1; i++) {
+      Repository repository = new Repository("id-" + i, "git", "hitchhiker", "repo-" + i);
+      storeRepositoryConfig(repository, "Repo_" + i);
+      repositories.add(repository);
+    }
+    when(repositoryManager.getAll()).thenReturn(repositories);
+
+    assertThat(indexer.update(index)).isTrue();
+    assertThat(indexer.update(index)).isFalse();
+  }
+
+  @Test
+  void shouldRemoveAllPagesIfApiUrlIsRemoved() {
+    indexer.update(index);
+    clearInvocations(index, index.delete());
+
+    GlobalBlueSpiceConfig globalConfig = context.getConfiguration().copy();
+    globalConfig.setApiUrl(null);
+    context.storeConfiguration(globalConfig);
+
+    assertThat(indexer.update(index)).isFalse();
+    verify(index.delete()).all();
+    verify(index, never()).store(any(), anyString(), any());
+  }
+
+  @Test
+  void shouldQueueOnlyOneUpdate() {
+    storeRepositoryConfig(heartOfGold, "Vogon");
+    storeRepositoryConfig(heartOfGold, "Heart_Of_Gold");
+
+    verify(searchEngine.forType(IndexedBlueSpicePage.class), times(1)).update(BlueSpicePageIndexer.UpdateTask.class);
+  }
+
+  private ObjectNode change(String type, String title, String timestamp) {
+    return OBJECT_MAPPER.createObjectNode().put("type", type).put("ns", 0).put("title", title).put("timestamp", timestamp);
+  }
+
+  private List<IndexedBlueSpicePage> storedPages() {
+    ArgumentCaptor<IndexedBlueSpicePage> captor = ArgumentCaptor.forClass(IndexedBlueSpicePage.class);
+    verify(index, atLeast(0)).store(any(), anyString(), captor.capture());
+    return captor.getAllValues();
+  }
+
+  private void storeRepositoryConfig(Repository repository, String relativePath) {
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath(relativePath);
+    context.storeConfiguration(config, repository);
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.base.Ticker;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.Repository;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlueSpicePageLookupTest {
+
+  private final AtomicLong time = new AtomicLong();
+  private final List<List<String>> queries = new CopyOnWriteArrayList<>();
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private HttpServer server;
+  private ExecutorService executor;
+  private BlueSpiceContext context;
+  private BlueSpicePageLookup lookup;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/w/api.php", this::answer);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+
+    executor = Executors.newFixedThreadPool(2);
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), new BlueSpiceMetrics(new SimpleMeterRegistry()));
+    lookup = new BlueSpicePageLookup(context, HttpClient.newHttpClient(), executor, new Ticker() {
+      @Override
+      public long read() {
+        return time.get();
+      }
+    });
+
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("http://localhost:" + server.getAddress().getPort() + "/wiki");
+    globalConfig.setApiUrl("http://localhost:" + server.getAddress().getPort() + "/w/api.php");
+    context.storeConfiguration(globalConfig);
+  }
+
+  /**
+   * Answers like the MediaWiki api with formatversion 2. Titles starting with "Missing" do not exist and lower case
+   * titles are normalized.
+   */
+  private void answer(HttpExchange exchange) throws IOException {
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    String query = exchange.getRequestURI().getRawQuery();
+    String titles = URLDecoder.decode(query.substring(query.indexOf("titles=") + 7), StandardCharsets.UTF_8);
+    List<String> requested = List.of(titles.split("\\|"));
+    queries.add(requested);
+
+    List<String> normalized = new ArrayList<>();
+    List<String> pages = new ArrayList<>();
+    for (String title : requested) {
+      String to = Character.toUpperCase(title.charAt(0)) + title.substring(1);
+      if (!to.equals(title)) {
+        normalized.add(String.format("{\"fromencoded\":false,\"from\":\"%s\",\"to\":\"%s\"}", title, to));
+      }
+      if (to.startsWith("Missing")) {
+        pages.add(String.format("{\"ns\":0,\"title\":\"%s\",\"missing\":true}", to));
+      } else {
+        pages.add(String.format("{\"pageid\":%d,\"ns\":0,\"title\":\"%s\"}", pages.size() + 1, to));
+      }
+    }
+    byte[] body = String.format(
+      "{\"batchcomplete\":true,\"query\":{\"normalized\":[%s],\"pages\":[%s]}}",
+      String.join(",", normalized),
+      String.join(",", pages)
+    ).getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(body);
+    }
+  }
+
+  @AfterEach
+  void stopServer() {
+    executor.shutdownNow();
+    server.stop(0);
+  }
+
+  @Test
+  void shouldResolveExistingMissingAndNormalizedTitles() {
+    release.countDown();
+
+    Map<String, CompletableFuture<Boolean>> result = lookup.lookup(List.of("Heart_Of_Gold", "Missing_Page", "vogon_Poetry"));
+
+    assertThat(result.get("Heart_Of_Gold").join()).isTrue();
+    assertThat(result.get("Missing_Page").join()).isFalse();
+    assertThat(result.get("vogon_Poetry").join()).isTrue();
+    assertThat(queries).hasSize(1);
+  }
+
+  @Test
+  void shouldQueryTitlesInBatches() {
+    release.countDown();
+    List<String> titles = IntStream.range(0, 120).mapToObj(i -> "Page_" + i).toList();
+
+    Map<String, CompletableFuture<Boolean>> result = lookup.lookup(titles);
+    CompletableFuture.allOf(result.values().toArray(CompletableFuture[]::new)).join();
+
+    assertThat(queries).hasSize(3);
+    assertThat(queries).allSatisfy(query -> assertThat(query).hasSizeLessThanOrEqualTo(BlueSpicePageLookup.BATCH_SIZE));
+  }
+
+  @Test
+  void shouldQueryConcurrentLookupsOfSameTitleOnlyOnce() {
+    CompletableFuture<Boolean> first = lookup.lookup(List.of("Heart_Of_Gold")).get("Heart_Of_Gold");
+    CompletableFuture<Boolean> second = lookup.lookup(List.of("Heart_Of_Gold")).get("Heart_Of_Gold");
+    release.countDown();
+
+    assertThat(first.join()).isTrue();
+    assertThat(second.join()).isTrue();
+    assertThat(queries).hasSize(1);
+  }
+
+  @Test
+  void shouldCacheResultsUntilTtlExpires() {
+    release.countDown();
+    lookup.lookup(List.of("Heart_Of_Gold")).get("Heart_Of_Gold").join();
+    lookup.lookup(List.of("Heart_Of_Gold")).get("Heart_Of_Gold").join();
+
+    assertThat(queries).hasSize(1);
+
+    time.addAndGet(BlueSpicePageLookup.RESULT_TTL.toNanos() + 1);
+    lookup.lookup(List.of("Heart_Of_Gold")).get("Heart_Of_Gold").join();
+
+    assertThat(queries).hasSize(2);
+  }
+
+  @Test
+  void shouldLookupPageOfRepository() {
+    release.countDown();
+    Repository repository = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Missing_Heart_Of_Gold");
+    context.storeConfiguration(config, repository);
+
+    assertThat(lookup.pageExists(repository, Duration.ofSeconds(5))).contains(false);
+  }
+
+  @Test
+  void shouldNotLookupPageWithoutApiUrl() {
+    GlobalBlueSpiceConfig globalConfig = context.getConfiguration().copy();
+    globalConfig.setApiUrl(null);
+    context.storeConfiguration(globalConfig);
+    Repository repository = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+    context.storeConfiguration(config, repository);
+
+    assertThat(lookup.pageExists(repository, Duration.ofSeconds(5))).isEmpty();
+    assertThat(queries).isEmpty();
+  }
+}
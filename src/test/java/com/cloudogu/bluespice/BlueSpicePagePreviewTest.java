@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import com.google.common.base.Ticker;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryTestData;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BlueSpicePagePreviewTest {
+
+  private final AtomicLong time = new AtomicLong();
+  private final AtomicInteger status = new AtomicInteger(200);
+  private final Map<String, String> pages = new ConcurrentHashMap<>();
+  private final List<String> requests = new CopyOnWriteArrayList<>();
+  private final List<Runnable> refreshes = new ArrayList<>();
+  private final Repository repository = RepositoryTestData.createHeartOfGold();
+
+  private HttpServer server;
+  private BlueSpiceContext context;
+  private BlueSpicePagePreview preview;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/w/api.php", this::answer);
+    server.start();
+
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), new BlueSpiceMetrics(new SimpleMeterRegistry()));
+    // refreshes are only executed on demand, so the test can look at the stale preview
+    preview = new BlueSpicePagePreview(context, HttpClient.newHttpClient(), refreshes::add, new Ticker() {
+      @Override
+      public long read() {
+        return time.get();
+      }
+    });
+
+    GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+    globalConfig.setBaseUrl("http://localhost:" + server.getAddress().getPort() + "/wiki");
+    globalConfig.setApiUrl("http://localhost:" + server.getAddress().getPort() + "/w/api.php");
+    context.storeConfiguration(globalConfig);
+
+    repository.setId("id-1");
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+    context.storeConfiguration(config, repository);
+  }
+
+  /**
+   * Answers like the MediaWiki parse api with formatversion 2. Pages which are not known are reported as missing.
+   */
+  private void answer(HttpExchange exchange) throws IOException {
+    String query = exchange.getRequestURI().getRawQuery();
+    String title = URLDecoder.decode(query.substring(query.indexOf("page=") + 5), StandardCharsets.UTF_8);
+    requests.add(title);
+
+    String html = pages.get(title);
+    String json;
+    if (html == null) {
+      json = "{\"error\":{\"code\":\"missingtitle\",\"info\":\"The page you specified doesn't exist.\"}}";
+    } else {
+      json = String.format(
+        "{\"parse\":{\"title\":\"%s\",\"pageid\":1,\"text\":\"%s\"}}",
+        title.replace('_', ' '),
+        html.replace("\"", "\\\"")
+      );
+    }
+    byte[] body = json.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status.get(), body.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(body);
+    }
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  void shouldFetchPlainTextOfPage() throws IOException {
+    pages.put("Heart_Of_Gold", "<div class=\"mw-parser-output\"><p>The <b>Heart of Gold</b> uses the <a href=\"/wiki/Drive\">improbability drive</a>.<sup class=\"reference\"><a href=\"#cite\">[1]</a></sup></p><script>alert(1)</script><p>Built by &lt;Magrathea&gt; &amp; friends&#33;</p></div>");
+
+    PagePreview result = preview.getPreview(repository).orElseThrow();
+
+    assertThat(result.getTitle()).isEqualTo("Heart Of Gold");
+    assertThat(result.isExists()).isTrue();
+    assertThat(result.getExcerpt()).isEqualTo("The Heart of Gold uses the improbability drive.\nBuilt by <Magrathea> & friends!");
+  }
+
+  @Test
+  void shouldReportMissingPage() throws IOException {
+    PagePreview result = preview.getPreview(repository).orElseThrow();
+
+    assertThat(result.isExists()).isFalse();
+    assertThat(result.getExcerpt()).isNull();
+  }
+
+  @Test
+  void shouldNotPreviewWithoutApiUrl() throws IOException {
+    GlobalBlueSpiceConfig globalConfig = context.getConfiguration().copy();
+    globalConfig.setApiUrl(null);
+    context.storeConfiguration(globalConfig);
+
+    assertThat(preview.getPreview(repository)).isEmpty();
+    assertThat(requests).isEmpty();
+  }
+
+  @Test
+  void shouldServeCachedPreview() throws IOException {
+    pages.put("Heart_Of_Gold", "<p>Improbable</p>");
+
+    preview.getPreview(repository);
+    preview.getPreview(repository);
+
+    assertThat(requests).hasSize(1);
+  }
+
+  @Test
+  void shouldServeStalePreviewWhileRefreshing() throws IOException {
+    pages.put("Heart_Of_Gold", "<p>Improbable</p>");
+    preview.getPreview(repository);
+    pages.put("Heart_Of_Gold", "<p>Infinitely improbable</p>");
+    time.addAndGet(BlueSpicePagePreview.REFRESH_AFTER.toNanos() + 1);
+
+    assertThat(preview.getPreview(repository).orElseThrow().getExcerpt()).isEqualTo("Improbable");
+
+    refreshes.forEach(Runnable::run);
+
+    assertThat(preview.getPreview(repository).orElseThrow().getExcerpt()).isEqualTo("Infinitely improbable");
+    assertThat(requests).hasSize(2);
+  }
+
+  @Test
+  void shouldKeepStalePreviewUntilTtlIfWikiIsNotReachable() throws IOException {
+    pages.put("Heart_Of_Gold", "<p>Improbable</p>");
+    preview.getPreview(repository);
+    status.set(503);
+    time.addAndGet(BlueSpicePagePreview.REFRESH_AFTER.toNanos() + 1);
+
+    preview.getPreview(repository);
+    refreshes.forEach(Runnable::run);
+
+    assertThat(preview.getPreview(repository).orElseThrow().getExcerpt()).isEqualTo("Improbable");
+
+    time.addAndGet(BlueSpicePagePreview.RESULT_TTL.toNanos());
+
+    assertThatThrownBy(() -> preview.getPreview(repository)).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void shouldFetchAgainAfterGlobalConfigChanged() throws IOException {
+    pages.put("Heart_Of_Gold", "<p>Improbable</p>");
+    preview.getPreview(repository);
+
+    context.storeConfiguration(context.getConfiguration().copy());
+    preview.getPreview(repository);
+
+    assertThat(requests).hasSize(2);
+  }
+
+  @Test
+  void shouldCutLongExcerptAtWordBoundary() {
+    String excerpt = BlueSpicePagePreview.excerpt("<p>Don&#x27;t panic and always know where your towel is</p>", 30);
+
+    assertThat(excerpt).isEqualTo("Don't panic and always know…");
+  }
+}
@@ -30,9 +30,13 @@ import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryTestData;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
@@ -50,6 +54,9 @@ class BlueSpiceRepositoryConfigMapperTest {
   @Mock
   private GlobalBlueSpiceConfig globalConfig;
 
+  @Mock
+  private BlueSpicePageLookup pageLookup;
+
   @Mock
   private Subject subject;
 
@@ -62,6 +69,7 @@ class BlueSpiceRepositoryConfigMapperTest {
   @BeforeEach
   void init() {
     lenient().when(scmPathInfoStore.get().getApiRestUri()).thenReturn(baseUri);
+    lenient().when(blueSpiceContext.getConfiguration()).thenReturn(globalConfig);
     expectedBaseUri = baseUri.resolve("v2/bluespice/");
   }
 
@@ -78,11 +86,19 @@ class BlueSpiceRepositoryConfigMapperTest {
     assertThat(dto.getRelativePath()).isEqualTo("Project1");
   }
 
+  @Test
+  void shouldMapPageExistence() {
+    when(pageLookup.pageExists(eq(REPOSITORY), any())).thenReturn(Optional.of(false));
+
+    BlueSpiceRepositoryConfigDto dto = mapper.map(new BlueSpiceRepositoryConfig(), REPOSITORY);
+
+    assertThat(dto.getPageExists()).isFalse();
+  }
+
   @Test
   void shouldAddHalLinksToDto() {
     when(subject.isPermitted("repository:configureBlueSpice:" + REPOSITORY.getId())).thenReturn(true);
-    when(blueSpiceContext.getConfiguration()).thenReturn(globalConfig);
-    when(blueSpiceContext.getConfiguration().getBaseUrl()).thenReturn("https://example.com");
+    when(globalConfig.getBaseUrl()).thenReturn("https://example.com");
     BlueSpiceRepositoryConfigDto dto = mapper.map(new BlueSpiceRepositoryConfig(), REPOSITORY);
 
     String expectedUrl = expectedBaseUri.toString() + REPOSITORY.getNamespace() + "/" + REPOSITORY.getName();
@@ -91,6 +107,43 @@ class BlueSpiceRepositoryConfigMapperTest {
     assertThat(Objects.requireNonNull(dto.getLinks().getLinkBy("baseUrl").orElse(null)).getHref()).isEqualTo("https://example.com");
   }
 
+  @Test
+  void shouldUseBaseUrlOfInstance() {
+    when(subject.isPermitted("repository:configureBlueSpice:" + REPOSITORY.getId())).thenReturn(true);
+    when(globalConfig.getInstance("sales")).thenReturn(Optional.of(new BlueSpiceInstance("sales", "https://sales.example.com", null, 1)));
+    BlueSpiceRepositoryConfig configuration = new BlueSpiceRepositoryConfig();
+    configuration.setInstanceId("sales");
+
+    BlueSpiceRepositoryConfigDto dto = mapper.map(configuration, REPOSITORY);
+
+    assertThat(dto.getInstanceId()).isEqualTo("sales");
+    assertThat(Objects.requireNonNull(dto.getLinks().getLinkBy("baseUrl").orElse(null)).getHref()).isEqualTo("https://sales.example.com");
+  }
+
+  @Test
+  void shouldUseBaseUrlOfNamespace() {
+    when(subject.isPermitted("repository:configureBlueSpice:" + REPOSITORY.getId())).thenReturn(true);
+    BlueSpiceNamespaceConfig namespaceConfig = new BlueSpiceNamespaceConfig();
+    namespaceConfig.setBaseUrl("https://hitchhiker.example.com");
+    when(blueSpiceContext.getNamespaceConfiguration(REPOSITORY.getNamespace())).thenReturn(Optional.of(namespaceConfig));
+
+    BlueSpiceRepositoryConfigDto dto = mapper.map(new BlueSpiceRepositoryConfig(), REPOSITORY);
+
+    assertThat(Objects.requireNonNull(dto.getLinks().getLinkBy("baseUrl").orElse(null)).getHref()).isEqualTo("https://hitchhiker.example.com");
+  }
+
+  @Test
+  void shouldMapAvailableInstances() {
+    when(globalConfig.getInstances()).thenReturn(List.of(
+      new BlueSpiceInstance("sales", "https://sales.example.com", null, 1),
+      new BlueSpiceInstance("dev", "https://dev.example.com", null, 1)
+    ));
+
+    BlueSpiceRepositoryConfigDto dto = mapper.map(new BlueSpiceRepositoryConfig(), REPOSITORY);
+
+    assertThat(dto.getAvailableInstances()).containsExactly("sales", "dev");
+  }
+
   @Test
   void shouldNotAddUpdateLinkToDtoIfNotPermitted() {
     BlueSpiceRepositoryConfigDto dto = mapper.map(new BlueSpiceRepositoryConfig(), REPOSITORY);
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryLocationResolver;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class BlueSpiceRepositoryConfigUpdateStepTest {
+
+  private final InMemoryConfigurationStoreFactory storeFactory = new InMemoryConfigurationStoreFactory();
+  private final InMemoryDataStoreFactory dataStoreFactory = new InMemoryDataStoreFactory();
+
+  @Mock
+  private RepositoryLocationResolver locationResolver;
+
+  @Test
+  void shouldCopyRepositoryStoresIntoDataStore() throws InterruptedException {
+    List<String> repositoryIds = new ArrayList<>();
+    for (int i = 0; i < 2500; i++) {
+      repositoryIds.add("repo-" + i);
+      BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+      config.setRelativePath("Projects/" + i);
+      BlueSpiceRepositoryConfigStore.repositoryStore(storeFactory, "repo-" + i).set(config);
+    }
+
+    int migrated = updateStep().migrate(repositoryIds, BlueSpiceRepositoryConfigUpdateStep.THREADS);
+
+    assertThat(migrated).isEqualTo(2500);
+    BlueSpiceContext context = context(BlueSpiceRepositoryConfigStore.Type.DATA_STORE);
+    assertThat(context.getConfiguration(repository("repo-42")).getRelativePath()).isEqualTo("Projects/42");
+    assertThat(context.getConfiguration(repository("repo-2499")).getRelativePath()).isEqualTo("Projects/2499");
+  }
+
+  @Test
+  void shouldSkipRepositoriesWithoutConfiguration() throws InterruptedException {
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+    BlueSpiceRepositoryConfigStore.repositoryStore(storeFactory, "hog").set(config);
+
+    int migrated = updateStep().migrate(List.of("hog", "puzzle"), 1);
+
+    assertThat(migrated).isEqualTo(1);
+    BlueSpiceContext context = context(BlueSpiceRepositoryConfigStore.Type.DATA_STORE);
+    assertThat(context.getConfiguration(repository("puzzle")).getRelativePath()).isNull();
+  }
+
+  @Test
+  void shouldKeepRepositoryStores() throws InterruptedException {
+    BlueSpiceRepositoryConfig config = new BlueSpiceRepositoryConfig();
+    config.setRelativePath("Heart_Of_Gold");
+    BlueSpiceRepositoryConfigStore.repositoryStore(storeFactory, "hog").set(config);
+
+    updateStep().migrate(List.of("hog"), 1);
+
+    BlueSpiceContext context = context(BlueSpiceRepositoryConfigStore.Type.REPOSITORY);
+    assertThat(context.getConfiguration(repository("hog")).getRelativePath()).isEqualTo("Heart_Of_Gold");
+  }
+
+  @Test
+  void shouldMigrateWithoutRepositories() throws InterruptedException {
+    assertThat(updateStep().migrate(List.of(), BlueSpiceRepositoryConfigUpdateStep.THREADS)).isZero();
+  }
+
+  private BlueSpiceRepositoryConfigUpdateStep updateStep() {
+    return new BlueSpiceRepositoryConfigUpdateStep(locationResolver, storeFactory, dataStoreFactory);
+  }
+
+  private BlueSpiceContext context(BlueSpiceRepositoryConfigStore.Type type) {
+    return new BlueSpiceContext(storeFactory, dataStoreFactory, new BlueSpiceMetrics(new SimpleMeterRegistry()), type);
+  }
+
+  private static Repository repository(String id) {
+    return new Repository(id, "git", "hitchhiker", id);
+  }
+}
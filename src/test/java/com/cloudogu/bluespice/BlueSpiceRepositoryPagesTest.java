@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.cloudogu.bluespice.BlueSpiceRepositoryPages.PAGE_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BlueSpiceRepositoryPagesTest {
+
+  @Mock
+  private RepositoryManager repositoryManager;
+
+  @Test
+  void shouldIterateAllPages() {
+    List<Repository> firstPage = repositories(0, PAGE_SIZE);
+    List<Repository> secondPage = repositories(PAGE_SIZE, 1);
+    when(repositoryManager.getAll(any(), eq(0), eq(PAGE_SIZE))).thenReturn(firstPage);
+    when(repositoryManager.getAll(any(), eq(PAGE_SIZE), eq(PAGE_SIZE))).thenReturn(secondPage);
+
+    List<Repository> repositories = BlueSpiceRepositoryPages.stream(repositoryManager).toList();
+
+    assertThat(repositories).hasSize(PAGE_SIZE + 1);
+    assertThat(repositories.get(PAGE_SIZE).getId()).isEqualTo("id-" + PAGE_SIZE);
+  }
+
+  @Test
+  void shouldNotRequestPagesAfterShortPage() {
+    when(repositoryManager.getAll(any(), eq(0), eq(PAGE_SIZE))).thenReturn(repositories(0, 2));
+
+    assertThat(BlueSpiceRepositoryPages.stream(repositoryManager)).hasSize(2);
+    verify(repositoryManager, never()).getAll(any(), eq(PAGE_SIZE), anyInt());
+  }
+
+  @Test
+  void shouldNotRequestPagesBeforeFirstAccess() {
+    BlueSpiceRepositoryPages.iterator(repositoryManager);
+
+    verify(repositoryManager, never()).getAll(any(), anyInt(), anyInt());
+  }
+
+  private static List<Repository> repositories(int first, int count) {
+    List<Repository> repositories = new ArrayList<>();
+    for (int i = first; i < first + count; i++) {
+      repositories.add(new Repository("id-" + i, "git", "hitchhiker", "repo-" + i));
+    }
+    return repositories;
+  }
+}
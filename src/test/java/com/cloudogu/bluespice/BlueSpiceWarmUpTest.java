@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.store.InMemoryConfigurationStoreFactory;
+import sonia.scm.store.InMemoryDataStoreFactory;
+import sonia.scm.web.security.AdministrationContext;
+import sonia.scm.web.security.PrivilegedAction;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BlueSpiceWarmUpTest {
+
+  @Mock
+  private AdministrationContext administrationContext;
+  @Mock
+  private RepositoryManager repositoryManager;
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(BlueSpiceWarmUp.THREADS);
+
+  private BlueSpiceContext context;
+  private BlueSpiceWarmUp warmUp;
+
+  @BeforeEach
+  void init() {
+    BlueSpiceMetrics metrics = new BlueSpiceMetrics(new SimpleMeterRegistry());
+    context = new BlueSpiceContext(new InMemoryConfigurationStoreFactory(), new InMemoryDataStoreFactory(), metrics);
+    warmUp = new BlueSpiceWarmUp(administrationContext, repositoryManager, context, new BlueSpiceLinkResolver(context, Runnable::run));
+    doAnswer(invocation -> {
+      invocation.getArgument(0, PrivilegedAction.class).run();
+      return null;
+    }).when(administrationContext).runAsAdmin(any(PrivilegedAction.class));
+  }
+
+  @AfterEach
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void shouldLoadConfigurationOfAllRepositories() {
+    List<Repository> repositories = IntStream.range(0, 100)
+      .mapToObj(i -> new Repository("repo-" + i, "git", "hitchhiker", "repo-" + i))
+      .toList();
+    when(repositoryManager.getAll()).thenReturn(repositories);
+
+    assertThat(warmUp.warmUp(executor).join()).isEqualTo(100);
+
+    assertThat(context.getRepositoryConfigCacheStats().missCount()).isEqualTo(100);
+    repositories.forEach(context::getConfiguration);
+    assertThat(context.getRepositoryConfigCacheStats().missCount()).isEqualTo(100);
+  }
+
+  @Test
+  void shouldNotWarmUpMoreRepositoriesThanCached() {
+    warmUp = new BlueSpiceWarmUp(administrationContext, repositoryManager, context, new BlueSpiceLinkResolver(context, Runnable::run), 10);
+    List<Repository> repositories = IntStream.range(0, 100)
+      .mapToObj(i -> new Repository("repo-" + i, "git", "hitchhiker", "repo-" + i))
+      .toList();
+    when(repositoryManager.getAll()).thenReturn(repositories);
+
+    assertThat(warmUp.warmUp(executor).join()).isEqualTo(10);
+
+    assertThat(context.getRepositoryConfigCacheStats().missCount()).isEqualTo(10);
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import org.jboss.resteasy.mock.MockHttpRequest;
+import org.jboss.resteasy.mock.MockHttpResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.web.RestDispatcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BlueSpiceWebhookResourceTest {
+
+  private static final String SECRET = "don't panic";
+  private static final byte[] BODY = ("{\"events\":[" +
+    "{\"action\":\"edit\",\"title\":\"Heart_Of_Gold\"}," +
+    "{\"action\":\"move\",\"title\":\"Vogon\",\"target\":\"Vogon/Poetry\"}" +
+    "]}").getBytes(StandardCharsets.UTF_8);
+
+  @Mock
+  private BlueSpiceContext context;
+  @Mock
+  private BlueSpiceInvalidation invalidation;
+
+  private final GlobalBlueSpiceConfig globalConfig = new GlobalBlueSpiceConfig();
+  private RestDispatcher dispatcher;
+
+  @BeforeEach
+  void init() {
+    dispatcher = new RestDispatcher();
+    dispatcher.addSingletonResource(new BlueSpiceWebhookResource(context, invalidation));
+    when(context.getConfiguration()).thenReturn(globalConfig);
+  }
+
+  @Test
+  void shouldInvalidateChangedPages() throws URISyntaxException, GeneralSecurityException {
+    globalConfig.setWebhookSecret(SECRET);
+    String timestamp = now();
+
+    MockHttpResponse response = invoke(BlueSpiceWebhookResource.sign(SECRET, timestamp, BODY), timestamp, BODY);
+
+    assertThat(response.getStatus()).isEqualTo(202);
+    verify(invalidation).pageChanged("Heart_Of_Gold");
+    verify(invalidation).pageChanged("Vogon");
+    verify(invalidation).pageChanged("Vogon/Poetry");
+  }
+
+  @Test
+  void shouldRejectInvalidSignature() throws URISyntaxException, GeneralSecurityException {
+    globalConfig.setWebhookSecret(SECRET);
+    String timestamp = now();
+
+    MockHttpResponse response = invoke(BlueSpiceWebhookResource.sign("guessed", timestamp, BODY), timestamp, BODY);
+
+    assertThat(response.getStatus()).isEqualTo(401);
+    verify(invalidation, never()).pageChanged(anyString());
+  }
+
+  @Test
+  void shouldRejectMissingSignatureWithoutReadingBody() throws URISyntaxException {
+    globalConfig.setWebhookSecret(SECRET);
+    MockHttpRequest request = MockHttpRequest.post("/v2/bluespice/webhook")
+      .contentType(MediaType.APPLICATION_JSON_TYPE)
+      .header(BlueSpiceWebhookResource.TIMESTAMP_HEADER, now())
+      .content(new InputStream() {
+        @Override
+        public int read() throws IOException {
+          throw new IOException("body must not be read");
+        }
+      });
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(401);
+  }
+
+  @Test
+  void shouldRejectSignatureWithoutTimestamp() throws URISyntaxException, GeneralSecurityException {
+    globalConfig.setWebhookSecret(SECRET);
+
+    MockHttpResponse response = invoke(BlueSpiceWebhookResource.sign(SECRET, "", BODY), null, BODY);
+
+    assertThat(response.getStatus()).isEqualTo(401);
+  }
+
+  @Test
+  void shouldRejectReplayedCall() throws URISyntaxException, GeneralSecurityException {
+    globalConfig.setWebhookSecret(SECRET);
+    String timestamp = String.valueOf(Instant.now().minus(BlueSpiceWebhookResource.TIMESTAMP_TOLERANCE).minusSeconds(60).getEpochSecond());
+
+    MockHttpResponse response = invoke(BlueSpiceWebhookResource.sign(SECRET, timestamp, BODY), timestamp, BODY);
+
+    assertThat(response.getStatus()).isEqualTo(401);
+    verify(invalidation, never()).pageChanged(anyString());
+  }
+
+  @Test
+  void shouldRejectSignatureOfOtherTimestamp() throws URISyntaxException, GeneralSecurityException {
+    globalConfig.setWebhookSecret(SECRET);
+    String timestamp = now();
+    String otherTimestamp = String.valueOf(Long.parseLong(timestamp) - 1);
+
+    MockHttpResponse response = invoke(BlueSpiceWebhookResource.sign(SECRET, otherTimestamp, BODY), timestamp, BODY);
+
+    assertThat(response.getStatus()).isEqualTo(401);
+  }
+
+  @Test
+  void shouldRejectTooLargeBody() throws URISyntaxException, GeneralSecurityException {
+    globalConfig.setWebhookSecret(SECRET);
+    String timestamp = now();
+    byte[] body = new byte[BlueSpiceWebhookResource.MAX_BODY_SIZE + 1];
+    Arrays.fill(body, (byte) ' ');
+
+    MockHttpResponse response = invoke(BlueSpiceWebhookResource.sign(SECRET, timestamp, body), timestamp, body);
+
+    assertThat(response.getStatus()).isEqualTo(413);
+    verify(invalidation, never()).pageChanged(anyString());
+  }
+
+  @Test
+  void shouldRejectTooLargeContentLength() throws URISyntaxException, GeneralSecurityException {
+    globalConfig.setWebhookSecret(SECRET);
+    String timestamp = now();
+    MockHttpRequest request = MockHttpRequest.post("/v2/bluespice/webhook")
+      .contentType(MediaType.APPLICATION_JSON_TYPE)
+      .header(BlueSpiceWebhookResource.SIGNATURE_HEADER, BlueSpiceWebhookResource.sign(SECRET, timestamp, BODY))
+      .header(BlueSpiceWebhookResource.TIMESTAMP_HEADER, timestamp)
+      .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(BlueSpiceWebhookResource.MAX_BODY_SIZE + 1))
+      .content(BODY);
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+
+    assertThat(response.getStatus()).isEqualTo(413);
+  }
+
+  @Test
+  void shouldRejectInvalidBody() throws URISyntaxException, GeneralSecurityException {
+    globalConfig.setWebhookSecret(SECRET);
+    String timestamp = now();
+    byte[] body = "no json".getBytes(StandardCharsets.UTF_8);
+
+    MockHttpResponse response = invoke(BlueSpiceWebhookResource.sign(SECRET, timestamp, body), timestamp, body);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
+  @Test
+  void shouldBeDisabledWithoutSecret() throws URISyntaxException, GeneralSecurityException {
+    String timestamp = now();
+
+    MockHttpResponse response = invoke(BlueSpiceWebhookResource.sign(SECRET, timestamp, BODY), timestamp, BODY);
+
+    assertThat(response.getStatus()).isEqualTo(404);
+    verify(invalidation, never()).pageChanged(anyString());
+  }
+
+  private static String now() {
+    return String.valueOf(Instant.now().getEpochSecond());
+  }
+
+  private MockHttpResponse invoke(String signature, String timestamp, byte[] body) throws URISyntaxException {
+    MockHttpRequest request = MockHttpRequest.post("/v2/bluespice/webhook")
+      .contentType(MediaType.APPLICATION_JSON_TYPE)
+      .content(body);
+    if (signature != null) {
+      request.header(BlueSpiceWebhookResource.SIGNATURE_HEADER, signature);
+    }
+    if (timestamp != null) {
+      request.header(BlueSpiceWebhookResource.TIMESTAMP_HEADER, timestamp);
+    }
+    MockHttpResponse response = new MockHttpResponse();
+    dispatcher.invoke(request, response);
+    return response;
+  }
+}
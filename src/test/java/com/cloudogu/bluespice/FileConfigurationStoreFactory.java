@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import sonia.scm.store.ConfigurationStore;
+import sonia.scm.store.ConfigurationStoreFactory;
+import sonia.scm.store.StoreException;
+import sonia.scm.store.TypedStoreParameters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Simple file backed {@link ConfigurationStoreFactory}, which writes each store as JAXB xml file. It is used by
+ * benchmarks and load tests to get realistic store costs without a full SCM-Manager.
+ */
+public class FileConfigurationStoreFactory implements ConfigurationStoreFactory {
+
+  private final Path directory;
+  private final Map<Class<?>, JAXBContext> contexts = new ConcurrentHashMap<>();
+
+  public FileConfigurationStoreFactory(Path directory) {
+    this.directory = directory;
+  }
+
+  @Override
+  public <T> ConfigurationStore<T> getStore(TypedStoreParameters<T> storeParameters) {
+    Path storeDirectory = directory;
+    if (storeParameters.getRepositoryId() != null) {
+      storeDirectory = storeDirectory.resolve("repositories").resolve(storeParameters.getRepositoryId());
+    }
+    return new FileConfigurationStore<>(
+      storeParameters.getType(),
+      contexts.computeIfAbsent(storeParameters.getType(), this::createContext),
+      storeDirectory.resolve(storeParameters.getName() + ".xml")
+    );
+  }
+
+  private JAXBContext createContext(Class<?> type) {
+    try {
+      return JAXBContext.newInstance(type);
+    } catch (JAXBException e) {
+      throw new StoreException("failed to create jaxb context for " + type, e);
+    }
+  }
+
+  private static class FileConfigurationStore<T> implements ConfigurationStore<T> {
+
+    private final Class<T> type;
+    private final JAXBContext context;
+    private final Path file;
+
+    private FileConfigurationStore(Class<T> type, JAXBContext context, Path file) {
+      this.type = type;
+      this.context = context;
+      this.file = file;
+    }
+
+    @Override
+    public T get() {
+      if (!Files.exists(file)) {
+        return null;
+      }
+      try (InputStream input = Files.newInputStream(file)) {
+        return type.cast(context.createUnmarshaller().unmarshal(input));
+      } catch (IOException | JAXBException e) {
+        throw new StoreException("failed to read store " + file, e);
+      }
+    }
+
+    @Override
+    public void set(T object) {
+      try {
+        Files.createDirectories(file.getParent());
+        try (OutputStream output = Files.newOutputStream(file)) {
+          context.createMarshaller().marshal(object, output);
+        }
+      } catch (IOException | JAXBException e) {
+        throw new StoreException("failed to write store " + file, e);
+      }
+    }
+  }
+}
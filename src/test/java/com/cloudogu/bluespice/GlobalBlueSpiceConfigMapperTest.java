@@ -92,4 +92,49 @@ class GlobalBlueSpiceConfigMapperTest {
     GlobalBlueSpiceConfig configuration = mapper.map(dto, oldConfiguration);
     assertThat(configuration.getBaseUrl()).isEqualTo(dto.getBaseUrl());
   }
+
+  @Test
+  void shouldNotExposeWebhookSecret() {
+    GlobalBlueSpiceConfig configuration = new GlobalBlueSpiceConfig();
+    configuration.setWebhookSecret("secret");
+
+    GlobalBlueSpiceConfigDto dto = mapper.map(configuration);
+
+    assertThat(dto.getWebhookSecret()).isNull();
+    assertThat(dto.isWebhookSecretSet()).isTrue();
+  }
+
+  @Test
+  void shouldKeepWebhookSecretIfUpdateLeavesItEmpty() {
+    GlobalBlueSpiceConfig oldConfiguration = new GlobalBlueSpiceConfig();
+    oldConfiguration.setWebhookSecret("secret");
+
+    GlobalBlueSpiceConfig configuration = mapper.map(new GlobalBlueSpiceConfigDto(), oldConfiguration);
+
+    assertThat(configuration.getWebhookSecret()).isEqualTo("secret");
+  }
+
+  @Test
+  void shouldReplaceWebhookSecret() {
+    GlobalBlueSpiceConfig oldConfiguration = new GlobalBlueSpiceConfig();
+    oldConfiguration.setWebhookSecret("secret");
+    GlobalBlueSpiceConfigDto dto = new GlobalBlueSpiceConfigDto();
+    dto.setWebhookSecret("new secret");
+
+    GlobalBlueSpiceConfig configuration = mapper.map(dto, oldConfiguration);
+
+    assertThat(configuration.getWebhookSecret()).isEqualTo("new secret");
+  }
+
+  @Test
+  void shouldRemoveWebhookSecretOnRequest() {
+    GlobalBlueSpiceConfig oldConfiguration = new GlobalBlueSpiceConfig();
+    oldConfiguration.setWebhookSecret("secret");
+    GlobalBlueSpiceConfigDto dto = new GlobalBlueSpiceConfigDto();
+    dto.setRemoveWebhookSecret(true);
+
+    GlobalBlueSpiceConfig configuration = mapper.map(dto, oldConfiguration);
+
+    assertThat(configuration.getWebhookSecret()).isNull();
+  }
 }
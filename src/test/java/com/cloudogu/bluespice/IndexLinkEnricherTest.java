@@ -17,6 +17,7 @@
 package com.cloudogu.bluespice;
 
 import com.google.inject.util.Providers;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.util.ThreadContext;
 import org.junit.jupiter.api.AfterEach;
@@ -50,7 +51,7 @@ public class IndexLinkEnricherTest {
     ThreadContext.bind(subject);
     ScmPathInfoStore scmPathInfoStore = new ScmPathInfoStore();
     scmPathInfoStore.set(() -> URI.create("https://scm-manager.org/scm/api/"));
-    enricher = new IndexLinkEnricher(Providers.of(scmPathInfoStore));
+    enricher = new IndexLinkEnricher(Providers.of(scmPathInfoStore), new BlueSpiceMetrics(new SimpleMeterRegistry()));
   }
 
   @AfterEach
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.Repository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LinkRuleMatcherTest {
+
+  private final LinkRuleMatcher matcher = LinkRuleMatcher.compile(List.of(
+    new LinkRule("team-*", "*-service", "Teams/{1}/Services/{name}"),
+    new LinkRule("team-*", "*", "Teams/{1}/{2}"),
+    new LinkRule("hitchhiker", "HeartOfGold", "Ships/{name}")
+  ));
+
+  @Test
+  void shouldRenderCapturesOfFirstMatchingRule() {
+    assertThat(render(new Repository("1", "git", "team-blue", "billing-service"))).isEqualTo("Teams/blue/Services/billing-service");
+  }
+
+  @Test
+  void shouldFallThroughToLaterRule() {
+    Repository repository = new Repository("1", "git", "team-blue", "frontend");
+
+    assertThat(matcher.match(repository)).isEqualTo(1);
+    assertThat(render(repository)).isEqualTo("Teams/blue/frontend");
+  }
+
+  @Test
+  void shouldMatchLiteralRule() {
+    assertThat(render(new Repository("1", "git", "hitchhiker", "HeartOfGold"))).isEqualTo("Ships/HeartOfGold");
+  }
+
+  @Test
+  void shouldKeepRuleOrderBetweenLiteralAndWildcardNamespaces() {
+    LinkRuleMatcher matcher = LinkRuleMatcher.compile(List.of(
+      new LinkRule("hitchhiker", "Heart*", "Literal/{1}"),
+      new LinkRule("hitch*", "*", "Wildcard/{2}"),
+      new LinkRule("hitchhiker", "*", "Late/{1}")
+    ));
+
+    assertThat(matcher.match(new Repository("1", "git", "hitchhiker", "HeartOfGold"))).isZero();
+    assertThat(matcher.match(new Repository("1", "git", "hitchhiker", "Marvin"))).isEqualTo(1);
+    assertThat(matcher.match(new Repository("1", "git", "hitchcock", "Birds"))).isEqualTo(1);
+    assertThat(matcher.match(new Repository("1", "git", "vogons", "Poetry"))).isEqualTo(-1);
+  }
+
+  @Test
+  void shouldRenderCapturesOfLaterWildcardRule() {
+    LinkRuleMatcher matcher = LinkRuleMatcher.compile(List.of(
+      new LinkRule("team-*", "*-service", "Teams/{1}/{2}"),
+      new LinkRule("*-ops", "*-*", "Ops/{1}/{3}/{2}")
+    ));
+    Repository repository = new Repository("1", "git", "infra-ops", "db-backup");
+
+    StringBuilder builder = new StringBuilder();
+    assertThat(matcher.render(repository, builder)).isTrue();
+    assertThat(matcher.match(repository)).isEqualTo(1);
+    assertThat(builder).hasToString("Ops/infra/backup/db");
+  }
+
+  @Test
+  void shouldNotTreatDotAsRegex() {
+    LinkRuleMatcher matcher = LinkRuleMatcher.compile(List.of(new LinkRule("a.b", "*", "{1}")));
+
+    assertThat(matcher.match(new Repository("1", "git", "axb", "repo"))).isEqualTo(-1);
+    assertThat(matcher.match(new Repository("1", "git", "a.b", "repo"))).isZero();
+  }
+
+  @Test
+  void shouldNotMatchUnknownRepository() {
+    Repository repository = new Repository("1", "git", "other", "repo");
+
+    assertThat(matcher.match(repository)).isEqualTo(-1);
+    assertThat(matcher.render(repository, new StringBuilder())).isFalse();
+  }
+
+  @Test
+  void shouldNotMatchWithoutRules() {
+    assertThat(LinkRuleMatcher.compile(List.of()).match(new Repository("1", "git", "other", "repo"))).isEqualTo(-1);
+  }
+
+  @Test
+  void shouldFailForInvalidPattern() {
+    List<LinkRule> rules = List.of(new LinkRule("team-(.*)", "*", "{1}"));
+
+    assertThatThrownBy(() -> LinkRuleMatcher.compile(rules)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private String render(Repository repository) {
+    StringBuilder builder = new StringBuilder();
+    assertThat(matcher.render(repository, builder)).isTrue();
+    return builder.toString();
+  }
+}
@@ -17,6 +17,7 @@
 package com.cloudogu.bluespice;
 
 import com.google.inject.util.Providers;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.github.sdorra.jse.ShiroExtension;
 import org.github.sdorra.jse.SubjectAware;
 import org.junit.jupiter.api.BeforeEach;
@@ -32,6 +33,7 @@ import sonia.scm.repository.Repository;
 import sonia.scm.repository.RepositoryTestData;
 
 import java.net.URI;
+import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -50,6 +52,8 @@ public class RepositoryLinkEnricherTest {
   private GlobalBlueSpiceConfig globalConfig;
   @Mock
   private BlueSpiceRepositoryConfig config;
+  @Mock
+  private BlueSpiceLinkChecker linkChecker;
 
   @Mock
   private HalEnricherContext context;
@@ -62,9 +66,10 @@ public class RepositoryLinkEnricherTest {
 
   @BeforeEach
   public void init() {
+    BlueSpiceMetrics metrics = new BlueSpiceMetrics(new SimpleMeterRegistry());
     ScmPathInfoStore scmPathInfoStore = new ScmPathInfoStore();
     scmPathInfoStore.set(() -> URI.create("https://scm-manager.org/scm/api/"));
-    enricher = new RepositoryLinkEnricher(Providers.of(scmPathInfoStore), blueSpiceContext);
+    enricher = new RepositoryLinkEnricher(Providers.of(new BlueSpiceEnrichmentContext(scmPathInfoStore)), blueSpiceContext, new BlueSpiceLinkResolver(blueSpiceContext, Runnable::run), linkChecker, metrics);
 
     when(context.oneRequireByType(Repository.class)).thenReturn(REPOSITORY);
     when(blueSpiceContext.getConfiguration()).thenReturn(globalConfig);
@@ -112,6 +117,38 @@ public class RepositoryLinkEnricherTest {
     verify(appender).appendLink("blueSpice", "https://example.com");
   }
 
+  @Test
+  @SubjectAware(value = "TrainerRed")
+  void shouldNotAppendSuppressedLink() {
+    when(blueSpiceContext.getConfiguration(REPOSITORY)).thenReturn(config);
+    when(blueSpiceContext.getConfiguration().getBaseUrl()).thenReturn("https://test.com");
+    when(blueSpiceContext.getConfiguration(REPOSITORY).getRelativePath()).thenReturn(null);
+    when(blueSpiceContext.getConfiguration(REPOSITORY).getDirectUrl()).thenReturn("https://example.com/Deleted");
+    when(blueSpiceContext.getConfiguration(REPOSITORY).getOverride()).thenReturn(OverrideOption.OVERRIDE);
+    when(linkChecker.isSuppressed("https://example.com/Deleted")).thenReturn(true);
+
+    enricher.enrich(context, appender);
+
+    verify(appender, never()).appendLink(eq("blueSpice"), anyString());
+  }
+
+  @Test
+  @SubjectAware(value = "TrainerRed")
+  void shouldAppendPreviewLinkIfPageIsInConfiguredWiki() {
+    when(blueSpiceContext.getConfiguration(REPOSITORY)).thenReturn(config);
+    when(blueSpiceContext.getConfiguration().getBaseUrl()).thenReturn("https://example.com");
+    when(blueSpiceContext.getConfiguration(REPOSITORY).getRelativePath()).thenReturn("Project_1");
+    when(blueSpiceContext.getConfiguration(REPOSITORY).getOverride()).thenReturn(OverrideOption.APPEND);
+    when(blueSpiceContext.getPageTitle(REPOSITORY)).thenReturn(Optional.of("Project_1"));
+
+    enricher.enrich(context, appender);
+
+    verify(appender).appendLink(
+            "blueSpicePreview",
+            "https://scm-manager.org/scm/api/v2/bluespice/hitchhiker/HeartOfGold/preview"
+    );
+  }
+
   @Nested
   class WithBaseUrl {
 
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020 - present Cloudogu GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, version 3.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see https://www.gnu.org/licenses/.
+ */
+
+package com.cloudogu.bluespice;
+
+import org.junit.jupiter.api.Test;
+import sonia.scm.repository.Repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UrlTemplateTest {
+
+  private final Repository repository = new Repository("hog", "git", "hitchhiker", "HeartOfGold");
+
+  @Test
+  void shouldRenderPlaceholders() {
+    UrlTemplate template = UrlTemplate.compile("Repos/{namespace}/{name}?id={id}");
+
+    assertThat(template.render(repository)).isEqualTo("Repos/hitchhiker/HeartOfGold?id=hog");
+  }
+
+  @Test
+  void shouldRenderTemplateWithoutPlaceholders() {
+    assertThat(UrlTemplate.compile("Repositories").render(repository)).isEqualTo("Repositories");
+  }
+
+  @Test
+  void shouldEncodeValues() {
+    Repository repository = new Repository("hog", "git", "hitch hiker", "Heart/Of/Göld");
+
+    String url = UrlTemplate.compile("{namespace}/{name}").render(repository);
+
+    assertThat(url).isEqualTo("hitch%20hiker/Heart%2FOf%2FG%C3%B6ld");
+  }
+
+  @Test
+  void shouldRenderIntoGivenBuilder() {
+    StringBuilder builder = new StringBuilder("https://wiki.hitchhiker.com/");
+
+    UrlTemplate.compile("{name}").render(repository, builder);
+
+    assertThat(builder).hasToString("https://wiki.hitchhiker.com/HeartOfGold");
+  }
+
+  @Test
+  void shouldFailForUnknownPlaceholder() {
+    assertThatThrownBy(() -> UrlTemplate.compile("{owner}/{name}"))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+}